@@ -1,5 +1,5 @@
 plugins {
-    id("java")
+    id("java-library")
     id("com.vanniktech.maven.publish") version "0.30.0"
 }
 
@@ -14,10 +14,19 @@ repositories {
 }
 
 dependencies {
+    api(project(":relocator"))
+
     compileOnly("io.papermc.paper:paper-api:1.21.4-R0.1-SNAPSHOT")
     compileOnly("org.jetbrains:annotations:24.1.0")
     compileOnly("org.projectlombok:lombok:1.18.36")
     annotationProcessor("org.projectlombok:lombok:1.18.36")
+
+    testCompileOnly("org.jetbrains:annotations:24.1.0")
+    // The server provides these at runtime, so the tests need them on the classpath too
+    testImplementation("io.papermc.paper:paper-api:1.21.4-R0.1-SNAPSHOT")
+    testImplementation(platform("org.junit:junit-bom:5.11.4"))
+    testImplementation("org.junit.jupiter:junit-jupiter")
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher")
 }
 
 java {
@@ -26,6 +35,17 @@ java {
     }
 }
 
+tasks.test {
+    useJUnitPlatform()
+}
+
+tasks.register<JavaExec>("benchmark") {
+    group = "verification"
+    description = "Benchmarks the download and resolution paths against an in-process Maven repository"
+    classpath = sourceSets["test"].runtimeClasspath
+    mainClass.set("revxrsal.zapper.harness.DownloadBenchmark")
+}
+
 tasks.withType<Jar>().configureEach {
     archiveBaseName.set("zapper")
 }
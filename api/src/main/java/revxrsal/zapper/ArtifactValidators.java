@@ -0,0 +1,209 @@
+/*
+ * This file is part of Zapper, licensed under the MIT License.
+ *
+ *  Copyright (c) Revxrsal <reflxction.github@gmail.com>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package revxrsal.zapper;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URLConnection;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Properties;
+
+/**
+ * The validators of a cached mutable (snapshot) artifact: where it was downloaded
+ * from, and the {@code ETag} and {@code Last-Modified} headers it was served with.
+ * <p>
+ * These are stored in a sidecar file next to the jar, and allow revalidating the
+ * jar with a conditional request, so that an unchanged snapshot costs a
+ * {@code 304 Not Modified} instead of a full transfer.
+ */
+final class ArtifactValidators {
+
+    private static final String URL = "url";
+    private static final String REPOSITORY = "repository";
+    private static final String ETAG = "etag";
+    private static final String LAST_MODIFIED = "last-modified";
+    private static final String CHECKED_AT = "checked-at";
+
+    private final Properties properties;
+
+    private ArtifactValidators(@NotNull final Properties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * Creates the validators of an artifact that was just served by the given connection
+     */
+    static @NotNull ArtifactValidators of(
+        @NotNull final String url, @NotNull final String repository, @NotNull final URLConnection connection
+    ) {
+        return of(url, repository, connection.getHeaderField("ETag"), connection.getHeaderField("Last-Modified"));
+    }
+
+    static @NotNull ArtifactValidators of(
+        @NotNull final String url,
+        @NotNull final String repository,
+        @Nullable final String etag,
+        @Nullable final String lastModified
+    ) {
+        final Properties properties = new Properties();
+
+        properties.setProperty(URL, url);
+        properties.setProperty(REPOSITORY, repository);
+        properties.setProperty(CHECKED_AT, Long.toString(System.currentTimeMillis()));
+
+        if (etag != null) {
+            properties.setProperty(ETAG, etag);
+        }
+
+        if (lastModified != null) {
+            properties.setProperty(LAST_MODIFIED, lastModified);
+        }
+
+        return new ArtifactValidators(properties);
+    }
+
+    /**
+     * Loads the validators of the given jar, or returns {@code null} if it has none
+     */
+    static @Nullable ArtifactValidators load(@NotNull final File jar) {
+        final File file = sidecarOf(jar);
+
+        if (!file.isFile()) {
+            return null;
+        }
+
+        final Properties properties = new Properties();
+
+        try (final InputStream stream = Files.newInputStream(file.toPath())) {
+            properties.load(stream);
+        } catch (final IOException e) {
+            return null;
+        }
+
+        return properties.getProperty(URL) == null || properties.getProperty(REPOSITORY) == null
+            ? null
+            : new ArtifactValidators(properties);
+    }
+
+    /**
+     * Deletes the validators of the given jar
+     */
+    static void delete(@NotNull final File jar) {
+        sidecarOf(jar).delete();
+    }
+
+    @NotNull String getUrl() {
+        return properties.getProperty(URL);
+    }
+
+    @NotNull String getRepository() {
+        return properties.getProperty(REPOSITORY);
+    }
+
+    @Nullable String getLastModified() {
+        return properties.getProperty(LAST_MODIFIED);
+    }
+
+    /**
+     * Tests whether the artifact was validated recently enough to be used
+     * without asking the repository again
+     */
+    boolean isFresh(@NotNull final Duration ttl) {
+        final long checkedAt = Long.parseLong(properties.getProperty(CHECKED_AT, "0"));
+
+        return System.currentTimeMillis() - checkedAt < ttl.toMillis();
+    }
+
+    /**
+     * Adds the conditional request headers to the connection
+     *
+     * @return if any header was added
+     */
+    boolean apply(@NotNull final URLConnection connection) {
+        if (!(connection instanceof HttpURLConnection)) {
+            return false;
+        }
+
+        final String etag = properties.getProperty(ETAG);
+        final String lastModified = properties.getProperty(LAST_MODIFIED);
+
+        if (etag != null) {
+            connection.setRequestProperty("If-None-Match", etag);
+        }
+
+        if (lastModified != null) {
+            connection.setRequestProperty("If-Modified-Since", lastModified);
+        }
+
+        return etag != null || lastModified != null;
+    }
+
+    /**
+     * Marks the artifact as validated just now, and stores the validators
+     */
+    void touch(@NotNull final File jar) throws IOException {
+        properties.setProperty(CHECKED_AT, Long.toString(System.currentTimeMillis()));
+
+        store(jar);
+    }
+
+    /**
+     * Stores the validators next to the given jar
+     */
+    void store(@NotNull final File jar) throws IOException {
+        final Path target = sidecarOf(jar).toPath();
+
+        Files.createDirectories(target.getParent());
+
+        final Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+
+        try {
+            try (final OutputStream stream = Files.newOutputStream(temp)) {
+                properties.store(stream, null);
+            }
+
+            try {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (final AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static @NotNull File sidecarOf(@NotNull final File jar) {
+        return new File(jar.getParentFile(), jar.getName() + ".validators");
+    }
+}
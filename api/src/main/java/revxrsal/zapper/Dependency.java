@@ -28,16 +28,28 @@ import org.apache.commons.lang3.StringUtils;
 import org.jetbrains.annotations.CheckReturnValue;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import revxrsal.zapper.repository.LocalRepository;
 import revxrsal.zapper.repository.Repository;
+import revxrsal.zapper.util.Connections;
+import revxrsal.zapper.util.SingleFlight;
 
+import java.io.EOFException;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.net.HttpURLConnection;
 import java.net.URL;
+import java.net.URLConnection;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.security.MessageDigest;
 import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
 
 /**
  * Represents a runtime dependency. Note that this does not include transitive
@@ -48,6 +60,12 @@ public final class Dependency {
 
     private static final String MAVEN_PATH = "%s/%s/%s/%s-%s%s";
 
+    /**
+     * The jars currently being downloaded, mapped by their URL. Each one is
+     * downloaded into a temporary file, shared by all callers asking for it.
+     */
+    private static final SingleFlight<Download> DOWNLOADS = new SingleFlight<>();
+
     @Getter
     private final String groupId;
     @Getter
@@ -98,66 +116,520 @@ public final class Dependency {
 
     @CheckReturnValue
     public @NotNull DependencyDownloadResult download(@NotNull final File file, @NotNull final Repository repository) {
+        return download(file, repository, null);
+    }
+
+    /**
+     * Downloads this dependency from the given repository into the given file,
+     * verifying it against the repository's SHA-1 checksum if it provides one.
+     *
+     * @param file        The file to download to
+     * @param repository  The repository to download from
+     * @param onFirstByte Receives how many milliseconds the repository took to start
+     *                    sending the jar, if it was requested over the network
+     * @return The download result
+     */
+    @CheckReturnValue
+    public @NotNull DependencyDownloadResult download(
+        @NotNull final File file, @NotNull final Repository repository, @Nullable final LongConsumer onFirstByte
+    ) {
         try {
-            if (!file.exists()) {
-                file.getParentFile().mkdirs();
-                file.createNewFile();
-            }
+            if (repository instanceof final LocalRepository local) {
+                final Path source = local.resolveFile(this);
 
-            final URL url = repository.resolveJar(this);
+                link(source, file);
 
-            String expected = null;
+                if (isSnapshot()) {
+                    localValidators(source, repository).store(file);
+                }
 
-            try (final InputStream stream = repository.resolveChecksum(this).openStream()) {
-                expected = new String(stream.readAllBytes(), StandardCharsets.UTF_8).trim();
-            } catch (final Throwable ignored) {
-                // If checksum is unavailable, proceed without verification.
+                return DependencyDownloadResult.success();
             }
 
+            final URL url = repository.resolveJar(this);
+            final String expected = fetchChecksum(repository);
             final MessageDigest sha1 = expected == null ? null : MessageDigest.getInstance("SHA-1");
+            final ArtifactValidators[] validators = {null};
+            final Path temp = temporaryFile(file);
 
-            try (final InputStream depIn = url.openStream()) {
-                try (final OutputStream outStream = Files.newOutputStream(file.toPath())) {
-                    final byte[] buffer = new byte[8 * 1024];
-                    int bytesRead;
-                    while ((bytesRead = depIn.read(buffer)) != -1) {
-                        outStream.write(buffer, 0, bytesRead);
+            try {
+                transfer(url, temp.toFile(), sha1, response -> {
+                    if (onFirstByte != null) {
+                        onFirstByte.accept(response.firstByteMillis());
+                    }
 
-                        if (sha1 != null) {
-                            sha1.update(buffer, 0, bytesRead);
-                        }
+                    if (isSnapshot()) {
+                        validators[0] = ArtifactValidators.of(url.toString(), repository.toString(), response.etag(), response.lastModified());
+                    }
+                });
+
+                if (sha1 != null) {
+                    final String actual = convertToHex(sha1.digest());
+
+                    if (!expected.endsWith(actual)) { // Checksum files may include "SHA1 (file) = ...".
+                        file.delete();
+
+                        return DependencyDownloadResult.failure(new IllegalStateException(
+                            "Error downloading dependency; checksum mismatch for " +
+                            this +
+                            ": expected " +
+                            expected +
+                            " but found " +
+                            actual
+                        ));
                     }
                 }
+
+                // The file may be hardlinked into a local repository, so it is replaced rather than written to.
+                Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+
+            if (validators[0] != null) {
+                validators[0].store(file);
+            }
+
+            return DependencyDownloadResult.success();
+        } catch (final Throwable t) {
+            file.delete();
+            return DependencyDownloadResult.failure(t);
+        }
+    }
+
+    /**
+     * Revalidates a cached copy of this snapshot dependency with the repository it was
+     * downloaded from, using the {@code ETag} and {@code Last-Modified} headers it was
+     * served with. If the repository answers {@code 304 Not Modified}, nothing is
+     * transferred. Otherwise, the new content is downloaded, verified and atomically
+     * moved over the cached file.
+     * <p>
+     * The cached file itself does not have to exist, as long as the caller still
+     * has a copy derived from it (such as a relocated jar).
+     *
+     * @param file       The cached file
+     * @param repository The repository the file was downloaded from
+     * @return {@code true} if the file was replaced with new content, {@code false}
+     * if the cached copy is still up to date
+     * @throws Exception if the dependency could not be revalidated
+     */
+    public boolean revalidate(@NotNull final File file, @NotNull final Repository repository) throws Exception {
+        final ArtifactValidators validators = ArtifactValidators.load(file);
+
+        if (repository instanceof final LocalRepository local) {
+            final Path source = local.resolveFile(this);
+            final ArtifactValidators current = localValidators(source, repository);
+
+            if (validators != null && validators.getUrl().equals(current.getUrl()) &&
+                Objects.equals(validators.getLastModified(), current.getLastModified())) {
+                validators.touch(file);
+
+                return false;
+            }
+
+            link(source, file);
+            current.store(file);
+
+            return true;
+        }
+
+        final URL url = repository.resolveJar(this);
+        final URLConnection connection = Connections.open(url);
+        final boolean conditional = validators != null &&
+            validators.getUrl().equals(url.toString()) &&
+            validators.apply(connection);
+
+        if (conditional && ((HttpURLConnection) connection).getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            validators.touch(file);
+
+            return false;
+        }
+
+        final String expected = fetchChecksum(repository);
+        final MessageDigest sha1 = expected == null ? null : MessageDigest.getInstance("SHA-1");
+
+        final Path temp = temporaryFile(file);
+
+        try {
+            try (final InputStream in = Connections.body(connection)) {
+                copy(in, temp.toFile(), sha1);
             }
 
             if (sha1 != null) {
                 final String actual = convertToHex(sha1.digest());
 
-                if (!expected.endsWith(actual)) { // Checksum files may include "SHA1 (file) = ...".
-                    file.delete();
-
-                    return DependencyDownloadResult.failure(new IllegalStateException(
-                        "Error downloading dependency; checksum mismatch for " +
+                if (!expected.endsWith(actual)) {
+                    throw new IllegalStateException(
+                        "Error revalidating dependency; checksum mismatch for " +
                         this +
                         ": expected " +
                         expected +
                         " but found " +
                         actual
-                    ));
+                    );
                 }
             }
 
-            return DependencyDownloadResult.success();
+            // The cached file may be hardlinked, so it is replaced rather than written to.
+            Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+
+        ArtifactValidators.of(url.toString(), repository.toString(), connection).store(file);
+
+        return true;
+    }
+
+    /**
+     * Downloads this dependency from the repository pinned by the given lock, and
+     * verifies its size and SHA-256 checksum locally. Unlike
+     * {@link #download(File, Repository)}, this does not fetch any checksum files.
+     *
+     * @param file The file to download to
+     * @param lock The lockfile entry of this dependency
+     * @return The download result
+     */
+    @CheckReturnValue
+    public @NotNull DependencyDownloadResult download(@NotNull final File file, @NotNull final DependencyLock lock) {
+        final Repository repository = lock.toRepository();
+
+        if (repository == null) {
+            return DependencyDownloadResult.failure(new IllegalStateException(
+                "No repository is locked for " + this + "."
+            ));
+        }
+
+        return download(file, lock, repository);
+    }
+
+    /**
+     * Downloads this dependency from the given repository, and verifies its size and
+     * SHA-256 checksum against the given lock. This is used when the locked repository
+     * is replaced by a mirror.
+     *
+     * @param file       The file to download to
+     * @param lock       The lockfile entry of this dependency
+     * @param repository The repository to download from
+     * @return The download result
+     */
+    @CheckReturnValue
+    public @NotNull DependencyDownloadResult download(
+        @NotNull final File file, @NotNull final DependencyLock lock, @NotNull final Repository repository
+    ) {
+        try {
+            final MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+
+            if (repository instanceof final LocalRepository local) {
+                link(local.resolveFile(this), file);
+
+                final long size;
+
+                try (final InputStream in = Files.newInputStream(file.toPath())) {
+                    size = copy(in, null, sha256);
+                }
+
+                final DependencyDownloadResult result = verify(lock, size, sha256);
+
+                if (!result.wasSuccessful()) {
+                    file.delete();
+                }
+
+                return result;
+            }
+
+            final Path temp = temporaryFile(file);
+
+            try {
+                final long size = transfer(repository.resolveJar(this), temp.toFile(), sha256, null);
+                final DependencyDownloadResult result = verify(lock, size, sha256);
+
+                if (result.wasSuccessful()) {
+                    Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+
+                return result;
+            } finally {
+                Files.deleteIfExists(temp);
+            }
         } catch (final Throwable t) {
             file.delete();
             return DependencyDownloadResult.failure(t);
         }
     }
 
+    /**
+     * Checks the size and SHA-256 checksum of a downloaded file against the lock
+     */
+    private @NotNull DependencyDownloadResult verify(
+        @NotNull final DependencyLock lock, final long size, @NotNull final MessageDigest sha256
+    ) {
+        if (size != lock.getSize()) {
+            return DependencyDownloadResult.failure(new IllegalStateException(
+                "Error downloading dependency; size mismatch for " +
+                this +
+                ": expected " +
+                lock.getSize() +
+                " bytes but found " +
+                size +
+                " bytes"
+            ));
+        }
+
+        final String actual = convertToHex(sha256.digest());
+
+        if (!actual.equals(lock.getSha256())) {
+            return DependencyDownloadResult.failure(new IllegalStateException(
+                "Error downloading dependency; checksum mismatch for " +
+                this +
+                ": expected " +
+                lock.getSha256() +
+                " but found " +
+                actual
+            ));
+        }
+
+        return DependencyDownloadResult.success();
+    }
+
+    /**
+     * Fetches the SHA-1 checksum of this dependency, or returns {@code null} if the
+     * repository does not provide one. A temporary failure is reported instead, so
+     * that the download may be retried.
+     */
+    private @Nullable String fetchChecksum(@NotNull final Repository repository) throws Exception {
+        try {
+            return new String(Connections.readAllBytes(repository.resolveChecksum(this)), StandardCharsets.UTF_8).trim();
+        } catch (final Exception t) {
+            if (Connections.isTransient(t)) {
+                throw t;
+            }
+
+            return null;
+        }
+    }
+
+    /**
+     * Creates the validators of a snapshot linked from a local repository, which
+     * are its path and modification time.
+     */
+    private static @NotNull ArtifactValidators localValidators(
+        @NotNull final Path source, @NotNull final Repository repository
+    ) throws IOException {
+        return ArtifactValidators.of(
+            source.toUri().toString(),
+            repository.toString(),
+            null,
+            Long.toString(Files.getLastModifiedTime(source).toMillis())
+        );
+    }
+
+    /**
+     * Creates a temporary file next to the given one, to download into before
+     * moving it over the file. The file may be hardlinked into a local repository,
+     * so it must never be written to in place.
+     */
+    private static @NotNull Path temporaryFile(@NotNull final File file) throws IOException {
+        final Path directory = file.toPath().getParent();
+
+        Files.createDirectories(directory);
+
+        return Files.createTempFile(directory, file.getName(), ".tmp");
+    }
+
+    /**
+     * Copies the content of the URL into the file, which must be a temporary file
+     * of the caller's, feeding it into the given digest (if any) along the way.
+     * <p>
+     * If the same URL is already being downloaded (by another thread, or another
+     * {@link DependencyManager}), this waits for that download and copies its
+     * result locally instead of issuing a second request. The download is kept in
+     * a temporary file of its own until every caller sharing it has copied it, so
+     * nothing they do with their copies can affect the others. Every caller is
+     * handed the response, with its headers and how long it took to arrive.
+     *
+     * @return The number of bytes transferred
+     */
+    private static long transfer(
+        @NotNull final URL url,
+        @NotNull final File file,
+        @Nullable final MessageDigest digest,
+        @Nullable final Consumer<Download> onResponse
+    ) throws Exception {
+        final Path directory = file.toPath().getParent();
+        final long transferred = DOWNLOADS.run(
+            url.toString(),
+            () -> fetch(url, directory, file.getName()),
+            shared -> {
+                try {
+                    return shared.copyTo(file, digest, onResponse);
+                } catch (final NoSuchFileException e) {
+                    return -1L;
+                }
+            },
+            shared -> deleteQuietly(shared.file())
+        );
+
+        if (transferred != -1) {
+            return transferred;
+        }
+
+        // The shared download was removed by someone else before it could be
+        // copied, so it is requested again.
+        final Download own = fetch(url, directory, file.getName());
+
+        try {
+            return own.copyTo(file, digest, onResponse);
+        } finally {
+            Files.deleteIfExists(own.file());
+        }
+    }
+
+    /**
+     * Downloads the content of the URL into a new temporary file in the given
+     * directory, checking that it was not truncated.
+     *
+     * @return The download
+     */
+    private static @NotNull Download fetch(
+        @NotNull final URL url,
+        @NotNull final Path directory,
+        @NotNull final String name
+    ) throws Exception {
+        final Path temp = Files.createTempFile(directory, name, ".part");
+
+        try {
+            final long start = System.nanoTime();
+            final URLConnection connection = Connections.open(url);
+            final long transferred;
+            final long firstByteMillis;
+
+            try (final InputStream depIn = Connections.body(connection)) {
+                firstByteMillis = (System.nanoTime() - start) / 1_000_000;
+                transferred = copy(depIn, temp.toFile(), null);
+            }
+
+            final long expected = connection.getContentLengthLong();
+
+            if (expected >= 0 && transferred != expected) {
+                throw new EOFException(
+                    "Truncated download of " + url + ": expected " + expected + " bytes but received " + transferred
+                );
+            }
+
+            return new Download(temp, connection.getHeaderField("ETag"), connection.getHeaderField("Last-Modified"), firstByteMillis);
+        } catch (final Throwable t) {
+            Files.deleteIfExists(temp);
+
+            throw t;
+        }
+    }
+
+    /**
+     * A downloaded file, along with the validators it was served with and how
+     * long the repository took to start sending it
+     */
+    private record Download(
+        @NotNull Path file, @Nullable String etag, @Nullable String lastModified, long firstByteMillis
+    ) {
+
+        private long copyTo(
+            @NotNull final File target,
+            @Nullable final MessageDigest digest,
+            @Nullable final Consumer<Download> onResponse
+        ) throws Exception {
+            final long copied;
+
+            try (final InputStream in = Files.newInputStream(file)) {
+                copied = copy(in, target, digest);
+            }
+
+            if (onResponse != null) {
+                onResponse.accept(this);
+            }
+
+            return copied;
+        }
+    }
+
+    private static void deleteQuietly(@NotNull final Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (final IOException ignored) {
+            // A leftover temporary file is harmless.
+        }
+    }
+
+    /**
+     * Hardlinks the source file into the target, or copies it if that is not possible
+     * (e.g. when both are on different filesystems). As the target may share its
+     * content with the repository, it must never be written to in place.
+     */
+    private static void link(@NotNull final Path source, @NotNull final File file) throws IOException {
+        final Path target = file.toPath();
+
+        Files.createDirectories(target.getParent());
+        Files.deleteIfExists(target);
+
+        try {
+            Files.createLink(target, source);
+        } catch (final IOException | UnsupportedOperationException | SecurityException e) {
+            Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Copies the stream into the file (if any), feeding it into the digest
+     * (if any) along the way.
+     *
+     * @return The number of bytes copied
+     */
+    private static long copy(
+        @NotNull final InputStream in, @Nullable final File file, @Nullable final MessageDigest digest
+    ) throws Exception {
+        long total = 0;
+
+        try (final OutputStream outStream = file == null ? OutputStream.nullOutputStream() : Files.newOutputStream(file.toPath())) {
+            final byte[] buffer = new byte[8 * 1024];
+            int bytesRead;
+            while ((bytesRead = in.read(buffer)) != -1) {
+                outStream.write(buffer, 0, bytesRead);
+                total += bytesRead;
+
+                if (digest != null) {
+                    digest.update(buffer, 0, bytesRead);
+                }
+            }
+        }
+
+        return total;
+    }
+
+    /**
+     * Tests whether this is a snapshot dependency, whose content may change
+     * without its version changing
+     *
+     * @return if this is a snapshot
+     */
+    public boolean isSnapshot() {
+        return version.endsWith("SNAPSHOT");
+    }
+
     public @Nullable String getClassifier() {
         return this.classifier;
     }
 
+    /**
+     * Returns a copy of this dependency with the given version
+     *
+     * @param version The new version
+     * @return The new dependency
+     */
+    @CheckReturnValue
+    public @NotNull Dependency withVersion(@NotNull final String version) {
+        return new Dependency(groupId, artifactId, version, classifier);
+    }
+
     private static @NotNull String convertToHex(final byte @NotNull [] bytes) {
         final StringBuilder builder = new StringBuilder(bytes.length * 2);
 
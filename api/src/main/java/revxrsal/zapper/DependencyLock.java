@@ -0,0 +1,151 @@
+/*
+ * This file is part of Zapper, licensed under the MIT License.
+ *
+ *  Copyright (c) Revxrsal <reflxction.github@gmail.com>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package revxrsal.zapper;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import revxrsal.zapper.repository.Repository;
+
+import java.util.Objects;
+import java.util.regex.Pattern;
+
+/**
+ * Represents an entry in the lockfile generated at build time. It pins a
+ * dependency to the repository it was resolved from, along with its exact
+ * size and SHA-256 checksum, so that it can be downloaded on the first try
+ * and verified without fetching any remote checksum files.
+ */
+public final class DependencyLock {
+
+    /**
+     * Used in place of the repository URL when the build could not
+     * determine which repository serves the artifact
+     */
+    private static final String NO_REPOSITORY = "-";
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern COLON = Pattern.compile(":");
+
+    private final Dependency dependency;
+    private final @Nullable String repository;
+    private final long size;
+    private final String sha256;
+
+    public DependencyLock(
+        @NotNull final Dependency dependency,
+        @Nullable final String repository,
+        final long size,
+        @NotNull final String sha256
+    ) {
+        this.dependency = dependency;
+        this.repository = NO_REPOSITORY.equals(repository) ? null : repository;
+        this.size = size;
+        this.sha256 = sha256.toLowerCase();
+    }
+
+    /**
+     * Parses a lockfile line in the form of
+     * {@code group:artifact:version[:classifier] <repository> <size> <sha-256>}
+     *
+     * @param line The line to parse
+     * @return The parsed lock
+     */
+    @Contract("_ -> new")
+    public static @NotNull DependencyLock parse(@NotNull final String line) {
+        final String[] parts = WHITESPACE.split(line.trim());
+
+        if (parts.length != 4) {
+            throw new IllegalArgumentException("Malformed lockfile entry: '" + line + "'.");
+        }
+
+        final String[] coordinates = COLON.split(parts[0]);
+        final Dependency dependency = new Dependency(
+            coordinates[0], coordinates[1], coordinates[2], coordinates.length == 4 ? coordinates[3] : null
+        );
+
+        return new DependencyLock(dependency, parts[1], Long.parseLong(parts[2]), parts[3]);
+    }
+
+    public @NotNull Dependency getDependency() {
+        return dependency;
+    }
+
+    /**
+     * Returns the URL of the repository the artifact was resolved from, or
+     * {@code null} if it is unknown and repositories have to be probed.
+     *
+     * @return The repository URL
+     */
+    public @Nullable String getRepository() {
+        return repository;
+    }
+
+    /**
+     * Returns the repository the artifact was resolved from, or {@code null}
+     * if it is unknown and repositories have to be probed.
+     *
+     * @return The repository
+     */
+    public @Nullable Repository toRepository() {
+        return repository == null ? null : Repository.maven(repository);
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public @NotNull String getSha256() {
+        return sha256;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+
+        if (!(o instanceof final DependencyLock that)) {
+            return false;
+        }
+
+        return size == that.size &&
+                dependency.equals(that.dependency) &&
+                Objects.equals(repository, that.repository) &&
+                sha256.equals(that.sha256);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(dependency, repository, size, sha256);
+    }
+
+    @Override
+    public String toString() {
+        return "DependencyLock{" +
+                "dependency=" + dependency +
+                ", repository='" + repository + '\'' +
+                ", size=" + size +
+                ", sha256='" + sha256 + '\'' +
+                '}';
+    }
+}
@@ -26,19 +26,48 @@ package revxrsal.zapper;
 import lombok.SneakyThrows;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import revxrsal.zapper.classloader.ClassPathEntry;
+import revxrsal.zapper.classloader.DependencyClassPath;
 import revxrsal.zapper.classloader.URLClassLoaderWrapper;
 import revxrsal.zapper.meta.MetaReader;
+import revxrsal.zapper.metadata.MetadataCache;
+import revxrsal.zapper.metadata.VersionRange;
+import revxrsal.zapper.metadata.VersionResolver;
+import revxrsal.zapper.relocation.MemoryBudget;
 import revxrsal.zapper.relocation.Relocation;
 import revxrsal.zapper.relocation.Relocator;
+import revxrsal.zapper.relocation.StripOption;
+import revxrsal.zapper.repository.CircuitBreaker;
 import revxrsal.zapper.repository.Repository;
+import revxrsal.zapper.repository.RepositoryRouter;
+import revxrsal.zapper.repository.RepositoryStatistics;
+import revxrsal.zapper.transitive.Exclusion;
+import revxrsal.zapper.util.Connections;
+import revxrsal.zapper.util.RetryPolicy;
 
 import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
 import java.net.UnknownHostException;
-import java.nio.file.Path;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 import org.bukkit.Bukkit;
 import java.util.logging.Logger;
@@ -57,9 +86,28 @@ public final class DependencyManager implements DependencyScope {
 
     private final List<Dependency> dependencies = new ArrayList<>();
     private final Set<Repository> repositories = new LinkedHashSet<>();
+    private final Set<Repository> pinnedRepositories = new LinkedHashSet<>();
     private final List<Relocation> relocations = new ArrayList<>();
+    private final List<Exclusion> exclusions = new ArrayList<>();
+    private final Map<Dependency, DependencyLock> locks = new HashMap<>();
+    private final Map<Dependency, DependencyLock> preRelocated = new HashMap<>();
+    private final Map<Exclusion, Set<StripOption>> stripRules = new LinkedHashMap<>();
+    private final RepositoryRouter router = new RepositoryRouter();
     private final MetaReader meta = MetaReader.create();
 
+    private @NotNull Duration metadataTtl = MetadataCache.DEFAULT_TTL;
+    private @NotNull Duration snapshotMetadataTtl = MetadataCache.DEFAULT_SNAPSHOT_TTL;
+    private boolean adaptiveRepositoryOrdering = true;
+    private @NotNull RetryPolicy retryPolicy = RetryPolicy.defaultPolicy();
+    private int circuitBreakerThreshold = 3;
+    private @NotNull Duration dependencyDeadline = Duration.ofMinutes(1);
+    private int relocationThreads = Runtime.getRuntime().availableProcessors();
+    private boolean storeRelocatedClasses = false;
+    private boolean relocateOnLoad = false;
+    private boolean indexClassPath = false;
+    private boolean mapJars = false;
+    private long relocationMemoryBudget = Math.max(16L << 20, Math.min(256L << 20, Runtime.getRuntime().maxMemory() / 8));
+
     public DependencyManager(@NotNull final File directory, @NotNull final URLClassLoaderWrapper classLoader) {
         this.directory = directory;
         this.classLoader = classLoader;
@@ -71,40 +119,118 @@ public final class DependencyManager implements DependencyScope {
         final Logger logger = Bukkit.getLogger();
         final String prefix = "[" + meta.pluginName() + "] ";
 
+        router.beginLoad(new MetadataCache(new File(metadataDirectory(), "snapshots"), snapshotMetadataTtl));
+
+        final RepositoryStatistics statistics = RepositoryStatistics.load(new File(directory, ".repository-statistics.properties"));
+        final CircuitBreaker breaker = new CircuitBreaker(circuitBreakerThreshold);
+        final Set<Repository> pinned = router.mirror(pinnedRepositories);
+        final boolean rewritesJars = hasRelocations() || !stripRules.isEmpty();
+        final ExecutorService relocationPool = rewritesJars ? Executors.newFixedThreadPool(relocationThreads) : null;
+        final MemoryBudget relocationBudget = new MemoryBudget(relocationMemoryBudget);
+        final RelocationCache relocationCache = rewritesJars
+            ? RelocationCache.load(new File(directory, "relocated"), relocations, storeRelocatedClasses)
+            : null;
+
         try {
-            final List<Path> paths = new ArrayList<>();
-            for (final Dependency dep : dependencies) {
+            final List<URL> urls = new ArrayList<>();
+            final Map<URL, ClassPathEntry> relocatedOnLoad = new HashMap<>();
+            final List<Future<?>> pendingRelocations = new ArrayList<>();
+            final Set<File> relocating = new HashSet<>();
+            for (final Dependency dep : resolveVersions(logger, prefix)) {
+                if (isExcluded(dep)) {
+                    logger.info(prefix + "Skipping excluded dependency " + dep + ".");
+
+                    continue;
+                }
+
                 logger.info(prefix + "Resolving dependency " + dep + ".");
 
+                final DependencyLock preRelocatedLock = relocationCache == null ? null : preRelocated.get(dep);
+
+                if (preRelocatedLock != null) {
+                    final File preRelocatedFile = relocationCache.preRelocated(dep, preRelocatedLock);
+
+                    if (preRelocatedFile.exists()) {
+                        logger.info(
+                            prefix +
+                            "Using existing pre-relocated jar for " +
+                            dep + ": " +
+                            preRelocatedFile.getName() +
+                            " (" +
+                            preRelocatedFile.length() +
+                            " bytes)."
+                        );
+
+                        urls.add(preRelocatedFile.toURI().toURL());
+
+                        continue;
+                    }
+
+                    if (downloadPreRelocated(dep, preRelocatedFile, preRelocatedLock, logger, prefix)) {
+                        urls.add(preRelocatedFile.toURI().toURL());
+
+                        continue;
+                    }
+                }
+
                 final File file = new File(directory, String.format("%s.%s-%s.jar", dep.getGroupId(), dep.getArtifactId(), dep.getVersion()));
-                final File relocated = new File(directory, String.format("%s.%s-%s-relocated.jar", dep.getGroupId(),
-                        dep.getArtifactId(), dep.getVersion()));
 
-                if (hasRelocations() && relocated.exists()) {
-                    logger.info(
-                        prefix +
-                        "Using existing relocated jar for " +
-                        dep + ": " +
-                        relocated.getName() +
-                        " (" +
-                        relocated.length() +
-                        " bytes)."
-                    );
+                if (dep.isSnapshot() && file.exists()) {
+                    revalidateSnapshot(dep, file, logger, prefix);
+                }
 
-                    paths.add(relocated.toPath());
+                final DependencyLock lock = locks.get(dep);
 
-                    continue;
+                if (lock != null && file.exists() && file.length() != lock.getSize()) {
+                    logger.warning(
+                        prefix + "Cached jar for " + dep + " does not match the lockfile. Downloading it again."
+                    );
+
+                    file.delete();
                 }
 
                 if (!file.exists()) {
-                    boolean succeeded = false;
+                    boolean succeeded = lock != null && downloadLocked(dep, file, lock, logger, prefix);
                     List<String> failedRepos = null;
-                    for (final Repository repository : repositories) {
+                    final List<Repository> candidates = router.select(dep, repositories);
+                    final List<Repository> ordered = adaptiveRepositoryOrdering
+                        ? statistics.order(candidates, pinned, dep)
+                        : candidates;
+
+                    final long deadline = System.nanoTime() + dependencyDeadline.toNanos();
+
+                    for (final Repository repository : ordered) {
+                        if (succeeded) {
+                            break;
+                        }
+
+                        if (breaker.isOpen(repository)) {
+                            logger.warning(
+                                prefix + "Skipping repository " + repository + " for " + dep +
+                                ", as it failed too many times in a row."
+                            );
+
+                            (failedRepos == null ? failedRepos = new ArrayList<>() : failedRepos).add(repository + " (skipped)");
+
+                            continue;
+                        }
+
+                        if (System.nanoTime() - deadline >= 0) {
+                            throw new DependencyDownloadException(
+                                dep,
+                                "Gave up after " + dependencyDeadline.toMillis() + " ms. Tried the following repositories: " +
+                                (failedRepos == null ? "none" : String.join("\n", failedRepos))
+                            );
+                        }
+
                         logger.info(
                             prefix + "Attempting download of " + dep + " from repository " + repository + "."
                         );
 
-                        final DependencyDownloadResult result = dep.download(file, repository);
+                        final DependencyDownloadResult result = download(
+                            dep, file, repository, deadline, statistics, breaker, logger, prefix
+                        );
+
                         if (result.wasSuccessful()) {
                             logger.info(prefix + "Downloaded " + dep + " (" + file.length() + " bytes) from " + repository + ".");
                             succeeded = true;
@@ -139,32 +265,67 @@ public final class DependencyManager implements DependencyScope {
                         " bytes)."
                     );
                 }
-                if (hasRelocations() && !relocated.exists()) {
-                    Relocator.relocate(file, relocated, relocations);
+                final Set<StripOption> strip = stripOptions(dep);
+
+                if (relocationCache == null || (!hasRelocations() && strip.isEmpty())) {
+                    urls.add(file.toURI().toURL());
+
+                    continue;
+                }
+
+                if (relocateOnLoad) {
+                    final ClassPathEntry entry = Relocator.relocateOnLoad(file, relocations, strip);
+
+                    urls.add(entry.getURL());
+                    relocatedOnLoad.put(entry.getURL(), entry);
+                    logger.info(prefix + "Relocating " + dep + " as its classes are loaded.");
+
+                    continue;
+                }
+
+                final File relocated = relocationCache.resolve(file, strip);
+
+                if (relocated.exists()) {
                     logger.info(
                         prefix +
-                        "Relocated " +
-                        dep +
-                        " to " +
+                        "Using existing relocated jar for " +
+                        dep + ": " +
                         relocated.getName() +
                         " (" +
                         relocated.length() +
                         " bytes)."
                     );
+                } else if (relocating.add(relocated)) {
+                    // Relocated in the background while the next dependencies are downloaded
+                    pendingRelocations.add(relocationPool.submit(() -> relocate(dep, file, relocated, strip, relocationBudget, logger, prefix)));
+                }
+
+                urls.add(relocated.toURI().toURL());
+            }
+            for (final Future<?> relocation : pendingRelocations) {
+                try {
+                    relocation.get();
+                } catch (final ExecutionException e) {
+                    throw e.getCause();
+                }
+            }
 
-                    file.delete(); // no longer need the original dependency
+            if (relocationCache != null) {
+                // Relocating on load resolves no relocated jars, so pruning would delete all
+                // of them, including the ones a later start without it could reuse
+                if (!relocateOnLoad) {
+                    relocationCache.prune(directory);
                 }
-                if (hasRelocations())
-                    paths.add(relocated.toPath());
-                else
-                    paths.add(file.toPath());
+
+                relocationCache.save();
             }
-            for (final Path path : paths) {
-                final URL url = path.toUri().toURL();
 
+            final List<URL> classPath = indexClassPath ? indexClassPath(urls, relocatedOnLoad, logger, prefix) : urls;
+
+            for (final URL url : classPath) {
                 if (!addToPaperLibraryLoader(url, logger, prefix)) {
                     classLoader.addURL(url);
-                    logger.info(prefix + "Added to plugin classloader: " + path.getFileName() + ".");
+                    logger.info(prefix + "Added to plugin classloader: " + fileName(url) + ".");
                 }
             }
 
@@ -180,10 +341,340 @@ public final class DependencyManager implements DependencyScope {
                 FAILED_TO_DOWNLOAD = true;
             } else throw exception;
         } finally {
+            if (relocationPool != null) {
+                relocationPool.shutdown();
+            }
+
+            statistics.save();
+
             logger.info(prefix + "Dependency resolution finished. Total dependencies: " + dependencies.size() + ".");
         }
     }
 
+    /**
+     * Indexes the given jars into a single {@link DependencyClassPath}, so that the
+     * class loader looks classes up by package instead of searching every jar.
+     */
+    private @NotNull List<URL> indexClassPath(
+        @NotNull final List<URL> urls,
+        @NotNull final Map<URL, ClassPathEntry> relocatedOnLoad,
+        @NotNull final Logger logger,
+        @NotNull final String prefix
+    ) throws IOException, URISyntaxException {
+        final long start = System.nanoTime();
+        final DependencyClassPath classPath = DependencyClassPath.load(new File(directory, ".classpath-index.properties"), mapJars);
+
+        for (final URL url : urls) {
+            final ClassPathEntry entry = relocatedOnLoad.get(url);
+
+            if (entry != null) {
+                classPath.add(entry);
+            } else {
+                classPath.add(new File(url.toURI()));
+            }
+        }
+
+        classPath.save();
+
+        logger.info(
+            prefix +
+            "Indexed " +
+            urls.size() +
+            " jars into " +
+            classPath.getURL() +
+            " in " +
+            (System.nanoTime() - start) / 1_000_000 +
+            " ms."
+        );
+
+        return Collections.singletonList(classPath.getURL());
+    }
+
+    /**
+     * Returns the name of the jar at the given URL, which is the last segment of
+     * its path. Jars relocated on load have a trailing slash.
+     */
+    private static @NotNull String fileName(@NotNull final URL url) {
+        final String path = url.getPath().endsWith("/")
+            ? url.getPath().substring(0, url.getPath().length() - 1)
+            : url.getPath();
+
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * Relocates a downloaded dependency. The original jar is kept, so that it can be
+     * relocated again if the rules change. This is called concurrently for different
+     * dependencies.
+     */
+    private void relocate(
+        @NotNull final Dependency dep,
+        @NotNull final File file,
+        @NotNull final File relocated,
+        @NotNull final Set<StripOption> strip,
+        @NotNull final MemoryBudget budget,
+        @NotNull final Logger logger,
+        @NotNull final String prefix
+    ) {
+        final long start = System.nanoTime();
+
+        Relocator.relocate(file, relocated, relocations, storeRelocatedClasses, budget, strip);
+
+        logger.info(
+            prefix +
+            "Relocated " +
+            dep +
+            " to " +
+            relocated.getName() +
+            " (" +
+            relocated.length() +
+            " bytes) in " +
+            (System.nanoTime() - start) / 1_000_000 +
+            " ms."
+        );
+    }
+
+    /**
+     * Resolves dependencies declared with version ranges or the {@code LATEST}/{@code RELEASE}
+     * keywords into concrete versions, using the (cached) repository metadata.
+     */
+    private @NotNull List<Dependency> resolveVersions(@NotNull final Logger logger, @NotNull final String prefix) {
+        if (dependencies.stream().noneMatch(dep -> VersionRange.isDynamic(dep.getVersion()))) {
+            return dependencies;
+        }
+
+        final MetadataCache cache = new MetadataCache(metadataDirectory(), metadataTtl);
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(repositories.size(), 8));
+
+        try {
+            final VersionResolver resolver = new VersionResolver(cache, executor, logger, prefix);
+            final List<Dependency> resolved = new ArrayList<>(dependencies.size());
+
+            for (final Dependency dep : dependencies) {
+                final Dependency concrete = resolver.resolve(dep, router.select(dep, repositories));
+
+                if (concrete != dep) {
+                    logger.info(
+                        prefix + "Resolved version " + dep.getVersion() + " of " + dep.getGroupId() + ":" +
+                        dep.getArtifactId() + " to " + concrete.getVersion() + "."
+                    );
+                }
+
+                resolved.add(concrete);
+            }
+
+            return resolved;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Downloads the dependency from the given repository, retrying transient failures
+     * (timeouts, reset connections, server errors) according to the {@link RetryPolicy},
+     * as long as the next attempt would start before the deadline.
+     */
+    private @NotNull DependencyDownloadResult download(
+        @NotNull final Dependency dep,
+        @NotNull final File file,
+        @NotNull final Repository repository,
+        final long deadline,
+        @NotNull final RepositoryStatistics statistics,
+        @NotNull final CircuitBreaker breaker,
+        @NotNull final Logger logger,
+        @NotNull final String prefix
+    ) throws InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            final long start = System.nanoTime();
+            final long[] firstByte = {-1};
+            final DependencyDownloadResult result = dep.download(file, repository, millis -> firstByte[0] = millis);
+
+            if (result.wasSuccessful()) {
+                // Local repositories have no first byte to wait for, so the whole lookup is their latency.
+                statistics.recordHit(repository, dep, firstByte[0] != -1 ? firstByte[0] : (System.nanoTime() - start) / 1_000_000);
+                breaker.recordSuccess(repository);
+
+                return result;
+            }
+
+            final Throwable error = result.asFailure().getError();
+
+            statistics.recordMiss(repository, dep);
+
+            if (breaker.recordFailure(repository, error)) {
+                logger.warning(
+                    prefix + "Repository " + repository + " failed " + circuitBreakerThreshold +
+                    " times in a row. Skipping it for the remaining dependencies."
+                );
+
+                return result;
+            }
+
+            if (attempt >= retryPolicy.getMaxAttempts() || !Connections.isTransient(error)) {
+                return result;
+            }
+
+            final long delay = retryPolicy.delay(attempt);
+
+            if (System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay) - deadline >= 0) {
+                return result;
+            }
+
+            logger.warning(
+                prefix + "Failed downloading " + dep + " from " + repository + ": " + error +
+                ". Retrying in " + delay + " ms."
+            );
+
+            Thread.sleep(delay);
+        }
+    }
+
+    /**
+     * Checks whether a cached snapshot changed in the repository it was downloaded
+     * from, at most once per {@link #snapshotMetadataTtl(Duration) snapshot TTL}. If
+     * it did, the new content replaces the cached jar, which in turn is relocated
+     * again, as relocated jars are keyed by the content of their input. Snapshots
+     * cached without validators are downloaded again, as there is no way to tell
+     * whether they are still current.
+     */
+    private void revalidateSnapshot(
+        @NotNull final Dependency dep,
+        @NotNull final File file,
+        @NotNull final Logger logger,
+        @NotNull final String prefix
+    ) {
+        final ArtifactValidators validators = ArtifactValidators.load(file);
+
+        if (validators != null && validators.isFresh(snapshotMetadataTtl)) {
+            return;
+        }
+
+        Repository repository = null;
+
+        if (validators != null) {
+            for (final Repository candidate : router.select(dep, repositories)) {
+                if (candidate.toString().equals(validators.getRepository())) {
+                    repository = candidate;
+
+                    break;
+                }
+            }
+        }
+
+        if (repository == null) {
+            logger.info(prefix + "Cached snapshot " + dep + " cannot be revalidated. Downloading it again.");
+
+            file.delete();
+            ArtifactValidators.delete(file);
+
+            return;
+        }
+
+        try {
+            if (dep.revalidate(file, repository)) {
+                logger.info(
+                    prefix + "Snapshot " + dep + " changed in " + repository + ". Downloaded the new version (" +
+                    file.length() + " bytes)."
+                );
+            } else {
+                logger.info(prefix + "Cached snapshot " + dep + " is up to date.");
+            }
+        } catch (final Throwable throwable) {
+            logger.warning(
+                prefix + "Could not revalidate snapshot " + dep + " with " + repository + ". Using the cached copy: " +
+                throwable
+            );
+        }
+    }
+
+    /**
+     * Downloads the dependency from the repository pinned in its lockfile entry. If
+     * no repository is pinned, or the download fails, the caller falls back to
+     * probing all repositories.
+     */
+    private boolean downloadLocked(
+        @NotNull final Dependency dep,
+        @NotNull final File file,
+        @NotNull final DependencyLock lock,
+        @NotNull final Logger logger,
+        @NotNull final String prefix
+    ) {
+        final Repository locked = lock.toRepository();
+
+        if (locked == null) {
+            return false;
+        }
+
+        final Repository repository = router.mirror(locked);
+        final DependencyDownloadResult result = dep.download(file, lock, repository);
+
+        if (result.wasSuccessful()) {
+            logger.info(
+                prefix + "Downloaded " + dep + " (" + file.length() + " bytes) from locked repository " +
+                repository + "."
+            );
+
+            return true;
+        }
+
+        logger.warning(
+            prefix + "Failed downloading " + dep + " from locked repository " + repository + ": " +
+            result.asFailure().getError()
+        );
+
+        return false;
+    }
+
+    /**
+     * Downloads the jar of a dependency that was relocated at build time, and verifies
+     * it against its lock. The jar is downloaded next to its target and only moved into
+     * place once verified. If this fails, the caller falls back to downloading the
+     * original jar and relocating it.
+     */
+    private boolean downloadPreRelocated(
+        @NotNull final Dependency dep,
+        @NotNull final File file,
+        @NotNull final DependencyLock lock,
+        @NotNull final Logger logger,
+        @NotNull final String prefix
+    ) {
+        final Repository locked = lock.toRepository();
+
+        if (locked == null) {
+            return false;
+        }
+
+        final Repository repository = router.mirror(locked);
+        final File temp = new File(file.getPath() + ".part");
+        final DependencyDownloadResult result = lock.getDependency().download(temp, lock, repository);
+
+        if (result.wasSuccessful()) {
+            try {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } catch (final IOException e) {
+                temp.delete();
+
+                logger.warning(prefix + "Could not store the pre-relocated jar of " + dep + ": " + e);
+
+                return false;
+            }
+
+            logger.info(
+                prefix + "Downloaded pre-relocated jar of " + dep + " (" + file.length() + " bytes) from " +
+                repository + "."
+            );
+
+            return true;
+        }
+
+        logger.warning(
+            prefix + "Failed downloading pre-relocated jar of " + dep + " from " + repository + ": " +
+            result.asFailure().getError() + ". Relocating it locally instead."
+        );
+
+        return false;
+    }
+
     /**
      * Attempts to add a URL to Paper's library loader (similar to Libby).
      */
@@ -246,6 +737,26 @@ public final class DependencyManager implements DependencyScope {
         dependencies.add(new Dependency(groupId, artifactId, version, classifier));
     }
 
+    /**
+     * Pins a dependency to the repository, size and checksum recorded in the
+     * lockfile generated at build time.
+     */
+    public void lock(@NotNull final DependencyLock lock) {
+        locks.put(lock.getDependency(), lock);
+    }
+
+    /**
+     * Registers the jar of a dependency that was relocated at build time with this
+     * manager's relocation rules. The relocated jar is downloaded and verified against
+     * the given lock instead of relocating the dependency locally.
+     *
+     * @param dependency The original dependency
+     * @param relocated  The lockfile entry of its relocated jar
+     */
+    public void preRelocated(@NotNull final Dependency dependency, @NotNull final DependencyLock relocated) {
+        preRelocated.put(dependency, relocated);
+    }
+
     public void relocate(@NotNull final Relocation relocation) {
         relocations.add(relocation);
     }
@@ -254,6 +765,235 @@ public final class DependencyManager implements DependencyScope {
         repositories.add(repository);
     }
 
+    /**
+     * Adds a repository that is always tried before the others, regardless of how
+     * they performed in the past. Pinned repositories are tried in the order they
+     * were pinned.
+     */
+    public void pinRepository(@NotNull final Repository repository) {
+        repositories.add(repository);
+        pinnedRepositories.add(repository);
+    }
+
+    /**
+     * Routes all dependencies whose group starts with the given prefix (such as
+     * {@code io.papermc}) to the given repositories only, instead of probing every
+     * repository. The longest matching prefix wins.
+     *
+     * @see RepositoryRouter
+     */
+    public void route(@NotNull final String groupPrefix, @NotNull final List<Repository> repositories) {
+        router.route(groupPrefix, repositories);
+    }
+
+    public void route(@NotNull final String groupPrefix, @NotNull final Repository... repositories) {
+        router.route(groupPrefix, Arrays.asList(repositories));
+    }
+
+    /**
+     * Replaces the repository at the given URL with a mirror, wherever it is used:
+     * in the repository list, in routes, and in the lockfile.
+     */
+    public void mirror(@NotNull final String url, @NotNull final Repository mirror) {
+        router.mirror(url, mirror);
+    }
+
+    /**
+     * Sets whether repositories are reordered for every dependency, based on the latency
+     * and hit ratio they had in previous lookups. When disabled, repositories are
+     * always tried in the order they were added. Enabled by default.
+     *
+     * @see RepositoryStatistics
+     */
+    public void adaptiveRepositoryOrdering(final boolean enabled) {
+        this.adaptiveRepositoryOrdering = enabled;
+    }
+
+    /**
+     * Excludes every dependency matching the given {@code groupId:artifactId} pattern.
+     * Both parts may contain {@code *} wildcards.
+     *
+     * @see Exclusion
+     */
+    public void exclude(@NotNull final String exclusion) {
+        exclusions.add(Exclusion.parse(exclusion));
+    }
+
+    public void exclude(@NotNull final Exclusion exclusion) {
+        exclusions.add(exclusion);
+    }
+
+    /**
+     * Returns the global exclusions of this manager, so they can be passed on to
+     * a {@link revxrsal.zapper.transitive.TransitiveResolver}.
+     */
+    public @NotNull List<Exclusion> getExclusions() {
+        return exclusions;
+    }
+
+    /**
+     * Strips the given payload from the dependencies matching a pattern while they
+     * are relocated. Patterns are in the form of {@code groupId:artifactId} and may
+     * contain {@code *} wildcards, like exclusions. A dependency matching several
+     * patterns has the payload of all of them stripped.
+     *
+     * @param pattern The dependencies to strip
+     * @param options The payload to strip from them
+     */
+    public void strip(@NotNull final String pattern, @NotNull final Set<StripOption> options) {
+        if (options.isEmpty()) {
+            return;
+        }
+
+        stripRules.computeIfAbsent(Exclusion.parse(pattern), k -> EnumSet.noneOf(StripOption.class)).addAll(options);
+    }
+
+    private @NotNull Set<StripOption> stripOptions(@NotNull final Dependency dependency) {
+        final Set<StripOption> options = EnumSet.noneOf(StripOption.class);
+
+        for (final Map.Entry<Exclusion, Set<StripOption>> rule : stripRules.entrySet()) {
+            if (rule.getKey().matches(dependency)) {
+                options.addAll(rule.getValue());
+            }
+        }
+
+        return options;
+    }
+
+    private boolean isExcluded(@NotNull final Dependency dependency) {
+        for (final Exclusion exclusion : exclusions) {
+            if (exclusion.matches(dependency)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Sets how long the repository metadata used for resolving version ranges is
+     * cached on disk before being fetched again. Defaults to 24 hours.
+     */
+    public void metadataTtl(@NotNull final Duration ttl) {
+        this.metadataTtl = ttl;
+    }
+
+    /**
+     * Sets how long snapshot metadata, and the snapshot jars themselves, are cached
+     * on disk before being revalidated with the repository. Defaults to 1 hour.
+     */
+    public void snapshotMetadataTtl(@NotNull final Duration ttl) {
+        this.snapshotMetadataTtl = ttl;
+    }
+
+    /**
+     * Sets how transient download failures are retried. Defaults to
+     * {@link RetryPolicy#defaultPolicy()}.
+     */
+    public void retryPolicy(@NotNull final RetryPolicy policy) {
+        this.retryPolicy = policy;
+    }
+
+    /**
+     * Sets after how many consecutive failures a repository is skipped for the rest
+     * of the load. Defaults to 3. A value of 0 disables this.
+     *
+     * @see CircuitBreaker
+     */
+    public void circuitBreakerThreshold(final int threshold) {
+        this.circuitBreakerThreshold = threshold;
+    }
+
+    /**
+     * Sets how long downloading a single dependency may take across all repositories
+     * and retries. No new attempt is started once it has passed, although an attempt
+     * that is already in progress is bounded by the connection timeouts instead.
+     * Defaults to 1 minute.
+     */
+    public void dependencyDeadline(@NotNull final Duration deadline) {
+        this.dependencyDeadline = deadline;
+    }
+
+    /**
+     * Sets how many dependencies may be relocated at once. Defaults to the number
+     * of available processors.
+     */
+    public void relocationThreads(final int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("At least one relocation thread is required.");
+        }
+
+        this.relocationThreads = threads;
+    }
+
+    /**
+     * Sets whether relocated classes are stored uncompressed. This makes relocated
+     * jars larger, but faster to relocate and to load classes from. Disabled by default.
+     */
+    public void storeRelocatedClasses(final boolean enabled) {
+        this.storeRelocatedClasses = enabled;
+    }
+
+    /**
+     * Sets whether dependencies are relocated as their classes are loaded, instead of
+     * writing a relocated copy of every jar up front. This skips relocating the classes
+     * that are never loaded, and writing relocated jars to disk at all, at the cost of
+     * relocating the classes that are loaded on every start. Disabled by default.
+     */
+    public void relocateOnLoad(final boolean enabled) {
+        this.relocateOnLoad = enabled;
+    }
+
+    /**
+     * Sets whether dependencies are added to the class loader as a single class path,
+     * which looks classes and resources up by package instead of searching every jar
+     * in order. This speeds up class loading with many dependencies.
+     * <p>
+     * The class path behaves like a shaded jar rather than like separate jars:
+     * <ul>
+     *     <li>{@link ClassLoader#getResources(String)} only returns the first jar's copy
+     *     of a resource. Only {@code META-INF/services} files are merged.</li>
+     *     <li>Packages do not get the manifest of their jar, so
+     *     {@link Package#getImplementationVersion()} and similar return {@code null},
+     *     and sealed packages are not sealed.</li>
+     *     <li>The {@link java.security.CodeSource} of every class is the URL of the
+     *     class path, not of its jar.</li>
+     * </ul>
+     * Disabled by default.
+     */
+    public void indexClassPath(final boolean enabled) {
+        this.indexClassPath = enabled;
+    }
+
+    /**
+     * Sets whether the jars of an {@link #indexClassPath(boolean) indexed class path}
+     * are mapped into memory, so that classes are read straight from the mapped jar
+     * instead of through buffered file reads. This pairs well with
+     * {@link #storeRelocatedClasses(boolean) storing relocated classes uncompressed}.
+     * Has no effect unless the class path is indexed. Disabled by default.
+     */
+    public void mapJars(final boolean enabled) {
+        this.mapJars = enabled;
+    }
+
+    /**
+     * Sets how much heap memory all relocations may use at once. Relocations wait
+     * for memory rather than exceed it, which keeps memory use predictable on small
+     * servers at the cost of slower relocation. Defaults to an eighth of the maximum
+     * heap size, between 16 and 256 MiB.
+     */
+    public void relocationMemoryBudget(final long bytes) {
+        if (bytes < 1024) {
+            throw new IllegalArgumentException("The relocation memory budget must be at least 1024 bytes.");
+        }
+
+        this.relocationMemoryBudget = bytes;
+    }
+
+    private @NotNull File metadataDirectory() {
+        return new File(directory, ".metadata");
+    }
+
     public boolean hasRelocations() {
         return !relocations.isEmpty();
     }
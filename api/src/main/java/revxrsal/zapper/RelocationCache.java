@@ -0,0 +1,287 @@
+/*
+ * This file is part of Zapper, licensed under the MIT License.
+ *
+ *  Copyright (c) Revxrsal <reflxction.github@gmail.com>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package revxrsal.zapper;
+
+import org.jetbrains.annotations.NotNull;
+import revxrsal.zapper.relocation.Relocation;
+import revxrsal.zapper.relocation.StripOption;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A content-addressed cache of relocated jars.
+ * <p>
+ * Every relocated jar is named after the SHA-256 of its input jar and a fingerprint
+ * of the relocation rules and options, so changing the rules, the relocation prefix
+ * or the input yields a new jar instead of reusing a stale one. As the original jars
+ * are kept, relocating them again never touches the network.
+ * <p>
+ * Jars relocated at build time are stored alongside, named after their own checksum.
+ * <p>
+ * Hashing a jar means reading all of it, so the hash of every input is remembered
+ * along with its size and modification time, and only computed again when either
+ * changes.
+ */
+final class RelocationCache {
+
+    /**
+     * The version of the relocated output. Bump it when the relocator changes the
+     * jars it produces, so that jars relocated by an older version are replaced.
+     */
+    private static final int FORMAT = 1;
+
+    private static final String INPUTS = "inputs.properties";
+    private static final int KEY_LENGTH = 16;
+
+    private final File directory;
+    private final String fingerprint;
+    private final Properties inputs = new Properties();
+    private final Set<String> used = ConcurrentHashMap.newKeySet();
+    private boolean dirty;
+
+    private RelocationCache(@NotNull final File directory, @NotNull final String fingerprint) {
+        this.directory = directory;
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Loads the cache stored in the given directory
+     *
+     * @param directory    The directory relocated jars are stored in
+     * @param relocations  The relocation rules
+     * @param storeClasses Whether relocated classes are stored uncompressed
+     * @return The cache
+     */
+    static @NotNull RelocationCache load(
+        @NotNull final File directory,
+        @NotNull final List<Relocation> relocations,
+        final boolean storeClasses
+    ) {
+        final RelocationCache cache = new RelocationCache(directory, fingerprint(relocations, storeClasses));
+        final File file = new File(directory, INPUTS);
+
+        if (file.isFile()) {
+            try (final InputStream stream = Files.newInputStream(file.toPath())) {
+                cache.inputs.load(stream);
+            } catch (final IOException ignored) {
+                cache.inputs.clear();
+            }
+        }
+
+        return cache;
+    }
+
+    /**
+     * Hashes the rules and options that affect the relocated output. Rules are
+     * hashed in order, as the first matching rule wins.
+     */
+    private static @NotNull String fingerprint(@NotNull final List<Relocation> relocations, final boolean storeClasses) {
+        final StringBuilder builder = new StringBuilder();
+
+        builder.append("format=").append(FORMAT).append('\n');
+        builder.append("store-classes=").append(storeClasses).append('\n');
+
+        for (final Relocation relocation : relocations) {
+            builder.append(relocation.getPattern()).append('\0').append(relocation.getNewPattern()).append('\n');
+        }
+
+        return toHex(sha256().digest(builder.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Returns the relocated jar of the given input, which may not exist yet. The
+     * payload stripped from it is part of its key, as it may differ between
+     * dependencies.
+     *
+     * @param input The original jar
+     * @param strip The payload stripped from the jar
+     * @return The relocated jar
+     * @throws IOException if the input could not be hashed
+     */
+    @NotNull File resolve(@NotNull final File input, @NotNull final Set<StripOption> strip) throws IOException {
+        final String source = hash(input) + fingerprint + (strip.isEmpty() ? "" : "\nstrip=" + new TreeSet<>(strip));
+        final String key = toHex(sha256().digest(source.getBytes(StandardCharsets.UTF_8))).substring(0, KEY_LENGTH);
+
+        final String name = input.getName();
+        final String base = name.endsWith(".jar") ? name.substring(0, name.length() - ".jar".length()) : name;
+        final String relocated = base + "-" + key + ".jar";
+
+        used.add(relocated);
+
+        return new File(directory, relocated);
+    }
+
+    /**
+     * Returns the jar of a dependency that was relocated at build time, which may
+     * not exist yet. It is named after its own checksum, as pinned by its lock.
+     *
+     * @param dependency The original dependency
+     * @param lock       The lockfile entry of the relocated jar
+     * @return The relocated jar
+     */
+    @NotNull File preRelocated(@NotNull final Dependency dependency, @NotNull final DependencyLock lock) {
+        final String relocated = String.format(
+            "%s.%s-%s%s-%s.jar",
+            dependency.getGroupId(),
+            dependency.getArtifactId(),
+            dependency.getVersion(),
+            dependency.getClassifier() == null ? "" : "-" + dependency.getClassifier(),
+            lock.getSha256().substring(0, KEY_LENGTH)
+        );
+
+        used.add(relocated);
+
+        return new File(directory, relocated);
+    }
+
+    /**
+     * Returns the SHA-256 of the given jar, computing it only if the jar changed
+     * since it was last hashed
+     */
+    private @NotNull String hash(@NotNull final File input) throws IOException {
+        final String stamp = input.length() + ":" + input.lastModified() + ":";
+        final String remembered = inputs.getProperty(input.getName());
+
+        if (remembered != null && remembered.startsWith(stamp)) {
+            return remembered.substring(stamp.length());
+        }
+
+        final MessageDigest digest = sha256();
+        final byte[] buffer = new byte[64 * 1024];
+
+        try (final InputStream stream = Files.newInputStream(input.toPath())) {
+            int read;
+
+            while ((read = stream.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+
+        final String hash = toHex(digest.digest());
+
+        inputs.setProperty(input.getName(), stamp + hash);
+        dirty = true;
+
+        return hash;
+    }
+
+    /**
+     * Deletes the relocated jars that were not {@link #resolve(File, Set) resolved} since
+     * the cache was loaded, such as jars relocated with older rules, along with the
+     * remembered hashes of inputs that no longer exist. This also deletes the jars
+     * relocated by older versions, which were stored in the given directory.
+     *
+     * @param libraries The directory original jars are stored in
+     */
+    void prune(@NotNull final File libraries) {
+        final File[] relocated = directory.listFiles((dir, name) -> name.endsWith(".jar") && !used.contains(name));
+
+        if (relocated != null) {
+            for (final File file : relocated) {
+                file.delete();
+            }
+        }
+
+        final File[] legacy = libraries.listFiles((dir, name) -> name.endsWith("-relocated.jar"));
+
+        if (legacy != null) {
+            for (final File file : legacy) {
+                file.delete();
+            }
+        }
+
+        for (final String name : inputs.stringPropertyNames()) {
+            if (!new File(libraries, name).isFile()) {
+                inputs.remove(name);
+                dirty = true;
+            }
+        }
+    }
+
+    /**
+     * Stores the remembered hashes, if any changed
+     *
+     * @throws IOException if the hashes could not be written
+     */
+    void save() throws IOException {
+        if (!dirty) {
+            return;
+        }
+
+        final Path target = new File(directory, INPUTS).toPath();
+
+        Files.createDirectories(target.getParent());
+
+        final Path temp = Files.createTempFile(target.getParent(), INPUTS, ".tmp");
+
+        try {
+            try (final OutputStream stream = Files.newOutputStream(temp)) {
+                inputs.store(stream, null);
+            }
+
+            try {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (final AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+
+        dirty = false;
+    }
+
+    private static @NotNull MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available.", e);
+        }
+    }
+
+    private static @NotNull String toHex(final byte @NotNull [] bytes) {
+        final StringBuilder builder = new StringBuilder(bytes.length * 2);
+
+        for (final byte value : bytes) {
+            builder.append(String.format("%02x", value));
+        }
+
+        return builder.toString();
+    }
+}
@@ -3,6 +3,7 @@ package revxrsal.zapper;
 import lombok.SneakyThrows;
 import org.jetbrains.annotations.NotNull;
 import revxrsal.zapper.relocation.Relocation;
+import revxrsal.zapper.relocation.StripOption;
 import revxrsal.zapper.repository.Repository;
 import revxrsal.zapper.util.ClassLoaderReader;
 
@@ -12,8 +13,12 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 public final class RuntimeLibPluginConfiguration {
@@ -23,19 +28,46 @@ public final class RuntimeLibPluginConfiguration {
     private final @NotNull List<Dependency> dependencies;
     private final @NotNull List<Repository> repositories;
     private final @NotNull List<Relocation> relocations;
+    private final @NotNull List<DependencyLock> locks;
+    private final @NotNull Map<String, List<Repository>> routes;
+    private final @NotNull Map<String, Repository> mirrors;
+    private final boolean storeRelocatedClasses;
+    private final boolean relocateOnLoad;
+    private final boolean indexClassPath;
+    private final boolean mapJars;
+    private final @NotNull Map<Dependency, DependencyLock> preRelocated;
+    private final @NotNull Map<String, Set<StripOption>> stripRules;
 
     RuntimeLibPluginConfiguration(
             @NotNull String libsFolder,
             @NotNull String relocationPrefix,
             @NotNull List<Dependency> dependencies,
             @NotNull List<Repository> repositories,
-            @NotNull List<Relocation> relocations
+            @NotNull List<Relocation> relocations,
+            @NotNull List<DependencyLock> locks,
+            @NotNull Map<String, List<Repository>> routes,
+            @NotNull Map<String, Repository> mirrors,
+            boolean storeRelocatedClasses,
+            boolean relocateOnLoad,
+            boolean indexClassPath,
+            boolean mapJars,
+            @NotNull Map<Dependency, DependencyLock> preRelocated,
+            @NotNull Map<String, Set<StripOption>> stripRules
     ) {
         this.libsFolder = libsFolder;
         this.relocationPrefix = relocationPrefix;
         this.dependencies = dependencies;
         this.repositories = repositories;
         this.relocations = relocations;
+        this.locks = locks;
+        this.routes = routes;
+        this.mirrors = mirrors;
+        this.storeRelocatedClasses = storeRelocatedClasses;
+        this.relocateOnLoad = relocateOnLoad;
+        this.indexClassPath = indexClassPath;
+        this.mapJars = mapJars;
+        this.preRelocated = preRelocated;
+        this.stripRules = stripRules;
     }
 
     public static @NotNull RuntimeLibPluginConfiguration parse() {
@@ -46,12 +78,30 @@ public final class RuntimeLibPluginConfiguration {
             List<Repository> repositories = parseRepositories();
             List<Dependency> dependencies = parseDependencies();
             List<Relocation> relocations = parseRelocations();
+            List<DependencyLock> locks = parseLocks();
+            Map<String, List<Repository>> routes = parseRoutes();
+            Map<String, Repository> mirrors = parseMirrors();
+            boolean storeRelocatedClasses = Boolean.parseBoolean(config.getProperty("store-relocated-classes"));
+            boolean relocateOnLoad = Boolean.parseBoolean(config.getProperty("relocate-on-load"));
+            boolean indexClassPath = Boolean.parseBoolean(config.getProperty("index-class-path"));
+            boolean mapJars = Boolean.parseBoolean(config.getProperty("map-jars"));
+            Map<Dependency, DependencyLock> preRelocated = parsePreRelocated();
+            Map<String, Set<StripOption>> stripRules = parseStripRules();
             return new RuntimeLibPluginConfiguration(
                     libsFolder,
                     relocationPrefix,
                     dependencies,
                     repositories,
-                    relocations
+                    relocations,
+                    locks,
+                    routes,
+                    mirrors,
+                    storeRelocatedClasses,
+                    relocateOnLoad,
+                    indexClassPath,
+                    mapJars,
+                    preRelocated,
+                    stripRules
             );
         } catch (IOException e) {
             throw new IllegalArgumentException("Generated Zapper files are missing. Have you applied the Gradle plugin?");
@@ -98,6 +148,94 @@ public final class RuntimeLibPluginConfiguration {
         return repos;
     }
 
+    /**
+     * Parses the artifacts relocated at build time, where each line is in the form of
+     * {@code group:artifact:version[:classifier] <relocated lockfile entry>}
+     */
+    private static @NotNull Map<Dependency, DependencyLock> parsePreRelocated() {
+        InputStream stream = ClassLoaderReader.getResource("zapper/prerelocated.txt");
+        if (stream == null)
+            return Collections.emptyMap();
+        Map<Dependency, DependencyLock> preRelocated = new LinkedHashMap<>();
+        for (String line : readAllLines(stream)) {
+            if (line.isBlank())
+                continue;
+            String[] split = line.trim().split("\\s+", 2);
+            String[] coordinates = split[0].split(":");
+            Dependency dependency = new Dependency(
+                    coordinates[0],
+                    coordinates[1],
+                    coordinates[2],
+                    coordinates.length == 4 ? coordinates[3] : null
+            );
+            preRelocated.put(dependency, DependencyLock.parse(split[1]));
+        }
+        return preRelocated;
+    }
+
+    /**
+     * Parses the payload to strip from dependencies, where each line is in the form of
+     * {@code groupId:artifactId OPTION,OPTION...}
+     */
+    private static @NotNull Map<String, Set<StripOption>> parseStripRules() {
+        InputStream stream = ClassLoaderReader.getResource("zapper/strip.txt");
+        if (stream == null)
+            return Collections.emptyMap();
+        Map<String, Set<StripOption>> rules = new LinkedHashMap<>();
+        for (String line : readAllLines(stream)) {
+            if (line.isBlank())
+                continue;
+            String[] split = line.trim().split("\\s+");
+            Set<StripOption> options = rules.computeIfAbsent(split[0], k -> EnumSet.noneOf(StripOption.class));
+            for (String option : split[1].split(","))
+                options.add(StripOption.valueOf(option.trim()));
+        }
+        return rules;
+    }
+
+    private static @NotNull List<DependencyLock> parseLocks() {
+        InputStream stream = ClassLoaderReader.getResource("zapper/lockfile.txt");
+        if (stream == null)
+            return Collections.emptyList();
+        List<DependencyLock> locks = new ArrayList<>();
+        for (String line : readAllLines(stream)) {
+            if (line.isBlank())
+                continue;
+            locks.add(DependencyLock.parse(line));
+        }
+        return locks;
+    }
+
+    private static @NotNull Map<String, List<Repository>> parseRoutes() {
+        InputStream stream = ClassLoaderReader.getResource("zapper/routes.txt");
+        if (stream == null)
+            return Collections.emptyMap();
+        Map<String, List<Repository>> routes = new LinkedHashMap<>();
+        for (String line : readAllLines(stream)) {
+            if (line.isBlank())
+                continue;
+            String[] split = line.trim().split("\\s+");
+            List<Repository> repos = routes.computeIfAbsent(split[0], k -> new ArrayList<>());
+            for (int i = 1; i < split.length; i++)
+                repos.add(Repository.maven(split[i]));
+        }
+        return routes;
+    }
+
+    private static @NotNull Map<String, Repository> parseMirrors() {
+        InputStream stream = ClassLoaderReader.getResource("zapper/mirrors.txt");
+        if (stream == null)
+            return Collections.emptyMap();
+        Map<String, Repository> mirrors = new LinkedHashMap<>();
+        for (String line : readAllLines(stream)) {
+            if (line.isBlank())
+                continue;
+            String[] split = line.trim().split("\\s+");
+            mirrors.put(split[0], Repository.maven(split[1]));
+        }
+        return mirrors;
+    }
+
     private static @SneakyThrows @NotNull Properties parseProperties() {
         Properties properties = new Properties();
         try (InputStream stream = ClassLoaderReader.getResource("zapper/zapper.properties")) {
@@ -132,7 +270,43 @@ public final class RuntimeLibPluginConfiguration {
         return this.relocations;
     }
 
+    public @NotNull List<DependencyLock> getLocks() {
+        return this.locks;
+    }
+
+    public @NotNull Map<String, List<Repository>> getRoutes() {
+        return this.routes;
+    }
+
+    public @NotNull Map<String, Repository> getMirrors() {
+        return this.mirrors;
+    }
+
+    public boolean isStoreRelocatedClasses() {
+        return this.storeRelocatedClasses;
+    }
+
+    public boolean isRelocateOnLoad() {
+        return this.relocateOnLoad;
+    }
+
+    public boolean isIndexClassPath() {
+        return this.indexClassPath;
+    }
+
+    public boolean isMapJars() {
+        return this.mapJars;
+    }
+
+    public @NotNull Map<Dependency, DependencyLock> getPreRelocated() {
+        return this.preRelocated;
+    }
+
+    public @NotNull Map<String, Set<StripOption>> getStripRules() {
+        return this.stripRules;
+    }
+
     public String toString() {
-        return "RuntimeLibPluginConfiguration(libsFolder=" + this.getLibsFolder() + ", relocationPrefix=" + this.getRelocationPrefix() + ", dependencies=" + this.getDependencies() + ", repositories=" + this.getRepositories() + ", relocations=" + this.getRelocations() + ")";
+        return "RuntimeLibPluginConfiguration(libsFolder=" + this.getLibsFolder() + ", relocationPrefix=" + this.getRelocationPrefix() + ", dependencies=" + this.getDependencies() + ", repositories=" + this.getRepositories() + ", relocations=" + this.getRelocations() + ", locks=" + this.getLocks() + ", routes=" + this.getRoutes() + ", mirrors=" + this.getMirrors() + ", storeRelocatedClasses=" + this.isStoreRelocatedClasses() + ", relocateOnLoad=" + this.isRelocateOnLoad() + ", indexClassPath=" + this.isIndexClassPath() + ", mapJars=" + this.isMapJars() + ", preRelocated=" + this.getPreRelocated() + ", stripRules=" + this.getStripRules() + ")";
     }
 }
@@ -40,6 +40,15 @@ public abstract class ZapperPlugin extends JavaPlugin {
         config.getDependencies().forEach(manager::dependency);
         config.getRepositories().forEach(manager::repository);
         config.getRelocations().forEach(manager::relocate);
+        config.getLocks().forEach(manager::lock);
+        config.getRoutes().forEach(manager::route);
+        config.getMirrors().forEach(manager::mirror);
+        manager.storeRelocatedClasses(config.isStoreRelocatedClasses());
+        manager.relocateOnLoad(config.isRelocateOnLoad());
+        manager.indexClassPath(config.isIndexClassPath());
+        manager.mapJars(config.isMapJars());
+        config.getPreRelocated().forEach(manager::preRelocated);
+        config.getStripRules().forEach(manager::strip);
 
         manager.load();
     }
@@ -0,0 +1,597 @@
+/*
+ * This file is part of Zapper, licensed under the MIT License.
+ *
+ *  Copyright (c) Revxrsal <reflxction.github@gmail.com>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package revxrsal.zapper.classloader;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import revxrsal.zapper.relocation.ZipReader;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLDecoder;
+import java.net.URLStreamHandler;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.ZipFile;
+
+/**
+ * Serves the entries of all dependency jars from a single URL, looking each one up
+ * in a package index instead of searching the jars one by one.
+ * <p>
+ * A {@link java.net.URLClassLoader} searches its URLs in order for every class and
+ * resource it loads, so each lookup that misses opens every jar that was added to
+ * it. Instead, the jars are added here, and the class loader only gets the URL of
+ * this class path, which ends with a slash, so that the class loader treats it as
+ * a directory: it resolves names against the URL and opens them, and this looks up
+ * the jars that have the package of each name. Lookups of packages that no jar has
+ * fail on the index alone, which makes the index its own negative cache.
+ * <p>
+ * The packages of every jar are persisted along with its size and modification
+ * time, so jars are only listed when they change, and only opened once a class or
+ * resource of one of their packages is loaded. Jars are opened as multi-release
+ * jars for the running Java version.
+ * <p>
+ * Jars may also be {@link ZipReader#map(java.nio.file.Path) mapped} into memory, so
+ * that classes are read straight from the mapped region instead of through the
+ * small buffered reads of {@link JarFile}. Classes stored uncompressed, as relocated
+ * jars may store them, are then never copied until the class loader reads them.
+ * <p>
+ * Like a shaded jar, the class path serves the first jar's copy of a resource that
+ * several jars have, except for {@code META-INF/services} files, which are merged
+ * so that service providers of every jar can be found. Since the class loader only
+ * sees a directory, it defines packages without the manifest of their jar, and
+ * the code source of every class is the URL of the class path.
+ */
+public final class DependencyClassPath extends URLStreamHandler {
+
+    private static final String PROTOCOL = "zapper";
+    private static final String SERVICES = "META-INF/services/";
+    private static final String VERSIONS = "META-INF/versions/";
+    private static final AtomicInteger IDS = new AtomicInteger();
+
+    private final File indexFile;
+    private final Properties index = new Properties();
+    private final Properties updatedIndex = new Properties();
+    private final Map<String, Source[]> packages = new ConcurrentHashMap<>();
+    private final String base = "/classpath/" + IDS.incrementAndGet() + "/";
+    private final boolean mapJars;
+    private boolean dirty;
+
+    private DependencyClassPath(@NotNull final File indexFile, final boolean mapJars) {
+        this.indexFile = indexFile;
+        this.mapJars = mapJars;
+    }
+
+    /**
+     * Creates a class path, loading the persisted index from the given file. If it
+     * does not exist or cannot be read, the index starts empty.
+     *
+     * @param indexFile The file to load the index from (and save it to)
+     * @return The class path
+     */
+    public static @NotNull DependencyClassPath load(@NotNull final File indexFile) {
+        return load(indexFile, false);
+    }
+
+    /**
+     * Creates a class path, loading the persisted index from the given file. If it
+     * does not exist or cannot be read, the index starts empty.
+     *
+     * @param indexFile The file to load the index from (and save it to)
+     * @param mapJars   Whether to map jars into memory instead of reading them as {@link JarFile}s
+     * @return The class path
+     */
+    public static @NotNull DependencyClassPath load(@NotNull final File indexFile, final boolean mapJars) {
+        final DependencyClassPath classPath = new DependencyClassPath(indexFile, mapJars);
+
+        if (!indexFile.isFile()) {
+            return classPath;
+        }
+
+        try (final InputStream stream = Files.newInputStream(indexFile.toPath())) {
+            classPath.index.load(stream);
+        } catch (final IOException ignored) {
+            classPath.index.clear();
+        }
+
+        return classPath;
+    }
+
+    /**
+     * Returns the URL to add to a class loader
+     *
+     * @return The URL
+     */
+    public @NotNull URL getURL() {
+        try {
+            return URL.of(URI.create(PROTOCOL + ":" + base), this);
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Adds a jar to the end of the class path
+     *
+     * @param jar The jar
+     * @throws IOException if the jar had to be listed and could not be read
+     */
+    public void add(@NotNull final File jar) throws IOException {
+        register(mapJars ? new MappedJarSource(jar) : new JarSource(jar), packagesOf(jar));
+    }
+
+    /**
+     * Adds a jar served from a URL to the end of the class path
+     *
+     * @param entry The jar
+     */
+    public void add(@NotNull final ClassPathEntry entry) {
+        final Set<String> names = new LinkedHashSet<>();
+
+        for (final String name : entry.getEntryNames()) {
+            names.add(packageOf(name));
+        }
+
+        register(new EntrySource(entry), names);
+    }
+
+    private void register(@NotNull final Source source, @NotNull final Collection<String> names) {
+        for (final String name : names) {
+            packages.merge(name, new Source[] {source}, (sources, added) -> {
+                final Source[] merged = Arrays.copyOf(sources, sources.length + 1);
+
+                merged[sources.length] = source;
+
+                return merged;
+            });
+        }
+    }
+
+    /**
+     * Returns the packages of a jar, listing it only if it changed since it was
+     * last indexed
+     */
+    private @NotNull Collection<String> packagesOf(@NotNull final File jar) throws IOException {
+        final String key = jar.getAbsolutePath();
+        final String stamp = jar.length() + ":" + jar.lastModified() + ":";
+        final String remembered = index.getProperty(key);
+
+        if (remembered != null && remembered.startsWith(stamp)) {
+            updatedIndex.setProperty(key, remembered);
+
+            return Arrays.asList(remembered.substring(stamp.length()).split(",", -1));
+        }
+
+        final Set<String> names = new LinkedHashSet<>();
+
+        try (final ZipFile zip = new ZipFile(jar)) {
+            zip.stream().forEach(entry -> names.add(packageOf(entry.getName())));
+        }
+
+        updatedIndex.setProperty(key, stamp + String.join(",", names));
+        dirty = true;
+
+        return names;
+    }
+
+    /**
+     * Returns the package of an entry, as a directory name without a trailing
+     * slash. Multi-release entries belong to the package of their base entry.
+     */
+    private static @NotNull String packageOf(@NotNull String name) {
+        if (name.startsWith(VERSIONS)) {
+            final int slash = name.indexOf('/', VERSIONS.length());
+
+            if (slash != -1) {
+                name = name.substring(slash + 1);
+            }
+        }
+
+        final int end = name.endsWith("/") ? name.length() - 1 : name.length();
+        final int slash = name.lastIndexOf('/', end - 1);
+
+        return slash == -1 ? "" : name.substring(0, slash);
+    }
+
+    /**
+     * Saves the index, if any jar was listed or removed since it was loaded.
+     * Failures are ignored, as the index is merely an optimization.
+     */
+    public void save() {
+        if (!dirty && updatedIndex.keySet().equals(index.keySet())) {
+            return;
+        }
+
+        try {
+            final Path target = indexFile.toPath();
+
+            Files.createDirectories(target.getParent());
+
+            final Path temp = Files.createTempFile(target.getParent(), indexFile.getName(), ".tmp");
+
+            try {
+                try (final OutputStream stream = Files.newOutputStream(temp)) {
+                    updatedIndex.store(stream, "Zapper class path index");
+                }
+
+                try {
+                    Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (final AtomicMoveNotSupportedException e) {
+                    Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+
+            index.clear();
+            index.putAll(updatedIndex);
+            dirty = false;
+        } catch (final IOException ignored) {}
+    }
+
+    @Override
+    protected URLConnection openConnection(final URL url) throws IOException {
+        final String path = url.getPath();
+
+        if (!path.startsWith(base)) {
+            throw new FileNotFoundException(url.toString());
+        }
+
+        final String name = URLDecoder.decode(path.substring(base.length()).replace("+", "%2B"), StandardCharsets.UTF_8);
+        final Source[] sources = packages.get(packageOf(name));
+
+        if (sources == null) {
+            throw new FileNotFoundException(url.toString());
+        }
+
+        if (sources.length > 1 && name.startsWith(SERVICES)) {
+            return mergeServices(url, name, sources);
+        }
+
+        for (final Source source : sources) {
+            final URLConnection connection = source.open(url, name);
+
+            if (connection != null) {
+                return connection;
+            }
+        }
+
+        throw new FileNotFoundException(url.toString());
+    }
+
+    /**
+     * Concatenates the service files of all jars that have one
+     */
+    private @NotNull URLConnection mergeServices(
+        @NotNull final URL url,
+        @NotNull final String name,
+        @NotNull final Source @NotNull [] sources
+    ) throws IOException {
+        final ByteArrayOutputStream merged = new ByteArrayOutputStream();
+
+        for (final Source source : sources) {
+            final URLConnection connection = source.open(url, name);
+
+            if (connection == null) {
+                continue;
+            }
+
+            try (final InputStream stream = connection.getInputStream()) {
+                stream.transferTo(merged);
+            }
+
+            merged.write('\n');
+        }
+
+        if (merged.size() == 0) {
+            throw new FileNotFoundException(url.toString());
+        }
+
+        return new BytesConnection(url, merged.toByteArray());
+    }
+
+    /**
+     * A jar on the class path
+     */
+    private interface Source {
+
+        /**
+         * Opens an entry of this jar
+         *
+         * @return The connection, or {@code null} if the jar has no such entry
+         */
+        @Nullable URLConnection open(@NotNull URL url, @NotNull String name) throws IOException;
+    }
+
+    /**
+     * A jar file, which is opened the first time one of its entries is looked up
+     */
+    private static final class JarSource implements Source {
+
+        private final File file;
+        private volatile JarFile jar;
+
+        private JarSource(@NotNull final File file) {
+            this.file = file;
+        }
+
+        private @NotNull JarFile jar() throws IOException {
+            JarFile jar = this.jar;
+
+            if (jar == null) {
+                synchronized (this) {
+                    jar = this.jar;
+
+                    if (jar == null) {
+                        jar = new JarFile(file, false, ZipFile.OPEN_READ, Runtime.version());
+                        this.jar = jar;
+                    }
+                }
+            }
+
+            return jar;
+        }
+
+        @Override
+        public @Nullable URLConnection open(@NotNull final URL url, @NotNull final String name) throws IOException {
+            final JarFile jar = jar();
+            final JarEntry entry = jar.getJarEntry(name);
+
+            return entry == null ? null : new JarEntryConnection(url, jar, entry, file.lastModified());
+        }
+    }
+
+    /**
+     * A jar file mapped into memory, which is mapped the first time one of its
+     * entries is looked up
+     */
+    private static final class MappedJarSource implements Source {
+
+        private final File file;
+        private volatile Map<String, ZipReader.Entry> entries;
+        private ZipReader zip;
+
+        private MappedJarSource(@NotNull final File file) {
+            this.file = file;
+        }
+
+        private @NotNull Map<String, ZipReader.Entry> entries() throws IOException {
+            Map<String, ZipReader.Entry> entries = this.entries;
+
+            if (entries == null) {
+                synchronized (this) {
+                    entries = this.entries;
+
+                    if (entries == null) {
+                        zip = ZipReader.map(file.toPath());
+                        entries = index(zip);
+                        this.entries = entries;
+                    }
+                }
+            }
+
+            return entries;
+        }
+
+        /**
+         * Maps the names of entries to the entries served for them. The entries of a
+         * multi-release jar for the running Java version replace their base entries,
+         * as they do in a {@link JarFile} opened for that version.
+         */
+        private static @NotNull Map<String, ZipReader.Entry> index(@NotNull final ZipReader zip) throws IOException {
+            final Map<String, ZipReader.Entry> entries = new HashMap<>();
+            final Map<String, Integer> versions = new HashMap<>();
+
+            for (final ZipReader.Entry entry : zip.entries()) {
+                entries.putIfAbsent(entry.getName(), entry);
+            }
+
+            if (!isMultiRelease(zip, entries.get(JarFile.MANIFEST_NAME))) {
+                return entries;
+            }
+
+            final int feature = Runtime.version().feature();
+
+            for (final ZipReader.Entry entry : zip.entries()) {
+                final String name = entry.getName();
+                final int slash = name.startsWith(VERSIONS) ? name.indexOf('/', VERSIONS.length()) : -1;
+
+                if (slash == -1) {
+                    continue;
+                }
+
+                final int version;
+
+                try {
+                    version = Integer.parseInt(name.substring(VERSIONS.length(), slash));
+                } catch (final NumberFormatException e) {
+                    continue;
+                }
+
+                final String baseName = name.substring(slash + 1);
+
+                if (version <= feature && !baseName.isEmpty() && version > versions.getOrDefault(baseName, 0)) {
+                    versions.put(baseName, version);
+                    entries.put(baseName, entry);
+                }
+            }
+
+            return entries;
+        }
+
+        private static boolean isMultiRelease(@NotNull final ZipReader zip, @Nullable final ZipReader.Entry manifest) throws IOException {
+            if (manifest == null) {
+                return false;
+            }
+
+            try (final InputStream stream = zip.open(manifest)) {
+                return Boolean.parseBoolean(new Manifest(stream).getMainAttributes().getValue(Attributes.Name.MULTI_RELEASE));
+            }
+        }
+
+        @Override
+        public @Nullable URLConnection open(@NotNull final URL url, @NotNull final String name) throws IOException {
+            final ZipReader.Entry entry = entries().get(name);
+
+            return entry == null ? null : new MappedEntryConnection(url, zip, entry, file.lastModified());
+        }
+    }
+
+    /**
+     * A jar served by a {@link ClassPathEntry}, such as a jar relocated as it is loaded
+     */
+    private static final class EntrySource implements Source {
+
+        private final ClassPathEntry entry;
+
+        private EntrySource(@NotNull final ClassPathEntry entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public @Nullable URLConnection open(@NotNull final URL url, @NotNull final String name) throws IOException {
+            return entry.open(url, name);
+        }
+    }
+
+    private static final class JarEntryConnection extends URLConnection {
+
+        private final JarFile jar;
+        private final JarEntry entry;
+        private final long lastModified;
+
+        private JarEntryConnection(@NotNull final URL url, @NotNull final JarFile jar, @NotNull final JarEntry entry, final long lastModified) {
+            super(url);
+
+            this.jar = jar;
+            this.entry = entry;
+            this.lastModified = lastModified;
+        }
+
+        @Override
+        public void connect() {
+            connected = true;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return jar.getInputStream(entry);
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return entry.getSize();
+        }
+
+        @Override
+        public long getLastModified() {
+            return lastModified;
+        }
+    }
+
+    private static final class MappedEntryConnection extends URLConnection {
+
+        private final ZipReader zip;
+        private final ZipReader.Entry entry;
+        private final long lastModified;
+
+        private MappedEntryConnection(@NotNull final URL url, @NotNull final ZipReader zip, @NotNull final ZipReader.Entry entry, final long lastModified) {
+            super(url);
+
+            this.zip = zip;
+            this.entry = entry;
+            this.lastModified = lastModified;
+        }
+
+        @Override
+        public void connect() {
+            connected = true;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return entry.isDirectory() ? new ByteArrayInputStream(new byte[0]) : zip.open(entry);
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return entry.getSize();
+        }
+
+        @Override
+        public long getLastModified() {
+            return lastModified;
+        }
+    }
+
+    private static final class BytesConnection extends URLConnection {
+
+        private final byte[] content;
+
+        private BytesConnection(@NotNull final URL url, final byte @NotNull [] content) {
+            super(url);
+
+            this.content = content;
+        }
+
+        @Override
+        public void connect() {
+            connected = true;
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return new ByteArrayInputStream(content);
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return content.length;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package revxrsal.zapper.metadata;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A comparable Maven version, following the same ordering rules as Maven's
+ * {@code ComparableVersion} for the common cases:
+ * <ul>
+ *     <li>numeric parts are compared numerically ({@code 1.10 > 1.9})</li>
+ *     <li>trailing zeros are insignificant ({@code 1.0 == 1})</li>
+ *     <li>qualifiers are ordered as {@code alpha < beta < milestone < rc < snapshot < (release) < sp},
+ *     and unknown qualifiers come after them, in lexical order</li>
+ * </ul>
+ */
+public final class MavenVersion implements Comparable<MavenVersion> {
+
+    private static final List<String> QUALIFIERS = Arrays.asList(
+            "alpha", "beta", "milestone", "rc", "snapshot", "", "sp"
+    );
+
+    private static final int RELEASE = QUALIFIERS.indexOf("");
+
+    private final String version;
+    private final List<Object> items;
+
+    private MavenVersion(@NotNull String version) {
+        this.version = version;
+        this.items = tokenize(version.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Parses the given version
+     *
+     * @param version The version string
+     * @return The parsed version
+     */
+    public static @NotNull MavenVersion parse(@NotNull String version) {
+        return new MavenVersion(version);
+    }
+
+    /**
+     * Tests whether this version is a snapshot
+     *
+     * @return if this is a snapshot version
+     */
+    public boolean isSnapshot() {
+        return version.endsWith("SNAPSHOT");
+    }
+
+    private static @NotNull List<Object> tokenize(@NotNull String version) {
+        List<Object> items = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i <= version.length(); i++) {
+            boolean end = i == version.length();
+            char c = end ? 0 : version.charAt(i);
+            boolean separator = c == '.' || c == '-' || c == '_';
+            boolean transition = !end && !separator && i > start
+                    && Character.isDigit(c) != Character.isDigit(version.charAt(i - 1));
+            if (end || separator || transition) {
+                if (i > start)
+                    items.add(item(version.substring(start, i)));
+                start = transition ? i : i + 1;
+            }
+        }
+        // trailing zeros and release qualifiers are insignificant: 1.0.0 == 1 == 1-final
+        while (!items.isEmpty() && isNull(items.get(items.size() - 1)))
+            items.remove(items.size() - 1);
+        return items;
+    }
+
+    private static @NotNull Object item(@NotNull String token) {
+        if (Character.isDigit(token.charAt(0)))
+            return new BigInteger(token);
+        switch (token) {
+            case "a":
+                return "alpha";
+            case "b":
+                return "beta";
+            case "m":
+                return "milestone";
+            case "cr":
+                return "rc";
+            case "ga":
+            case "final":
+            case "release":
+                return "";
+            default:
+                return token;
+        }
+    }
+
+    private static boolean isNull(Object item) {
+        return item instanceof BigInteger ? ((BigInteger) item).signum() == 0 : item.equals("");
+    }
+
+    @Override
+    public int compareTo(@NotNull MavenVersion other) {
+        int length = Math.max(items.size(), other.items.size());
+        for (int i = 0; i < length; i++) {
+            Object left = i < items.size() ? items.get(i) : null;
+            Object right = i < other.items.size() ? other.items.get(i) : null;
+            int result = compare(left, right);
+            if (result != 0)
+                return result;
+        }
+        return 0;
+    }
+
+    private static int compare(Object left, Object right) {
+        if (left == null)
+            return -compare(right, null);
+        if (left instanceof BigInteger) {
+            if (right == null)
+                return ((BigInteger) left).signum();
+            if (right instanceof BigInteger)
+                return ((BigInteger) left).compareTo((BigInteger) right);
+            return 1; // 1.1 > 1-alpha
+        }
+        String qualifier = (String) left;
+        if (right == null)
+            return Integer.compare(rank(qualifier), RELEASE);
+        if (right instanceof BigInteger)
+            return -1;
+        String otherQualifier = (String) right;
+        int result = Integer.compare(rank(qualifier), rank(otherQualifier));
+        if (result == 0 && rank(qualifier) == QUALIFIERS.size())
+            return qualifier.compareTo(otherQualifier);
+        return result;
+    }
+
+    private static int rank(@NotNull String qualifier) {
+        int index = QUALIFIERS.indexOf(qualifier);
+        return index == -1 ? QUALIFIERS.size() : index;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof MavenVersion)) return false;
+        return compareTo((MavenVersion) o) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return items.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return version;
+    }
+}
@@ -0,0 +1,273 @@
+package revxrsal.zapper.metadata;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import revxrsal.zapper.util.Connections;
+import revxrsal.zapper.util.SingleFlight;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A cache for repository metadata files (such as {@code maven-metadata.xml}),
+ * kept in memory and, optionally, on disk.
+ * <p>
+ * Entries on disk are reused across boots for as long as they are younger than
+ * the configured TTL. Missing files are cached as well, so that repositories that
+ * do not host an artifact are not asked again until the TTL expires.
+ * <p>
+ * The {@code ETag} and {@code Last-Modified} headers of every response are stored
+ * next to it, so that stale entries are revalidated with a conditional request.
+ * An unchanged file then costs a {@code 304 Not Modified} rather than a full
+ * transfer. If a stale entry cannot be refreshed (e.g. because the server is
+ * offline), it is used as is.
+ */
+public final class MetadataCache {
+
+    /**
+     * The default TTL of cached metadata, which matches Maven's daily update policy
+     */
+    public static final Duration DEFAULT_TTL = Duration.ofHours(24);
+
+    /**
+     * The default TTL of cached snapshot metadata. This is shorter than {@link #DEFAULT_TTL},
+     * as snapshots are expected to change frequently. Revalidating them is cheap
+     * thanks to conditional requests.
+     */
+    public static final Duration DEFAULT_SNAPSHOT_TTL = Duration.ofHours(1);
+
+    /**
+     * The minimum time entries stay fresh in memory, so that lookups made while
+     * loading the same set of dependencies are never repeated, even with a TTL of zero
+     */
+    private static final long MIN_MEMORY_TTL = TimeUnit.SECONDS.toMillis(30);
+
+    private static final String ETAG = "etag";
+    private static final String LAST_MODIFIED = "last-modified";
+
+    /**
+     * Marks a metadata file that does not exist in the repository
+     */
+    private static final byte[] MISSING = new byte[0];
+
+    private final @Nullable File directory;
+    private final long ttl;
+    private final Map<String, Entry> memory = new ConcurrentHashMap<>();
+
+    /**
+     * The metadata files currently being loaded, so that concurrent lookups of
+     * the same file issue a single request. Each cache has its own, as caches
+     * with different directories or TTLs must not share each other's loads.
+     */
+    private final SingleFlight<Entry> loads = new SingleFlight<>();
+
+    /**
+     * Creates a new {@link MetadataCache}
+     *
+     * @param directory The directory to store metadata in, or {@code null} to keep it
+     *                  in memory only
+     * @param ttl       How long cached metadata stays fresh
+     */
+    public MetadataCache(@Nullable File directory, @NotNull Duration ttl) {
+        this.directory = directory;
+        this.ttl = ttl.toMillis();
+    }
+
+    /**
+     * Returns the content of the given metadata URL, from the cache if it is
+     * fresh, or from the network otherwise.
+     *
+     * @param url The metadata URL
+     * @return The metadata content
+     * @throws FileNotFoundException if the repository does not have this file
+     * @throws IOException           if the metadata could not be fetched and is not cached
+     */
+    public byte @NotNull [] fetch(@NotNull URL url) throws IOException {
+        String key = url.toString();
+        Entry entry = memory.get(key);
+        if (entry == null || !entry.isFresh(ttl)) {
+            entry = coalesce(url, key);
+            memory.put(key, entry);
+        }
+        if (entry.content == MISSING)
+            throw new FileNotFoundException(key);
+        return entry.content;
+    }
+
+    /**
+     * Discards all cached entries, both in memory and on disk
+     */
+    public void invalidate() {
+        memory.clear();
+        File[] files = directory == null ? null : directory.listFiles();
+        if (files == null)
+            return;
+        for (File file : files)
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+    }
+
+    private @NotNull Entry coalesce(@NotNull URL url, @NotNull String key) throws IOException {
+        try {
+            return loads.run(key, () -> load(url, key));
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    private @NotNull Entry load(@NotNull URL url, @NotNull String key) throws IOException {
+        File file = file(key);
+        long now = System.currentTimeMillis();
+        if (file != null && file.isFile() && now - file.lastModified() < ttl)
+            return new Entry(read(file), file.lastModified());
+        try {
+            URLConnection connection = Connections.open(url);
+            boolean conditional = file != null && file.isFile() && addValidators(connection, validatorsOf(file));
+            if (conditional && ((HttpURLConnection) connection).getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                //noinspection ResultOfMethodCallIgnored
+                file.setLastModified(now);
+                return new Entry(read(file), now);
+            }
+            byte[] content;
+            try (InputStream stream = Connections.body(connection)) {
+                content = stream.readAllBytes();
+            }
+            store(file, content, connection);
+            return new Entry(content, now);
+        } catch (FileNotFoundException e) {
+            store(file, MISSING, null);
+            return new Entry(MISSING, now);
+        } catch (IOException e) {
+            if (file != null && file.isFile())
+                return new Entry(read(file), now);
+            throw e;
+        }
+    }
+
+    /**
+     * Adds the conditional request headers to the connection
+     *
+     * @return if any header was added
+     */
+    private static boolean addValidators(@NotNull URLConnection connection, @NotNull Properties validators) {
+        if (!(connection instanceof HttpURLConnection))
+            return false;
+        String etag = validators.getProperty(ETAG);
+        String lastModified = validators.getProperty(LAST_MODIFIED);
+        if (etag != null)
+            connection.setRequestProperty("If-None-Match", etag);
+        if (lastModified != null)
+            connection.setRequestProperty("If-Modified-Since", lastModified);
+        return etag != null || lastModified != null;
+    }
+
+    private static byte @NotNull [] read(@NotNull File file) throws IOException {
+        byte[] content = Files.readAllBytes(file.toPath());
+        return content.length == 0 ? MISSING : content;
+    }
+
+    private static @NotNull Properties validatorsOf(@NotNull File file) {
+        Properties validators = new Properties();
+        File headers = headersOf(file);
+        if (headers.isFile()) {
+            try (InputStream stream = Files.newInputStream(headers.toPath())) {
+                validators.load(stream);
+            } catch (IOException ignored) {
+            }
+        }
+        return validators;
+    }
+
+    private static void store(@Nullable File file, byte @NotNull [] content, @Nullable URLConnection connection) {
+        if (file == null)
+            return;
+        try {
+            write(file, content);
+            Properties validators = new Properties();
+            if (connection != null) {
+                String etag = connection.getHeaderField("ETag");
+                String lastModified = connection.getHeaderField("Last-Modified");
+                if (etag != null)
+                    validators.setProperty(ETAG, etag);
+                if (lastModified != null)
+                    validators.setProperty(LAST_MODIFIED, lastModified);
+            }
+            File headers = headersOf(file);
+            if (validators.isEmpty()) {
+                Files.deleteIfExists(headers.toPath());
+            } else {
+                try (OutputStream stream = Files.newOutputStream(headers.toPath())) {
+                    validators.store(stream, null);
+                }
+            }
+        } catch (IOException ignored) {
+            // The cache is best-effort. We will simply fetch it again next time.
+        }
+    }
+
+    private static void write(@NotNull File file, byte @NotNull [] content) throws IOException {
+        Files.createDirectories(file.getParentFile().toPath());
+        Path temp = Files.createTempFile(file.getParentFile().toPath(), file.getName(), ".tmp");
+        Files.write(temp, content);
+        try {
+            Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static @NotNull File headersOf(@NotNull File file) {
+        return new File(file.getParentFile(), file.getName() + ".headers");
+    }
+
+    private @Nullable File file(@NotNull String key) {
+        if (directory == null)
+            return null;
+        return new File(directory, hash(key) + ".xml");
+    }
+
+    private static @NotNull String hash(@NotNull String key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest(key.getBytes(StandardCharsets.UTF_8));
+            return String.format("%040x", new BigInteger(1, hash));
+        } catch (Exception e) {
+            return Integer.toHexString(key.hashCode());
+        }
+    }
+
+    private static final class Entry {
+
+        private final byte[] content;
+        private final long fetchedAt;
+
+        private Entry(byte @NotNull [] content, long fetchedAt) {
+            this.content = content;
+            this.fetchedAt = fetchedAt;
+        }
+
+        private boolean isFresh(long ttl) {
+            return System.currentTimeMillis() - fetchedAt < Math.max(ttl, MIN_MEMORY_TTL);
+        }
+    }
+}
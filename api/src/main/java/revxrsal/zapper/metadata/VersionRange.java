@@ -0,0 +1,158 @@
+package revxrsal.zapper.metadata;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Represents a Maven version range, such as {@code [1.2,2.0)}, {@code (,1.0]},
+ * {@code [1.5]} or a union of them, such as {@code [1.0,1.2),[1.5,)}.
+ */
+public final class VersionRange {
+
+    /**
+     * The keyword resolving to the newest version, including snapshots
+     */
+    public static final String LATEST = "LATEST";
+
+    /**
+     * The keyword resolving to the newest non-snapshot version
+     */
+    public static final String RELEASE = "RELEASE";
+
+    private final String spec;
+    private final List<Restriction> restrictions;
+
+    private VersionRange(@NotNull String spec, @NotNull List<Restriction> restrictions) {
+        this.spec = spec;
+        this.restrictions = restrictions;
+    }
+
+    /**
+     * Tests whether the given version is not a concrete version, but a range
+     * or one of the {@link #LATEST} and {@link #RELEASE} keywords, and therefore
+     * has to be resolved against the repository metadata.
+     *
+     * @param version The version to test
+     * @return if the version is dynamic
+     */
+    public static boolean isDynamic(@NotNull String version) {
+        return version.equals(LATEST) || version.equals(RELEASE) || version.startsWith("[") || version.startsWith("(");
+    }
+
+    /**
+     * Parses the given version range
+     *
+     * @param spec The range specification
+     * @return The parsed range
+     * @throws IllegalArgumentException if the range is malformed
+     */
+    @Contract("_ -> new")
+    public static @NotNull VersionRange parse(@NotNull String spec) {
+        List<Restriction> restrictions = new ArrayList<>();
+        String remaining = spec.trim();
+        while (!remaining.isEmpty()) {
+            char open = remaining.charAt(0);
+            if (open != '[' && open != '(')
+                throw new IllegalArgumentException("Malformed version range: '" + spec + "'.");
+            int close = indexOfClose(remaining);
+            if (close == -1)
+                throw new IllegalArgumentException("Unbounded version range: '" + spec + "'.");
+            restrictions.add(Restriction.parse(spec, remaining.substring(0, close + 1)));
+            remaining = remaining.substring(close + 1).trim();
+            if (remaining.startsWith(","))
+                remaining = remaining.substring(1).trim();
+        }
+        if (restrictions.isEmpty())
+            throw new IllegalArgumentException("Empty version range: '" + spec + "'.");
+        return new VersionRange(spec, Collections.unmodifiableList(restrictions));
+    }
+
+    private static int indexOfClose(@NotNull String value) {
+        for (int i = 1; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ']' || c == ')')
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Tests whether this range contains the given version
+     *
+     * @param version The version to test
+     * @return if the version is in this range
+     */
+    public boolean contains(@NotNull MavenVersion version) {
+        for (Restriction restriction : restrictions) {
+            if (restriction.contains(version))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Tests whether this range contains the given version
+     *
+     * @param version The version to test
+     * @return if the version is in this range
+     */
+    public boolean contains(@NotNull String version) {
+        return contains(MavenVersion.parse(version));
+    }
+
+    @Override
+    public String toString() {
+        return spec;
+    }
+
+    private static final class Restriction {
+
+        private final @Nullable MavenVersion lower, upper;
+        private final boolean lowerInclusive, upperInclusive;
+
+        private Restriction(@Nullable MavenVersion lower, boolean lowerInclusive, @Nullable MavenVersion upper, boolean upperInclusive) {
+            this.lower = lower;
+            this.lowerInclusive = lowerInclusive;
+            this.upper = upper;
+            this.upperInclusive = upperInclusive;
+        }
+
+        private static @NotNull Restriction parse(@NotNull String spec, @NotNull String restriction) {
+            boolean lowerInclusive = restriction.charAt(0) == '[';
+            boolean upperInclusive = restriction.charAt(restriction.length() - 1) == ']';
+            String content = restriction.substring(1, restriction.length() - 1).trim();
+            int comma = content.indexOf(',');
+            if (comma == -1) {
+                // [1.5] pins an exact version
+                if (!lowerInclusive || !upperInclusive || content.isEmpty())
+                    throw new IllegalArgumentException("Malformed version range: '" + spec + "'.");
+                MavenVersion version = MavenVersion.parse(content);
+                return new Restriction(version, true, version, true);
+            }
+            String lower = content.substring(0, comma).trim();
+            String upper = content.substring(comma + 1).trim();
+            return new Restriction(
+                    lower.isEmpty() ? null : MavenVersion.parse(lower), lowerInclusive,
+                    upper.isEmpty() ? null : MavenVersion.parse(upper), upperInclusive
+            );
+        }
+
+        private boolean contains(@NotNull MavenVersion version) {
+            if (lower != null) {
+                int comparison = version.compareTo(lower);
+                if (comparison < 0 || (comparison == 0 && !lowerInclusive))
+                    return false;
+            }
+            if (upper != null) {
+                int comparison = version.compareTo(upper);
+                return comparison < 0 || (comparison == 0 && upperInclusive);
+            }
+            return true;
+        }
+    }
+}
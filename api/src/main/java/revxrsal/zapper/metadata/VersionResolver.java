@@ -0,0 +1,121 @@
+package revxrsal.zapper.metadata;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+import revxrsal.zapper.Dependency;
+import revxrsal.zapper.DependencyDownloadException;
+import revxrsal.zapper.repository.Repository;
+import revxrsal.zapper.util.Xml;
+
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.logging.Logger;
+
+/**
+ * Resolves dynamic versions (ranges such as {@code [1.2,2.0)}, or the {@code LATEST}
+ * and {@code RELEASE} keywords) into concrete versions.
+ * <p>
+ * The artifact-level {@code maven-metadata.xml} is fetched from all repositories
+ * concurrently, and the versions they list are merged before picking the newest
+ * matching one. Metadata is served from a {@link MetadataCache} whenever possible.
+ * A repository whose metadata cannot be read is skipped with a warning, so that it
+ * does not prevent the others from resolving the version.
+ */
+public final class VersionResolver {
+
+    private final MetadataCache cache;
+    private final Executor executor;
+    private final Logger logger;
+    private final String prefix;
+
+    /**
+     * Creates a new {@link VersionResolver}
+     *
+     * @param cache    The metadata cache
+     * @param executor The executor to fetch metadata on
+     * @param logger   The logger to warn about unreadable metadata on
+     * @param prefix   The prefix of logged messages
+     */
+    public VersionResolver(@NotNull MetadataCache cache, @NotNull Executor executor, @NotNull Logger logger, @NotNull String prefix) {
+        this.cache = cache;
+        this.executor = executor;
+        this.logger = logger;
+        this.prefix = prefix;
+    }
+
+    /**
+     * Resolves the dynamic version of the given dependency. If its version is
+     * already concrete, the dependency is returned as is.
+     *
+     * @param dependency   The dependency to resolve
+     * @param repositories The repositories to look up metadata in
+     * @return The dependency, with a concrete version
+     * @throws DependencyDownloadException if no version matches
+     */
+    public @NotNull Dependency resolve(@NotNull Dependency dependency, @NotNull Collection<Repository> repositories) {
+        if (!VersionRange.isDynamic(dependency.getVersion()))
+            return dependency;
+        List<CompletableFuture<NavigableSet<MavenVersion>>> futures = new ArrayList<>();
+        for (Repository repository : repositories)
+            futures.add(CompletableFuture.supplyAsync(() -> fetch(repository, dependency), executor));
+        NavigableSet<MavenVersion> versions = new TreeSet<>();
+        for (CompletableFuture<NavigableSet<MavenVersion>> future : futures) {
+            NavigableSet<MavenVersion> found = future.join();
+            if (found != null)
+                versions.addAll(found);
+        }
+        MavenVersion selected = select(dependency.getVersion(), versions);
+        if (selected == null)
+            throw new DependencyDownloadException(
+                    dependency,
+                    "No version matching " + dependency.getVersion() + " was found in any of the following repositories: " + repositories
+            );
+        return dependency.withVersion(selected.toString());
+    }
+
+    private @Nullable NavigableSet<MavenVersion> fetch(@NotNull Repository repository, @NotNull Dependency dependency) {
+        try {
+            Document document = Xml.parse(cache.fetch(repository.resolveMetadata(dependency)));
+            NavigableSet<MavenVersion> versions = new TreeSet<>();
+            addAll(document.getElementsByTagName("version"), versions);
+            addAll(document.getElementsByTagName("latest"), versions);
+            addAll(document.getElementsByTagName("release"), versions);
+            return versions;
+        } catch (Exception e) {
+            // The repository does not host the artifact, or does not provide metadata
+            if (!(e instanceof FileNotFoundException || e instanceof UnsupportedOperationException))
+                logger.warning(prefix + "Could not read the versions of " + dependency.getGroupId() + ":" +
+                        dependency.getArtifactId() + " from " + repository + ": " + e + ".");
+            return null;
+        }
+    }
+
+    private static void addAll(@NotNull NodeList nodes, @NotNull Collection<MavenVersion> versions) {
+        for (int i = 0; i < nodes.getLength(); i++) {
+            String version = nodes.item(i).getTextContent().trim();
+            if (!version.isEmpty())
+                versions.add(MavenVersion.parse(version));
+        }
+    }
+
+    private static @Nullable MavenVersion select(@NotNull String spec, @NotNull NavigableSet<MavenVersion> versions) {
+        if (spec.equals(VersionRange.LATEST))
+            return versions.isEmpty() ? null : versions.last();
+        VersionRange range = spec.equals(VersionRange.RELEASE) ? null : VersionRange.parse(spec);
+        for (MavenVersion version : versions.descendingSet()) {
+            if (version.isSnapshot())
+                continue;
+            if (range == null || range.contains(version))
+                return version;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * This file is part of Zapper, licensed under the MIT License.
+ *
+ *  Copyright (c) Revxrsal <reflxction.github@gmail.com>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package revxrsal.zapper.repository;
+
+import org.jetbrains.annotations.NotNull;
+import revxrsal.zapper.util.Connections;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Stops sending requests to repositories that keep failing.
+ * <p>
+ * Each repository starts out closed (usable). Every request that fails because
+ * the repository could not be reached, timed out or answered with a server error
+ * counts as a failure, and once a repository fails {@code threshold} times in a
+ * row, its circuit opens and it is skipped for the rest of the load. A missing
+ * artifact is a regular answer and resets the count, as does a success.
+ * <p>
+ * A breaker lives only as long as a single {@link revxrsal.zapper.DependencyManager#load()},
+ * so a repository that was down during one boot is tried again on the next.
+ */
+public final class CircuitBreaker {
+
+    private final int threshold;
+    private final Map<Repository, Integer> failures = new HashMap<>();
+
+    /**
+     * Creates a new {@link CircuitBreaker}
+     *
+     * @param threshold The number of consecutive failures after which a repository
+     *                  is skipped. A value of 0 or less disables the breaker.
+     */
+    public CircuitBreaker(final int threshold) {
+        this.threshold = threshold;
+    }
+
+    /**
+     * Tests whether the given repository has failed too often and should be skipped
+     *
+     * @param repository The repository
+     * @return if the repository should be skipped
+     */
+    public synchronized boolean isOpen(@NotNull final Repository repository) {
+        return threshold > 0 && failures.getOrDefault(repository, 0) >= threshold;
+    }
+
+    /**
+     * Records a successful request, or a request that the repository answered
+     * with a missing artifact.
+     *
+     * @param repository The repository
+     */
+    public synchronized void recordSuccess(@NotNull final Repository repository) {
+        failures.remove(repository);
+    }
+
+    /**
+     * Records the outcome of a failed request. Errors that indicate a missing
+     * artifact do not count as failures.
+     *
+     * @param repository The repository
+     * @param error      The error the request failed with
+     * @return if this failure opened the circuit
+     */
+    public synchronized boolean recordFailure(@NotNull final Repository repository, @NotNull final Throwable error) {
+        if (Connections.isMissing(error)) {
+            failures.remove(repository);
+
+            return false;
+        }
+
+        final int count = failures.merge(repository, 1, Integer::sum);
+
+        return threshold > 0 && count == threshold;
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * This file is part of Zapper, licensed under the MIT License.
+ *
+ *  Copyright (c) Revxrsal <reflxction.github@gmail.com>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package revxrsal.zapper.repository;
+
+import org.jetbrains.annotations.NotNull;
+import revxrsal.zapper.Dependency;
+
+import java.io.FileNotFoundException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
+
+/**
+ * Represents a Maven-layout repository in a local directory, such as {@code ~/.m2/repository}
+ */
+final class FileSystemRepository implements LocalRepository {
+
+    private final Path root;
+
+    FileSystemRepository(@NotNull final Path root) {
+        this.root = root.toAbsolutePath().normalize();
+    }
+
+    @Override
+    public @NotNull Path resolveFile(@NotNull final Dependency dependency) throws Exception {
+        final Path file = root.resolve(dependency.getMavenPath() + ".jar");
+
+        if (!Files.isRegularFile(file)) {
+            throw new FileNotFoundException(file.toString());
+        }
+
+        return file;
+    }
+
+    @Override
+    public @NotNull URL resolveJar(@NotNull final Dependency dependency) throws Exception {
+        return resolveFile(dependency).toUri().toURL();
+    }
+
+    @Override
+    public @NotNull URL resolvePom(@NotNull final Dependency dependency) throws Exception {
+        return root.resolve(dependency.getMavenPath() + ".pom").toUri().toURL();
+    }
+
+    @Override
+    public @NotNull URL resolveChecksum(@NotNull final Dependency dependency) throws Exception {
+        return root.resolve(dependency.getMavenPath() + ".jar.sha1").toUri().toURL();
+    }
+
+    @Override
+    public @NotNull URL resolveMetadata(@NotNull final Dependency dependency) throws Exception {
+        final Path directory = root.resolve(dependency.getGroupId().replace('.', '/')).resolve(dependency.getArtifactId());
+
+        // Artifacts installed with 'mvn install' only have the local variant.
+        final Path local = directory.resolve("maven-metadata-local.xml");
+
+        if (Files.isRegularFile(local)) {
+            return local.toUri().toURL();
+        }
+
+        return directory.resolve("maven-metadata.xml").toUri().toURL();
+    }
+
+    @Override
+    public boolean equals(final Object object) {
+        if (object == null || getClass() != object.getClass()) {
+            return false;
+        }
+
+        final FileSystemRepository that = (FileSystemRepository) object;
+
+        return Objects.equals(root, that.root);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(root);
+    }
+
+    @Override
+    public String toString() {
+        return root.toUri().toString();
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * This file is part of Zapper, licensed under the MIT License.
+ *
+ *  Copyright (c) Revxrsal <reflxction.github@gmail.com>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package revxrsal.zapper.repository;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import revxrsal.zapper.Dependency;
+import revxrsal.zapper.metadata.MetadataCache;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Represents Gradle's module cache ({@code ~/.gradle/caches/modules-2/files-2.1}), which
+ * is laid out as {@code group/artifact/version/sha1/file}.
+ * <p>
+ * The cache is indexed on the first lookup by walking its directory tree, once per
+ * {@link revxrsal.zapper.DependencyManager#load() load}. A module that is missing from
+ * the index is looked up again on disk, in case it was added after the index was built.
+ * <p>
+ * Gradle may keep several copies of a changing module, each under the SHA-1 of its
+ * content. The most recently modified one is used.
+ */
+final class GradleCacheRepository implements LocalRepository {
+
+    private static final int MODULE_DEPTH = 5; // group/artifact/version/sha1/file
+
+    private final Path root;
+    private volatile Map<String, List<Path>> index;
+
+    GradleCacheRepository(@NotNull final Path root) {
+        this.root = root.toAbsolutePath().normalize();
+    }
+
+    /**
+     * Returns the module cache of the current Gradle user home, which is either
+     * {@code GRADLE_USER_HOME} or {@code ~/.gradle}.
+     */
+    static @NotNull Path defaultRoot() {
+        final String userHome = System.getenv("GRADLE_USER_HOME");
+        final File home = userHome == null || userHome.isEmpty()
+            ? new File(System.getProperty("user.home"), ".gradle")
+            : new File(userHome);
+
+        return home.toPath().resolve("caches").resolve("modules-2").resolve("files-2.1");
+    }
+
+    @Override
+    public @NotNull Path resolveFile(@NotNull final Dependency dependency) throws Exception {
+        final String classifier = dependency.getClassifier() == null ? "" : "-" + dependency.getClassifier();
+
+        return find(dependency, classifier + ".jar");
+    }
+
+    @Override
+    public @NotNull URL resolveJar(@NotNull final Dependency dependency) throws Exception {
+        return resolveFile(dependency).toUri().toURL();
+    }
+
+    @Override
+    public @NotNull URL resolvePom(@NotNull final Dependency dependency) throws Exception {
+        return find(dependency, ".pom").toUri().toURL();
+    }
+
+    @Override
+    public @NotNull Repository forLoad(@NotNull final MetadataCache snapshotMetadata) {
+        return new GradleCacheRepository(root);
+    }
+
+    @Override
+    public @NotNull URL resolveChecksum(@NotNull final Dependency dependency) throws Exception {
+        // The checksum is the name of the directory holding the file, so nothing has to be fetched.
+        throw new FileNotFoundException("Gradle caches do not contain checksum files.");
+    }
+
+    /**
+     * Finds the file of the given module that ends with the given suffix (classifier and extension).
+     * Snapshots may be stored under their timestamped name, in which case the newest one is used.
+     */
+    private @NotNull Path find(@NotNull final Dependency dependency, @NotNull final String suffix) throws IOException {
+        final String key = key(dependency.getGroupId(), dependency.getArtifactId(), dependency.getVersion());
+
+        final List<Path> indexed = index().get(key);
+        final List<Path> files = indexed == null ? scanModule(dependency) : indexed;
+
+        if (indexed == null && !files.isEmpty()) {
+            index.put(key, files);
+        }
+
+        final String exact = dependency.getArtifactId() + "-" + dependency.getVersion() + suffix;
+        final Path found = files.stream()
+            .filter(path -> path.getFileName().toString().equals(exact))
+            .max(Comparator.comparingLong(path -> path.toFile().lastModified()))
+            .orElseGet(() -> findSnapshot(dependency, suffix, files));
+
+        if (found == null) {
+            throw new FileNotFoundException(root.resolve(key.replace(':', '/')) + "/*/" + exact);
+        }
+
+        return found;
+    }
+
+    private static @Nullable Path findSnapshot(
+        @NotNull final Dependency dependency, @NotNull final String suffix, @NotNull final List<Path> files
+    ) {
+        final String version = dependency.getVersion();
+
+        if (!version.endsWith("-SNAPSHOT")) {
+            return null;
+        }
+
+        final String prefix = dependency.getArtifactId() + "-" + version.substring(0, version.length() - "SNAPSHOT".length());
+
+        return files.stream()
+            .filter(path -> {
+                final String name = path.getFileName().toString();
+
+                return name.startsWith(prefix) && name.endsWith(suffix) &&
+                    isTimestamp(name.substring(prefix.length(), name.length() - suffix.length()));
+            })
+            .max(Comparator.comparingLong(path -> path.toFile().lastModified()))
+            .orElse(null);
+    }
+
+    /**
+     * Tests whether the given value is a snapshot timestamp and build number,
+     * such as {@code 20240101.123456-1}
+     */
+    private static boolean isTimestamp(@NotNull final String value) {
+        return value.matches("\\d{8}\\.\\d{6}-\\d+");
+    }
+
+    private @NotNull Map<String, List<Path>> index() throws IOException {
+        Map<String, List<Path>> index = this.index;
+
+        if (index != null) {
+            return index;
+        }
+
+        synchronized (this) {
+            if (this.index != null) {
+                return this.index;
+            }
+
+            index = new ConcurrentHashMap<>();
+
+            if (Files.isDirectory(root)) {
+                try (final Stream<Path> stream = Files.walk(root, MODULE_DEPTH)) {
+                    final Map<String, List<Path>> built = new HashMap<>();
+
+                    stream
+                        .filter(path -> root.relativize(path).getNameCount() == MODULE_DEPTH)
+                        .filter(Files::isRegularFile)
+                        .forEach(path -> {
+                            final Path relative = root.relativize(path);
+
+                            built.computeIfAbsent(
+                                key(relative.getName(0).toString(), relative.getName(1).toString(), relative.getName(2).toString()),
+                                k -> new ArrayList<>()
+                            ).add(path);
+                        });
+
+                    index.putAll(built);
+                }
+            }
+
+            return this.index = index;
+        }
+    }
+
+    private @NotNull List<Path> scanModule(@NotNull final Dependency dependency) throws IOException {
+        final Path module = root
+            .resolve(dependency.getGroupId())
+            .resolve(dependency.getArtifactId())
+            .resolve(dependency.getVersion());
+
+        if (!Files.isDirectory(module)) {
+            return List.of();
+        }
+
+        try (final Stream<Path> stream = Files.walk(module, 2)) {
+            return stream
+                .filter(path -> module.relativize(path).getNameCount() == 2)
+                .filter(Files::isRegularFile)
+                .toList();
+        }
+    }
+
+    private static @NotNull String key(
+        @NotNull final String groupId, @NotNull final String artifactId, @NotNull final String version
+    ) {
+        return groupId + ":" + artifactId + ":" + version;
+    }
+
+    @Override
+    public boolean equals(final Object object) {
+        if (object == null || getClass() != object.getClass()) {
+            return false;
+        }
+
+        final GradleCacheRepository that = (GradleCacheRepository) object;
+
+        return Objects.equals(root, that.root);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(root);
+    }
+
+    @Override
+    public String toString() {
+        return root.toUri().toString();
+    }
+}
@@ -0,0 +1,25 @@
+package revxrsal.zapper.repository;
+
+import org.jetbrains.annotations.NotNull;
+import revxrsal.zapper.Dependency;
+
+import java.nio.file.Path;
+
+/**
+ * Represents a repository whose artifacts live on the local filesystem. Such
+ * artifacts are linked or copied directly into the libraries folder, rather than
+ * streamed through a URL, and no remote-style checksum lookups are made for them.
+ */
+public interface LocalRepository extends Repository {
+
+    /**
+     * Resolves the file of the dependency jar.
+     *
+     * @param dependency Dependency to resolve
+     * @return The path of the jar
+     * @throws java.io.FileNotFoundException if this repository does not contain the dependency
+     * @throws Exception                     any other exception that indicates that this repository
+     *                                       could not resolve the dependency
+     */
+    @NotNull Path resolveFile(@NotNull Dependency dependency) throws Exception;
+}
@@ -30,15 +30,13 @@ import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import revxrsal.zapper.Dependency;
+import revxrsal.zapper.metadata.MetadataCache;
+import revxrsal.zapper.util.Xml;
 
-import javax.xml.XMLConstants;
-import javax.xml.parsers.DocumentBuilderFactory;
-import java.io.InputStream;
-import java.net.HttpURLConnection;
 import java.net.URI;
 import java.net.URL;
 import java.util.*;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Represents a Maven repository with a URL
@@ -71,10 +69,29 @@ final class MavenRepository implements Repository {
 
     private final String repoURL;
 
+    /**
+     * The cache of version-level snapshot metadata. Unless the repository is
+     * {@link #forLoad(MetadataCache) bound} to the cache of a
+     * {@link revxrsal.zapper.DependencyManager}, it only lives in memory.
+     */
+    private final MetadataCache snapshotCache;
+
+    /**
+     * Parsed snapshot metadata, mapped by its URL. An entry is only reused while the
+     * {@link MetadataCache} returns the same content it was parsed from, so that
+     * resolving the jar, checksum and POM of a snapshot parses the metadata once.
+     */
+    private final Map<String, ParsedMetadata> snapshotMetadata = new ConcurrentHashMap<>();
+
     private MavenRepository(@NotNull String repoURL) {
+        this(repoURL, new MetadataCache(null, MetadataCache.DEFAULT_SNAPSHOT_TTL));
+    }
+
+    private MavenRepository(@NotNull String repoURL, @NotNull MetadataCache snapshotCache) {
         if (repoURL.charAt(repoURL.length() - 1) != '/')
             repoURL += '/';
         this.repoURL = repoURL;
+        this.snapshotCache = snapshotCache;
     }
 
     public String getRepositoryURL() {
@@ -112,6 +129,18 @@ final class MavenRepository implements Repository {
         return URI.create(repoURL + dependency.getMavenPath() + ".jar.sha1").toURL();
     }
 
+    @Override
+    public @NotNull URL resolveMetadata(@NotNull final Dependency dependency) throws Exception {
+        final String base = dependency.getGroupId().replace('.', '/') + "/" + dependency.getArtifactId() + "/";
+
+        return URI.create(repoURL + base + "maven-metadata.xml").toURL();
+    }
+
+    @Override
+    public @NotNull Repository forLoad(@NotNull final MetadataCache snapshotMetadata) {
+        return snapshotMetadata == snapshotCache ? this : new MavenRepository(repoURL, snapshotMetadata);
+    }
+
     @Override
     public boolean equals(final Object object) {
         if (object == null || getClass() != object.getClass()) {
@@ -167,35 +196,23 @@ final class MavenRepository implements Repository {
             .replace('.', '/') + "/" + dependency.getArtifactId() + "/" + dependency.getVersion() + "/";
 
         final URL url = URI.create(repoURL + base + "maven-metadata.xml").toURL();
-        final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        final byte[] content = snapshotCache.fetch(url);
 
-        connection.setConnectTimeout((int) TimeUnit.SECONDS.toMillis(5));
-        connection.setReadTimeout((int) TimeUnit.SECONDS.toMillis(10));
-        connection.setInstanceFollowRedirects(true);
+        final ParsedMetadata cached = snapshotMetadata.get(url.toString());
 
-        final int code = connection.getResponseCode();
-
-        if (code >= 400) {
-            throw new IllegalStateException("Error fetching snapshot metadata (" + code + "): " + url + ".");
+        if (cached != null && cached.source() == content) {
+            return cached.metadata();
         }
 
-        final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-
-        factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
-        factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
-        factory.setFeature("http://xml.org/sax/features/external-general-entities", false);
-        factory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
-        factory.setNamespaceAware(false);
-
-        try (final InputStream stream = connection.getInputStream()) {
-            final Document document = factory.newDocumentBuilder().parse(stream);
+        final SnapshotMetadata metadata = SnapshotMetadata.parse(Xml.parse(content));
 
-            document.getDocumentElement().normalize();
+        snapshotMetadata.put(url.toString(), new ParsedMetadata(content, metadata));
 
-            return SnapshotMetadata.parse(document);
-        }
+        return metadata;
     }
 
+    private record ParsedMetadata(byte[] source, SnapshotMetadata metadata) {}
+
     private record SnapshotMetadata(String timestamp, String build, List<SnapshotVersion> versions) {
         @Contract("_ -> new")
         private static @NotNull SnapshotMetadata parse(final @NotNull Document document) {
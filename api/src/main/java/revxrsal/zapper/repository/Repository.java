@@ -1,11 +1,13 @@
 package revxrsal.zapper.repository;
 
-import lombok.SneakyThrows;
 import org.jetbrains.annotations.NotNull;
 import revxrsal.zapper.Dependency;
+import revxrsal.zapper.metadata.MetadataCache;
 
 import java.io.File;
+import java.net.URI;
 import java.net.URL;
+import java.nio.file.Paths;
 
 /**
  * Represents a repository that can resolve {@link revxrsal.zapper.Dependency dependencies}
@@ -42,6 +44,32 @@ public interface Repository {
      */
     @NotNull URL resolveChecksum(@NotNull Dependency dependency) throws Exception;
 
+    /**
+     * Resolves the URL of the artifact-level metadata ({@code maven-metadata.xml}),
+     * which lists all available versions of the dependency.
+     *
+     * @param dependency Dependency to resolve
+     * @return The URL to resolve
+     * @throws Exception any exception that indicates that this repository could not
+     *                   resolve the metadata
+     */
+    default @NotNull URL resolveMetadata(@NotNull Dependency dependency) throws Exception {
+        throw new UnsupportedOperationException("Repository " + this + " does not provide artifact metadata.");
+    }
+
+    /**
+     * Returns the repository to use for one {@link revxrsal.zapper.DependencyManager#load() load}.
+     * Repositories that keep state between lookups, such as snapshot metadata or
+     * an index of a local cache, return a copy that keeps it for that load only.
+     * Others return themselves.
+     *
+     * @param snapshotMetadata The cache to look the version-level metadata of snapshots up in
+     * @return The repository to use
+     */
+    default @NotNull Repository forLoad(@NotNull MetadataCache snapshotMetadata) {
+        return this;
+    }
+
     /**
      * Creates a Maven repository from the specified URL.
      *
@@ -49,16 +77,19 @@ public interface Repository {
      * @return the configured Maven repository
      */
     static @NotNull Repository maven(@NotNull URL url) {
-        return MavenRepository.maven(url.toString());
+        return maven(url.toString());
     }
 
     /**
-     * Creates a Maven repository from the specified URL string.
+     * Creates a Maven repository from the specified URL string. {@code file:} URLs
+     * are turned into {@link LocalRepository local repositories}.
      *
      * @param url the URL of the repository as a string
      * @return the configured Maven repository
      */
     static @NotNull Repository maven(@NotNull String url) {
+        if (url.startsWith("file:"))
+            return new FileSystemRepository(Paths.get(URI.create(url)));
         return MavenRepository.maven(url);
     }
 
@@ -67,7 +98,6 @@ public interface Repository {
      *
      * @return the local Maven repository
      */
-    @SneakyThrows
     static @NotNull Repository mavenLocal() {
         String userHome = System.getProperty("user.home");
         File repository = new File(userHome, ".m2" + File.separator + "repository");
@@ -80,9 +110,31 @@ public interface Repository {
      * @param directory the local Maven directory
      * @return the local Maven repository
      */
-    @SneakyThrows
     static @NotNull Repository maven(@NotNull File directory) {
-        return maven(directory.toURI().toURL().toString());
+        return new FileSystemRepository(directory.toPath());
+    }
+
+    /**
+     * Returns a repository that reads artifacts from Gradle's module cache
+     * ({@code caches/modules-2/files-2.1} in {@code GRADLE_USER_HOME}, or {@code ~/.gradle}).
+     * This allows reusing artifacts that were already downloaded by a Gradle build, without
+     * any network traffic.
+     *
+     * @return the Gradle cache repository
+     */
+    static @NotNull Repository gradleCache() {
+        return new GradleCacheRepository(GradleCacheRepository.defaultRoot());
+    }
+
+    /**
+     * Returns a repository that reads artifacts from the given Gradle module cache
+     * directory (the {@code files-2.1} directory).
+     *
+     * @param directory the module cache directory
+     * @return the Gradle cache repository
+     */
+    static @NotNull Repository gradleCache(@NotNull File directory) {
+        return new GradleCacheRepository(directory.toPath());
     }
 
     /**
@@ -0,0 +1,184 @@
+/*
+ * This file is part of Zapper, licensed under the MIT License.
+ *
+ *  Copyright (c) Revxrsal <reflxction.github@gmail.com>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package revxrsal.zapper.repository;
+
+import org.jetbrains.annotations.NotNull;
+import revxrsal.zapper.Dependency;
+import revxrsal.zapper.metadata.MetadataCache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decides which repositories are asked for a dependency.
+ * <p>
+ * Routes map a group prefix to the repositories that serve it, so that, for example,
+ * {@code io.papermc} artifacts are only looked up in Paper's repository instead of
+ * every configured one. A prefix matches the group itself and all of its subgroups,
+ * and the longest matching prefix wins. Dependencies without a route use the
+ * default repositories.
+ * <p>
+ * Mirrors replace a repository with another one serving the same content, such as
+ * an internal Nexus proxying Maven Central. They are applied to the default
+ * repositories, routed repositories and lockfile repositories alike.
+ * <p>
+ * Once a load has begun, every repository handed out is the copy returned by
+ * {@link Repository#forLoad(MetadataCache)}, so that each load of each
+ * {@link revxrsal.zapper.DependencyManager} keeps its own repository state, even
+ * when several managers share the same repositories.
+ */
+public final class RepositoryRouter {
+
+    private final Map<String, List<Repository>> routes = new HashMap<>();
+    private final Map<String, Repository> mirrors = new HashMap<>();
+    private final Map<Repository, Repository> bound = new ConcurrentHashMap<>();
+    private volatile MetadataCache snapshotMetadata;
+
+    /**
+     * Routes all dependencies whose group starts with the given prefix to the given
+     * repositories. A trailing {@code .*} is ignored, so {@code io.papermc.*} and
+     * {@code io.papermc} are equivalent.
+     *
+     * @param groupPrefix  The group prefix
+     * @param repositories The repositories serving the group, in order
+     */
+    public void route(@NotNull final String groupPrefix, @NotNull final List<Repository> repositories) {
+        if (repositories.isEmpty()) {
+            throw new IllegalArgumentException("No repositories given for route '" + groupPrefix + "'.");
+        }
+
+        final String prefix = groupPrefix.endsWith(".*")
+            ? groupPrefix.substring(0, groupPrefix.length() - 2)
+            : groupPrefix;
+
+        routes.computeIfAbsent(prefix, k -> new ArrayList<>()).addAll(repositories);
+    }
+
+    /**
+     * Replaces the repository at the given URL with the mirror
+     *
+     * @param url    The URL of the repository to replace
+     * @param mirror The mirror
+     */
+    public void mirror(@NotNull final String url, @NotNull final Repository mirror) {
+        mirrors.put(normalize(url), mirror);
+    }
+
+    /**
+     * Begins a load, after which repositories are handed out as the copies they
+     * return for it
+     *
+     * @param snapshotMetadata The cache the repositories look snapshot metadata up in
+     */
+    public void beginLoad(@NotNull final MetadataCache snapshotMetadata) {
+        this.snapshotMetadata = snapshotMetadata;
+        bound.clear();
+    }
+
+    /**
+     * Returns the mirror of the given repository, or the repository itself if it
+     * is not mirrored.
+     *
+     * @param repository The repository
+     * @return The repository to use instead
+     */
+    public @NotNull Repository mirror(@NotNull final Repository repository) {
+        final Repository mirrored = mirrors.getOrDefault(normalize(repository.toString()), repository);
+        final MetadataCache cache = snapshotMetadata;
+
+        if (cache == null) {
+            return mirrored;
+        }
+
+        return bound.computeIfAbsent(mirrored, key -> key.forLoad(cache));
+    }
+
+    /**
+     * Returns the mirrors of the given repositories, without duplicates
+     *
+     * @param repositories The repositories
+     * @return The repositories to use instead, in the same order
+     */
+    public @NotNull Set<Repository> mirror(@NotNull final Collection<Repository> repositories) {
+        final Set<Repository> mirrored = new LinkedHashSet<>(repositories.size());
+
+        for (final Repository repository : repositories) {
+            mirrored.add(mirror(repository));
+        }
+
+        return mirrored;
+    }
+
+    /**
+     * Returns the repositories to look the dependency up in: the ones of the longest
+     * route matching its group, or the defaults if no route matches. Mirrors are
+     * applied to the result.
+     *
+     * @param dependency   The dependency
+     * @param repositories The default repositories
+     * @return The repositories to use
+     */
+    public @NotNull List<Repository> select(
+        @NotNull final Dependency dependency,
+        @NotNull final Collection<Repository> repositories
+    ) {
+        final List<Repository> routed = findRoute(dependency.getGroupId());
+
+        return new ArrayList<>(mirror(routed == null ? repositories : routed));
+    }
+
+    private List<Repository> findRoute(@NotNull final String groupId) {
+        if (routes.isEmpty()) {
+            return null;
+        }
+
+        String group = groupId;
+
+        while (true) {
+            final List<Repository> routed = routes.get(group);
+
+            if (routed != null) {
+                return routed;
+            }
+
+            final int dot = group.lastIndexOf('.');
+
+            if (dot == -1) {
+                return null;
+            }
+
+            group = group.substring(0, dot);
+        }
+    }
+
+    private static @NotNull String normalize(@NotNull final String url) {
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * This file is part of Zapper, licensed under the MIT License.
+ *
+ *  Copyright (c) Revxrsal <reflxction.github@gmail.com>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package revxrsal.zapper.repository;
+
+import org.jetbrains.annotations.NotNull;
+import revxrsal.zapper.Dependency;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Keeps track of how repositories perform, so that the ones most likely to serve
+ * a dependency quickly are tried first.
+ * <p>
+ * For every repository, this records an exponentially weighted moving average (EWMA)
+ * of the time it takes to start sending an artifact it has, and for every group prefix
+ * (the first two segments of the group ID, such as {@code io.papermc}), how many
+ * lookups hit or missed. Latency is only sampled from hits, and measured up to the
+ * first byte, so that neither large artifacts nor quick misses skew it.
+ * Repositories are then ordered by their expected hit ratio per millisecond, which
+ * minimizes the expected time spent before a hit.
+ * <p>
+ * Statistics are persisted to a properties file, so they carry over across boots.
+ */
+public final class RepositoryStatistics {
+
+    /**
+     * The weight of the newest sample in the latency average
+     */
+    private static final double ALPHA = 0.3;
+
+    private static final String LATENCY = "latency";
+    private static final String HITS = "hits";
+    private static final String MISSES = "misses";
+
+    private final File file;
+    private final Map<String, Double> latencies = new HashMap<>();
+    private final Map<String, int[]> lookups = new HashMap<>();
+    private boolean dirty;
+
+    private RepositoryStatistics(@NotNull final File file) {
+        this.file = file;
+    }
+
+    /**
+     * Loads the statistics from the given file. If it does not exist or cannot be
+     * read, the statistics start empty.
+     *
+     * @param file The file to load from (and save to)
+     * @return The statistics
+     */
+    public static @NotNull RepositoryStatistics load(@NotNull final File file) {
+        final RepositoryStatistics statistics = new RepositoryStatistics(file);
+
+        if (!file.isFile()) {
+            return statistics;
+        }
+
+        final Properties properties = new Properties();
+
+        try (final InputStream stream = Files.newInputStream(file.toPath())) {
+            properties.load(stream);
+        } catch (final IOException ignored) {
+            return statistics;
+        }
+
+        for (final String key : properties.stringPropertyNames()) {
+            final int dot = key.lastIndexOf('.');
+
+            if (dot == -1) {
+                continue;
+            }
+
+            final String name = key.substring(0, dot);
+            final String type = key.substring(dot + 1);
+
+            try {
+                switch (type) {
+                    case LATENCY -> statistics.latencies.put(name, Double.parseDouble(properties.getProperty(key)));
+                    case HITS -> statistics.counters(name)[0] = Integer.parseInt(properties.getProperty(key));
+                    case MISSES -> statistics.counters(name)[1] = Integer.parseInt(properties.getProperty(key));
+                    default -> {}
+                }
+            } catch (final NumberFormatException ignored) {}
+        }
+
+        return statistics;
+    }
+
+    /**
+     * Records that a repository served a dependency
+     *
+     * @param repository The repository
+     * @param dependency The dependency that was looked up
+     * @param millis     How long the repository took to start sending it
+     */
+    public synchronized void recordHit(
+        @NotNull final Repository repository, @NotNull final Dependency dependency, final long millis
+    ) {
+        final String name = repository.toString();
+
+        latencies.merge(name, (double) millis, (average, sample) -> average + ALPHA * (sample - average));
+        counters(lookupKey(name, dependency))[0]++;
+        dirty = true;
+    }
+
+    /**
+     * Records that a repository did not serve a dependency, because it does not
+     * have it or failed to send it
+     *
+     * @param repository The repository
+     * @param dependency The dependency that was looked up
+     */
+    public synchronized void recordMiss(@NotNull final Repository repository, @NotNull final Dependency dependency) {
+        counters(lookupKey(repository.toString(), dependency))[1]++;
+        dirty = true;
+    }
+
+    /**
+     * Orders the given repositories by how likely they are to serve the dependency
+     * quickly. Pinned repositories always come first, in their original order.
+     * Repositories that tie (e.g. because nothing is known about them yet) keep
+     * their original order as well.
+     *
+     * @param repositories The repositories to order
+     * @param pinned       The pinned repositories
+     * @param dependency   The dependency to look up
+     * @return The ordered repositories
+     */
+    public synchronized @NotNull List<Repository> order(
+        @NotNull final Collection<Repository> repositories,
+        @NotNull final Collection<Repository> pinned,
+        @NotNull final Dependency dependency
+    ) {
+        final List<Repository> ordered = new ArrayList<>(repositories.size());
+        final List<Repository> adaptive = new ArrayList<>();
+
+        for (final Repository repository : repositories) {
+            (pinned.contains(repository) ? ordered : adaptive).add(repository);
+        }
+
+        final Map<Repository, Double> scores = new HashMap<>();
+
+        for (final Repository repository : adaptive) {
+            scores.put(repository, score(repository, dependency));
+        }
+
+        // Stable, so ties keep their insertion order.
+        adaptive.sort(Comparator.comparingDouble(scores::get).reversed());
+        ordered.addAll(adaptive);
+
+        return ordered;
+    }
+
+    /**
+     * Saves the statistics to their file, if anything was recorded since they were
+     * loaded. Failures are ignored, as statistics are merely an optimization.
+     */
+    public synchronized void save() {
+        if (!dirty) {
+            return;
+        }
+
+        final Properties properties = new Properties();
+
+        latencies.forEach((name, latency) -> properties.setProperty(name + "." + LATENCY, String.format(Locale.ROOT, "%.1f", latency)));
+
+        lookups.forEach((name, counters) -> {
+            properties.setProperty(name + "." + HITS, Integer.toString(counters[0]));
+            properties.setProperty(name + "." + MISSES, Integer.toString(counters[1]));
+        });
+
+        try {
+            Files.createDirectories(file.getParentFile().toPath());
+
+            try (final OutputStream stream = Files.newOutputStream(file.toPath())) {
+                properties.store(stream, "Zapper repository statistics");
+            }
+
+            dirty = false;
+        } catch (final IOException ignored) {}
+    }
+
+    /**
+     * Returns the expected hit ratio per millisecond. Hit ratios are smoothed, so
+     * that unknown repositories start at 50%, and unknown latencies are assumed
+     * to be the average of the known ones.
+     */
+    private double score(@NotNull final Repository repository, @NotNull final Dependency dependency) {
+        final String name = repository.toString();
+        final int[] counters = lookups.getOrDefault(lookupKey(name, dependency), new int[2]);
+        final double hitRatio = (counters[0] + 1d) / (counters[0] + counters[1] + 2d);
+        final double latency = latencies.containsKey(name)
+            ? latencies.get(name)
+            : latencies.values().stream().mapToDouble(Double::doubleValue).average().orElse(0d);
+
+        return hitRatio / Math.max(latency, 1d);
+    }
+
+    private int @NotNull [] counters(@NotNull final String key) {
+        return lookups.computeIfAbsent(key, k -> new int[2]);
+    }
+
+    private static @NotNull String lookupKey(@NotNull final String repository, @NotNull final Dependency dependency) {
+        return repository + "|" + groupPrefix(dependency.getGroupId());
+    }
+
+    private static @NotNull String groupPrefix(@NotNull final String groupId) {
+        final int first = groupId.indexOf('.');
+
+        if (first == -1) {
+            return groupId;
+        }
+
+        final int second = groupId.indexOf('.', first + 1);
+
+        return second == -1 ? groupId : groupId.substring(0, second);
+    }
+}
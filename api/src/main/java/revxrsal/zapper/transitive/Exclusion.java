@@ -0,0 +1,138 @@
+/*
+ * This file is part of Zapper, licensed under the MIT License.
+ *
+ *  Copyright (c) Revxrsal <reflxction.github@gmail.com>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package revxrsal.zapper.transitive;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import revxrsal.zapper.Dependency;
+
+import java.util.Objects;
+import java.util.regex.Pattern;
+
+/**
+ * Represents an exclusion rule for transitive dependencies, in the form of
+ * {@code groupId:artifactId}.
+ * <p>
+ * Both parts may contain {@code *} wildcards, which match any sequence of characters.
+ * For example, {@code org.slf4j:*} excludes every slf4j artifact, and {@code *:*-natives-*}
+ * excludes every native classifier artifact regardless of its group.
+ */
+public final class Exclusion {
+
+    private static final String WILDCARD = "*";
+
+    private final String groupId;
+    private final String artifactId;
+    private final Pattern groupPattern;
+    private final Pattern artifactPattern;
+
+    public Exclusion(@NotNull String groupId, @NotNull String artifactId) {
+        this.groupId = groupId;
+        this.artifactId = artifactId;
+        this.groupPattern = compile(groupId);
+        this.artifactPattern = compile(artifactId);
+    }
+
+    /**
+     * Parses an exclusion from the given {@code groupId:artifactId} string. If the
+     * artifact ID is omitted, all artifacts of the group are excluded.
+     *
+     * @param exclusion The exclusion notation
+     * @return The parsed exclusion
+     */
+    @Contract("_ -> new")
+    public static @NotNull Exclusion parse(@NotNull String exclusion) {
+        int colon = exclusion.indexOf(':');
+        if (colon == -1)
+            return new Exclusion(exclusion, WILDCARD);
+        return new Exclusion(exclusion.substring(0, colon), exclusion.substring(colon + 1));
+    }
+
+    /**
+     * Tests whether this exclusion matches the given coordinates
+     *
+     * @param groupId    The group ID
+     * @param artifactId The artifact ID
+     * @return {@code true} if the coordinates are excluded
+     */
+    public boolean matches(@NotNull String groupId, @NotNull String artifactId) {
+        return matches(groupPattern, this.groupId, groupId) && matches(artifactPattern, this.artifactId, artifactId);
+    }
+
+    /**
+     * Tests whether this exclusion matches the given dependency
+     *
+     * @param dependency The dependency to test
+     * @return {@code true} if the dependency is excluded
+     */
+    public boolean matches(@NotNull Dependency dependency) {
+        return matches(dependency.getGroupId(), dependency.getArtifactId());
+    }
+
+    public @NotNull String getGroupId() {
+        return groupId;
+    }
+
+    public @NotNull String getArtifactId() {
+        return artifactId;
+    }
+
+    private static boolean matches(Pattern pattern, String literal, String value) {
+        return pattern == null ? literal.equals(value) : pattern.matcher(value).matches();
+    }
+
+    /**
+     * Compiles the given wildcard expression into a pattern, or returns null
+     * if it contains no wildcards and can be compared literally.
+     */
+    private static Pattern compile(String expression) {
+        if (!expression.contains(WILDCARD))
+            return null;
+        StringBuilder regex = new StringBuilder();
+        for (String part : expression.split("\\*", -1)) {
+            if (regex.length() > 0)
+                regex.append(".*");
+            regex.append(Pattern.quote(part));
+        }
+        return Pattern.compile(regex.toString());
+    }
+
+    @Override
+    public String toString() {
+        return groupId + ':' + artifactId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Exclusion)) return false;
+        Exclusion that = (Exclusion) o;
+        return groupId.equals(that.groupId) && artifactId.equals(that.artifactId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(groupId, artifactId);
+    }
+}
@@ -10,9 +10,11 @@ import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import revxrsal.zapper.Dependency;
 import revxrsal.zapper.repository.Repository;
+import revxrsal.zapper.util.Connections;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
 import java.io.FileNotFoundException;
 import java.io.InputStream;
 import java.util.*;
@@ -23,12 +25,18 @@ import static revxrsal.zapper.repository.Repository.mavenCentral;
  * A utility for fetching transitive dependencies of a {@link revxrsal.zapper.Dependency}.
  * This class allows resolving the transitive dependencies of a given Maven dependency,
  * optionally recursively, and filtering by Maven scopes.
+ * <p>
+ * Optional dependencies and dependencies matched by an {@link Exclusion} (either declared
+ * in a POM's {@code <exclusions>} block or registered globally on the builder) are pruned
+ * while walking the graph, so their subtrees are never fetched.
  */
 public final class TransitiveResolver {
 
     private final boolean recursively;
     private final List<MavenScope> scopes;
     private final List<Repository> searchRepositories;
+    private final List<Exclusion> exclusions;
+    private final boolean includeOptional;
 
     /**
      * Constructs a new {@link TransitiveResolver}
@@ -37,11 +45,21 @@ public final class TransitiveResolver {
      *                           of transitive dependencies).
      * @param scopes             A list of Maven scopes to consider when resolving dependencies.
      * @param searchRepositories A list of repositories to search for the dependencies.
+     * @param exclusions         A list of global exclusions applied to the entire graph.
+     * @param includeOptional    Whether to include dependencies marked as {@code <optional>}.
      */
-    TransitiveResolver(boolean recursively, List<MavenScope> scopes, List<Repository> searchRepositories) {
+    TransitiveResolver(
+            boolean recursively,
+            List<MavenScope> scopes,
+            List<Repository> searchRepositories,
+            List<Exclusion> exclusions,
+            boolean includeOptional
+    ) {
         this.recursively = recursively;
         this.scopes = scopes;
         this.searchRepositories = searchRepositories;
+        this.exclusions = exclusions;
+        this.includeOptional = includeOptional;
     }
 
     /**
@@ -55,7 +73,11 @@ public final class TransitiveResolver {
      */
     @SneakyThrows
     public @NotNull List<Dependency> resolve(@NotNull Dependency dependency) {
-        return get(searchRepositories, dependency);
+        Set<String> visited = new HashSet<>();
+        Set<String> resolved = new HashSet<>();
+        visited.add(walkKey(dependency, exclusions));
+        resolved.add(key(dependency));
+        return get(searchRepositories, dependency, exclusions, visited, resolved);
     }
 
     /**
@@ -88,22 +110,48 @@ public final class TransitiveResolver {
         return searchRepositories;
     }
 
+    /**
+     * Returns the list of global exclusions that are applied to the entire
+     * dependency graph.
+     *
+     * @return The list of exclusions.
+     */
+    public @NotNull @Unmodifiable List<Exclusion> getExclusions() {
+        return exclusions;
+    }
+
+    /**
+     * Returns whether dependencies marked as {@code <optional>true</optional>}
+     * are included when resolving.
+     *
+     * @return {@code true} if optional dependencies are included, {@code false} otherwise.
+     */
+    public boolean isIncludeOptional() {
+        return includeOptional;
+    }
+
     /**
      * Resolves the transitive dependencies for the given dependency by searching the provided repositories.
      *
      * @param searchRepositories The repositories to search for the dependencies.
      * @param dependency         The dependency for which transitive dependencies are being resolved.
+     * @param exclusions         The exclusions inherited from the path leading to this dependency.
+     * @param visited            The coordinates that have already been walked, with the exclusions they were walked with.
+     * @param resolved           The coordinates that have already been resolved.
      * @return The list of resolved dependencies.
      * @throws IllegalArgumentException If the POM of the dependency cannot be found in the given repositories.
      */
     @SneakyThrows
     private @NotNull List<Dependency> get(
             @NotNull Iterable<Repository> searchRepositories,
-            @NotNull Dependency dependency
+            @NotNull Dependency dependency,
+            @NotNull List<Exclusion> exclusions,
+            @NotNull Set<String> visited,
+            @NotNull Set<String> resolved
     ) {
         for (Repository repository : searchRepositories) {
-            try (InputStream stream = repository.resolvePom(dependency).openStream()) {
-                return fromPom(dependency, stream);
+            try (InputStream stream = new ByteArrayInputStream(Connections.readAllBytes(repository.resolvePom(dependency)))) {
+                return fromPom(dependency, stream, exclusions, visited, resolved);
             } catch (Exception e) {
                 if (!(e instanceof FileNotFoundException))
                     throw e;
@@ -117,17 +165,23 @@ public final class TransitiveResolver {
      *
      * @param dependency The original dependency for which transitive dependencies are being resolved.
      * @param stream     The InputStream of the POM file to parse.
+     * @param exclusions The exclusions inherited from the path leading to this dependency.
+     * @param visited    The coordinates that have already been walked, with the exclusions they were walked with.
+     * @param resolved   The coordinates that have already been resolved.
      * @return The list of dependencies extracted from the POM file.
      */
     @SneakyThrows
     private @NotNull List<Dependency> fromPom(
             @NotNull Dependency dependency,
-            @NotNull InputStream stream
+            @NotNull InputStream stream,
+            @NotNull List<Exclusion> exclusions,
+            @NotNull Set<String> visited,
+            @NotNull Set<String> resolved
     ) {
         List<Dependency> dependencies = new ArrayList<>();
+        Map<Dependency, List<Exclusion>> children = new LinkedHashMap<>();
 
-        Set<Repository> repositories = new LinkedHashSet<>();
-        repositories.add(mavenCentral());
+        Set<Repository> repositories = new LinkedHashSet<>(searchRepositories);
 
         DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
         DocumentBuilder builder = factory.newDocumentBuilder();
@@ -151,34 +205,109 @@ public final class TransitiveResolver {
                     Node n = deps.item(j);
                     if (!(n instanceof Element)) continue;
                     Element dependencyBlock = (Element) n;
-                    String groupId = dependencyBlock.getElementsByTagName("groupId").item(0).getTextContent();
-                    String artifactId = dependencyBlock.getElementsByTagName("artifactId").item(0).getTextContent();
-                    String version = "";
-                    MavenScope scope = MavenScope.COMPILE;
-                    try {
-                        version = dependencyBlock.getElementsByTagName("version").item(0).getTextContent();
-                        scope = MavenScope.fromString(dependencyBlock.getElementsByTagName("scope").item(0).getTextContent());
-                    } catch (NullPointerException ignored) {
-                    }
+                    String groupId = childText(dependencyBlock, "groupId", "");
+                    String artifactId = childText(dependencyBlock, "artifactId", "");
+                    String version = childText(dependencyBlock, "version", "");
+                    String scopeName = childText(dependencyBlock, "scope", null);
+                    MavenScope scope = scopeName == null ? MavenScope.COMPILE : MavenScope.fromString(scopeName);
+                    boolean optional = Boolean.parseBoolean(childText(dependencyBlock, "optional", "false"));
                     if (groupId.equals("${project.groupId}")) groupId = dependency.getGroupId();
                     if (version.equals("${project.version}")) version = dependency.getVersion();
-                    if (scopes.contains(scope) && !version.isEmpty()) {
-                        Dependency e = new Dependency(groupId, artifactId, version);
+                    if (!scopes.contains(scope) || version.isEmpty())
+                        continue;
+                    if (optional && !includeOptional)
+                        continue;
+                    if (isExcluded(exclusions, groupId, artifactId))
+                        continue;
+                    Dependency e = new Dependency(groupId, artifactId, version);
+                    List<Exclusion> childExclusions = withDeclaredExclusions(exclusions, dependencyBlock);
+                    // A dependency reached again with other exclusions is walked again, as
+                    // the first walk may have pruned children that this path needs
+                    if (!visited.add(walkKey(e, childExclusions)))
+                        continue;
+                    if (resolved.add(key(e)))
                         dependencies.add(e);
-                    }
+                    children.put(e, childExclusions);
                 }
                 break;
             }
         }
         if (recursively) {
-            repositories.addAll(searchRepositories);
-            for (Dependency e : dependencies.toArray(new Dependency[0])) {
-                dependencies.addAll(get(repositories, e));
+            for (Map.Entry<Dependency, List<Exclusion>> child : children.entrySet()) {
+                dependencies.addAll(get(repositories, child.getKey(), child.getValue(), visited, resolved));
             }
         }
         return dependencies;
     }
 
+    /**
+     * Returns the given exclusions, plus the ones declared in the {@code <exclusions>}
+     * block of the given dependency. Declared exclusions apply to the whole subtree
+     * of that dependency.
+     */
+    private static @NotNull List<Exclusion> withDeclaredExclusions(
+            @NotNull List<Exclusion> inherited,
+            @NotNull Element dependencyBlock
+    ) {
+        List<Exclusion> result = null;
+        NodeList children = dependencyBlock.getChildNodes();
+        for (int i = 0; i < children.getLength(); i++) {
+            Node node = children.item(i);
+            if (!node.getNodeName().equals("exclusions")) continue;
+            NodeList exclusionBlocks = node.getChildNodes();
+            for (int j = 0; j < exclusionBlocks.getLength(); j++) {
+                Node n = exclusionBlocks.item(j);
+                if (!(n instanceof Element)) continue;
+                Element exclusionBlock = (Element) n;
+                if (result == null)
+                    result = new ArrayList<>(inherited);
+                result.add(new Exclusion(
+                        childText(exclusionBlock, "groupId", "*"),
+                        childText(exclusionBlock, "artifactId", "*")
+                ));
+            }
+        }
+        return result == null ? inherited : result;
+    }
+
+    private static boolean isExcluded(@NotNull List<Exclusion> exclusions, @NotNull String groupId, @NotNull String artifactId) {
+        for (Exclusion exclusion : exclusions) {
+            if (exclusion.matches(groupId, artifactId))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the trimmed text of the direct child element with the given name. Unlike
+     * {@link Element#getElementsByTagName(String)}, this does not descend into nested
+     * blocks such as {@code <exclusions>}.
+     */
+    private static String childText(@NotNull Element element, @NotNull String name, String def) {
+        NodeList children = element.getChildNodes();
+        for (int i = 0; i < children.getLength(); i++) {
+            Node node = children.item(i);
+            if (node instanceof Element && node.getNodeName().equals(name))
+                return node.getTextContent().trim();
+        }
+        return def;
+    }
+
+    private static @NotNull String key(@NotNull Dependency dependency) {
+        return dependency.getGroupId() + ':' + dependency.getArtifactId() + ':' + dependency.getVersion();
+    }
+
+    /**
+     * Returns the key of walking the given dependency with the given exclusions,
+     * which does not depend on the order of the exclusions
+     */
+    private static @NotNull String walkKey(@NotNull Dependency dependency, @NotNull List<Exclusion> exclusions) {
+        Set<String> excluded = new TreeSet<>();
+        for (Exclusion exclusion : exclusions)
+            excluded.add(exclusion.toString());
+        return key(dependency) + excluded;
+    }
+
     /**
      * Returns a builder to construct a {@link TransitiveResolver}.
      *
@@ -204,6 +333,8 @@ public final class TransitiveResolver {
         private final Set<Repository> searchRepositories = new LinkedHashSet<Repository>() {{
             add(mavenCentral());
         }};
+        private final Set<Exclusion> exclusions = new LinkedHashSet<>();
+        private boolean includeOptional = false;
 
         /**
          * Sets whether the resolver should resolve dependencies recursively (i.e.
@@ -239,6 +370,17 @@ public final class TransitiveResolver {
             return this;
         }
 
+        /**
+         * Removes all repositories added so far, including Maven Central, which
+         * is searched by default.
+         *
+         * @return The current builder instance.
+         */
+        public @NotNull Builder clearRepositories() {
+            searchRepositories.clear();
+            return this;
+        }
+
         /**
          * Adds Maven scopes to consider when resolving dependencies.
          *
@@ -261,6 +403,44 @@ public final class TransitiveResolver {
             return this;
         }
 
+        /**
+         * Adds global exclusions, in the form of {@code groupId:artifactId}. Both parts
+         * may contain {@code *} wildcards.
+         *
+         * @param exclusions The exclusions to add.
+         * @return The current builder instance.
+         * @see Exclusion
+         */
+        public @NotNull Builder exclude(@NotNull String... exclusions) {
+            for (String exclusion : exclusions)
+                this.exclusions.add(Exclusion.parse(exclusion));
+            return this;
+        }
+
+        /**
+         * Adds global exclusions.
+         *
+         * @param exclusions The exclusions to add.
+         * @return The current builder instance.
+         */
+        public @NotNull Builder exclude(@NotNull List<Exclusion> exclusions) {
+            this.exclusions.addAll(exclusions);
+            return this;
+        }
+
+        /**
+         * Sets whether dependencies marked as {@code <optional>true</optional>} should be
+         * included. By default, they are skipped, as they are not meant to be
+         * shipped transitively.
+         *
+         * @param includeOptional True to include optional dependencies, false otherwise.
+         * @return The current builder instance.
+         */
+        public @NotNull Builder includeOptional(boolean includeOptional) {
+            this.includeOptional = includeOptional;
+            return this;
+        }
+
         /**
          * Builds and returns a new {@link TransitiveResolver} instance with the current configuration.
          *
@@ -271,7 +451,9 @@ public final class TransitiveResolver {
             return new TransitiveResolver(
                     recursively,
                     Collections.unmodifiableList(new ArrayList<>(scopes)),
-                    Collections.unmodifiableList(new ArrayList<>(searchRepositories))
+                    Collections.unmodifiableList(new ArrayList<>(searchRepositories)),
+                    Collections.unmodifiableList(new ArrayList<>(exclusions)),
+                    includeOptional
             );
         }
     }
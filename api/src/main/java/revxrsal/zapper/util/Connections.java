@@ -0,0 +1,129 @@
+package revxrsal.zapper.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.EOFException;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ConnectException;
+import java.net.HttpURLConnection;
+import java.net.NoRouteToHostException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.UnknownHostException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A utility for opening connections to repositories with sensible timeouts,
+ * as {@link URL#openStream()} would otherwise wait indefinitely.
+ */
+public final class Connections {
+
+    public static final int CONNECT_TIMEOUT = (int) TimeUnit.SECONDS.toMillis(5);
+    public static final int READ_TIMEOUT = (int) TimeUnit.SECONDS.toMillis(10);
+
+    private static final SingleFlight<byte[]> READS = new SingleFlight<>();
+
+    private Connections() {
+    }
+
+    /**
+     * Opens a connection to the given URL, with timeouts and redirects configured
+     *
+     * @param url The URL to open
+     * @return The connection
+     * @throws IOException if the connection could not be opened
+     */
+    public static @NotNull URLConnection open(@NotNull URL url) throws IOException {
+        URLConnection connection = url.openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT);
+        connection.setReadTimeout(READ_TIMEOUT);
+        if (connection instanceof HttpURLConnection)
+            ((HttpURLConnection) connection).setInstanceFollowRedirects(true);
+        return connection;
+    }
+
+    /**
+     * Returns the input stream of the given connection, translating HTTP error codes
+     * into exceptions. A missing resource is always reported as a
+     * {@link FileNotFoundException}, regardless of the protocol.
+     *
+     * @param connection The connection
+     * @return The response body
+     * @throws IOException if the resource is missing or could not be read
+     */
+    public static @NotNull InputStream body(@NotNull URLConnection connection) throws IOException {
+        if (connection instanceof HttpURLConnection) {
+            HttpURLConnection http = (HttpURLConnection) connection;
+            int code = http.getResponseCode();
+            if (code == HttpURLConnection.HTTP_NOT_FOUND || code == HttpURLConnection.HTTP_GONE)
+                throw new FileNotFoundException(connection.getURL().toString());
+            if (code >= 400)
+                throw new HttpStatusException(connection.getURL(), code);
+        }
+        return connection.getInputStream();
+    }
+
+    /**
+     * Reads the entire content of the given URL. Concurrent reads of the same URL
+     * share a single request.
+     *
+     * @param url The URL to read
+     * @return The content. This must not be modified, as it may be shared.
+     * @throws IOException if the resource is missing or could not be read
+     */
+    public static byte @NotNull [] readAllBytes(@NotNull URL url) throws IOException {
+        try {
+            return READS.run(url.toString(), () -> {
+                try (InputStream stream = body(open(url))) {
+                    return stream.readAllBytes();
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Tests whether the given error indicates that a repository is missing the
+     * requested file. This is a regular answer, rather than a failure of the repository.
+     *
+     * @param error The error
+     * @return if the error is a miss
+     */
+    public static boolean isMissing(@NotNull Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof FileNotFoundException)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Tests whether the given error is temporary and the request may succeed if
+     * retried: timeouts, reset or truncated connections, and HTTP statuses such
+     * as 502, 503 or 429. Unknown hosts and refused connections are not
+     * considered transient, as retrying them rarely helps.
+     *
+     * @param error The error
+     * @return if the request may be retried
+     */
+    public static boolean isTransient(@NotNull Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof HttpStatusException)
+                return ((HttpStatusException) cause).isTransient();
+            if (cause instanceof UnknownHostException || cause instanceof ConnectException || cause instanceof NoRouteToHostException)
+                return false;
+            if (cause instanceof SocketTimeoutException || cause instanceof SocketException || cause instanceof EOFException)
+                return true;
+            if (cause instanceof IOException && String.valueOf(cause.getMessage()).contains("Premature EOF"))
+                return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,39 @@
+package revxrsal.zapper.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.net.URL;
+
+/**
+ * Thrown when a server answers with an HTTP error status (other than a missing
+ * resource, which is reported as a {@link java.io.FileNotFoundException}).
+ */
+public final class HttpStatusException extends IOException {
+
+    private final int status;
+
+    public HttpStatusException(@NotNull URL url, int status) {
+        super("Server returned HTTP " + status + " for " + url);
+        this.status = status;
+    }
+
+    /**
+     * Returns the HTTP status code
+     *
+     * @return The status code
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * Tests whether the status indicates a temporary condition, such as an
+     * overloaded server or a failing gateway, which may succeed if retried.
+     *
+     * @return if the request may be retried
+     */
+    public boolean isTransient() {
+        return status >= 500 || status == 429 || status == 408;
+    }
+}
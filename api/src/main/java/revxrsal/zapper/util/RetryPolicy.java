@@ -0,0 +1,75 @@
+package revxrsal.zapper.util;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Describes how often, and how long apart, requests that fail with a transient
+ * error are retried. Delays grow exponentially, and are jittered so that many
+ * clients retrying at once do not hit the server in lockstep.
+ */
+public final class RetryPolicy {
+
+    private static final RetryPolicy DEFAULT = new RetryPolicy(3, Duration.ofMillis(250), Duration.ofSeconds(4));
+    private static final RetryPolicy NONE = new RetryPolicy(1, Duration.ZERO, Duration.ZERO);
+
+    private final int maxAttempts;
+    private final long baseDelay;
+    private final long maxDelay;
+
+    /**
+     * Creates a new {@link RetryPolicy}
+     *
+     * @param maxAttempts The maximum number of attempts, including the first one
+     * @param baseDelay   The delay before the first retry. This doubles for every retry.
+     * @param maxDelay    The upper bound of the delay
+     */
+    public RetryPolicy(int maxAttempts, @NotNull Duration baseDelay, @NotNull Duration maxDelay) {
+        if (maxAttempts < 1)
+            throw new IllegalArgumentException("maxAttempts must be at least 1");
+        this.maxAttempts = maxAttempts;
+        this.baseDelay = baseDelay.toMillis();
+        this.maxDelay = maxDelay.toMillis();
+    }
+
+    /**
+     * Returns the default policy: 3 attempts, starting 250 ms apart, up to 4 seconds apart.
+     *
+     * @return The default policy
+     */
+    @Contract(pure = true)
+    public static @NotNull RetryPolicy defaultPolicy() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns a policy that never retries
+     *
+     * @return The policy
+     */
+    @Contract(pure = true)
+    public static @NotNull RetryPolicy none() {
+        return NONE;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Returns how long to wait before the given retry. This is a random value between
+     * half and all of {@code baseDelay * 2^(retry - 1)}, capped at {@code maxDelay}.
+     *
+     * @param retry The retry, starting at 1
+     * @return The delay, in milliseconds
+     */
+    public long delay(int retry) {
+        long bound = Math.min(maxDelay, baseDelay << Math.min(retry - 1, 30));
+        if (bound <= 0)
+            return 0;
+        return bound / 2 + ThreadLocalRandom.current().nextLong(bound / 2 + 1);
+    }
+}
@@ -0,0 +1,117 @@
+package revxrsal.zapper.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * A registry of in-flight calls, keyed by (usually) a URL. When several threads
+ * ask for the same key at the same time, only the first one performs the call,
+ * and the others wait for it and share its result (or its exception).
+ * <p>
+ * Results are not retained once the call completes. Caching is left to the callers.
+ * A result that holds a resource, such as a temporary file, can be released once
+ * every caller sharing it is done with it.
+ *
+ * @param <T> The result type
+ */
+public final class SingleFlight<T> {
+
+    private final Map<String, Flight<T>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Runs the given call, unless a call with the same key is already in flight,
+     * in which case its result is awaited and returned instead.
+     *
+     * @param key  The key of the call
+     * @param call The call to perform
+     * @return The result of the call
+     * @throws Exception the exception thrown by the call
+     */
+    public T run(@NotNull String key, @NotNull Callable<T> call) throws Exception {
+        return run(key, call, result -> result, null);
+    }
+
+    /**
+     * Runs the given call, or awaits the one in flight with the same key, and
+     * hands its result to the given function. Once every caller that shared the
+     * result has returned from the function, the result is released.
+     *
+     * @param key     The key of the call
+     * @param call    The call to perform
+     * @param use     The function applied to the result by each caller
+     * @param release Releases the result, once no caller uses it anymore
+     * @param <R>     The type returned by the function
+     * @return What the function returned for this caller
+     * @throws Exception the exception thrown by the call or the function
+     */
+    public <R> R run(@NotNull String key, @NotNull Callable<T> call, @NotNull Use<T, R> use, @Nullable Consumer<T> release) throws Exception {
+        Flight<T> created = new Flight<>();
+        // Joining happens atomically with the removal below, so once the call is
+        // removed, the number of callers sharing its result is final.
+        Flight<T> flight = inFlight.compute(key, (k, existing) -> {
+            if (existing == null)
+                return created;
+            existing.holders.incrementAndGet();
+            return existing;
+        });
+        T result;
+        if (flight != created) {
+            result = await(flight.future);
+        } else {
+            try {
+                result = call.call();
+                flight.future.complete(result);
+            } catch (Throwable t) {
+                flight.future.completeExceptionally(t);
+                throw t;
+            } finally {
+                inFlight.remove(key, flight);
+            }
+        }
+        try {
+            return use.apply(result);
+        } finally {
+            if (release != null && flight.holders.decrementAndGet() == 0)
+                release.accept(result);
+        }
+    }
+
+    /**
+     * A function applied to a shared result
+     *
+     * @param <T> The result type
+     * @param <R> The return type
+     */
+    @FunctionalInterface
+    public interface Use<T, R> {
+
+        R apply(T result) throws Exception;
+    }
+
+    private static final class Flight<T> {
+
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private final AtomicInteger holders = new AtomicInteger(1);
+    }
+
+    private static <T> T await(@NotNull CompletableFuture<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception)
+                throw (Exception) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package revxrsal.zapper.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.w3c.dom.Document;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+/**
+ * A utility for parsing repository XML files (POMs and metadata) with
+ * external entities and doctypes disabled.
+ */
+public final class Xml {
+
+    private Xml() {
+    }
+
+    /**
+     * Parses the given stream into a normalized document
+     *
+     * @param stream The stream to parse
+     * @return The parsed document
+     * @throws Exception if the content could not be parsed
+     */
+    public static @NotNull Document parse(@NotNull InputStream stream) throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+
+        factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+        factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+        factory.setFeature("http://xml.org/sax/features/external-general-entities", false);
+        factory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+        factory.setNamespaceAware(false);
+
+        Document document = factory.newDocumentBuilder().parse(stream);
+        document.getDocumentElement().normalize();
+        return document;
+    }
+
+    /**
+     * Parses the given content into a normalized document
+     *
+     * @param content The content to parse
+     * @return The parsed document
+     * @throws Exception if the content could not be parsed
+     */
+    public static @NotNull Document parse(byte @NotNull [] content) throws Exception {
+        return parse(new ByteArrayInputStream(content));
+    }
+}
@@ -0,0 +1,231 @@
+package revxrsal.zapper;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import revxrsal.zapper.harness.ArtifactGenerator;
+import revxrsal.zapper.harness.FakeArtifact;
+import revxrsal.zapper.harness.FakeMavenRepository;
+import revxrsal.zapper.repository.Repository;
+import revxrsal.zapper.util.Connections;
+import revxrsal.zapper.util.HttpStatusException;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Downloads artifacts from a {@link FakeMavenRepository}, with and without faults
+ */
+class DependencyDownloadTest {
+
+    private FakeMavenRepository server;
+    private Repository repository;
+
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    void start() throws Exception {
+        server = FakeMavenRepository.start();
+        repository = server.toRepository();
+    }
+
+    @AfterEach
+    void stop() {
+        server.close();
+    }
+
+    @Test
+    void downloadsAndVerifiesJars() {
+        final FakeArtifact artifact = publish("com.example:download:1.0");
+        final File file = directory.resolve("download.jar").toFile();
+
+        assertSuccess(artifact.getDependency().download(file, repository));
+        assertArrayEquals(artifact.getJar(), read(file));
+        assertEquals(1, server.requests(jarPath(artifact)));
+    }
+
+    @Test
+    void downloadsWithoutChecksumFiles() {
+        final FakeArtifact artifact = publish("com.example:unchecked:1.0");
+        final File file = directory.resolve("unchecked.jar").toFile();
+
+        server.faults().status(".sha1", 404);
+
+        assertSuccess(artifact.getDependency().download(file, repository));
+        assertArrayEquals(artifact.getJar(), read(file));
+    }
+
+    @Test
+    void rejectsChecksumMismatches() {
+        final FakeArtifact artifact = publish("com.example:corrupt:1.0");
+        final File file = directory.resolve("corrupt.jar").toFile();
+
+        server.faults().corruptChecksums(true);
+
+        final Throwable error = assertFailure(artifact.getDependency().download(file, repository));
+
+        assertTrue(error.getMessage().contains("checksum mismatch"), error.toString());
+        assertFalse(file.exists());
+    }
+
+    @Test
+    void reportsMissingArtifacts() {
+        final Dependency dependency = ArtifactGenerator.parse("com.example:missing:1.0");
+        final File file = directory.resolve("missing.jar").toFile();
+
+        final Throwable error = assertFailure(dependency.download(file, repository));
+
+        assertTrue(Connections.isMissing(error), error.toString());
+        assertFalse(file.exists());
+    }
+
+    @Test
+    void reportsServerErrors() {
+        final FakeArtifact artifact = publish("com.example:broken:1.0");
+        final File file = directory.resolve("broken.jar").toFile();
+
+        server.faults().status(".jar", 500);
+
+        final Throwable error = assertFailure(artifact.getDependency().download(file, repository));
+
+        assertEquals(500, assertInstanceOf(HttpStatusException.class, error).getStatus());
+        assertFalse(Connections.isMissing(error));
+        assertFalse(file.exists());
+    }
+
+    @Test
+    void rejectsTruncatedBodies() {
+        final FakeArtifact artifact = publish("com.example:truncated:1.0");
+        final File file = directory.resolve("truncated.jar").toFile();
+
+        server.faults().truncate(1);
+
+        assertFailure(artifact.getDependency().download(file, repository));
+        assertFalse(file.exists());
+    }
+
+    @Test
+    void verifiesLockedDownloads() throws Exception {
+        final FakeArtifact artifact = publish("com.example:locked:1.0");
+        final Dependency dependency = artifact.getDependency();
+        final String sha256 = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(artifact.getJar()));
+        final File file = directory.resolve("locked.jar").toFile();
+
+        assertSuccess(dependency.download(file, new DependencyLock(dependency, server.url(), artifact.getJar().length, sha256)));
+        assertArrayEquals(artifact.getJar(), read(file));
+        // Locked downloads verify the jar themselves
+        assertEquals(0, server.requests(jarPath(artifact) + ".sha1"));
+
+        final File tampered = directory.resolve("tampered.jar").toFile();
+        final String wrong = HexFormat.of().formatHex(new byte[32]);
+
+        assertFailure(dependency.download(tampered, new DependencyLock(dependency, server.url(), artifact.getJar().length, wrong)));
+        assertFalse(tampered.exists());
+    }
+
+    @Test
+    void coalescesConcurrentDownloads() throws Exception {
+        final FakeArtifact artifact = publish("com.example:shared:1.0");
+        final int threads = 8;
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final CountDownLatch ready = new CountDownLatch(threads);
+        final List<Future<DependencyDownloadResult>> results = new ArrayList<>();
+
+        // The latency keeps the first request in flight while the others join it
+        server.faults().latency(Duration.ofMillis(300));
+
+        try {
+            for (int i = 0; i < threads; i++) {
+                final File file = directory.resolve("shared-" + i + ".jar").toFile();
+
+                results.add(executor.submit(() -> {
+                    ready.countDown();
+                    ready.await();
+
+                    return artifact.getDependency().download(file, repository);
+                }));
+            }
+
+            for (int i = 0; i < threads; i++) {
+                assertSuccess(results.get(i).get());
+                assertArrayEquals(artifact.getJar(), read(directory.resolve("shared-" + i + ".jar").toFile()));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, server.requests(jarPath(artifact)));
+    }
+
+    @Test
+    void revalidatesSnapshotsWithoutDownloadingThemAgain() throws Exception {
+        final FakeArtifact artifact = publish("com.example:snapshot:1.0-SNAPSHOT");
+        final File file = directory.resolve("snapshot.jar").toFile();
+
+        assertSuccess(artifact.getDependency().download(file, repository));
+        server.resetCounters();
+
+        assertFalse(artifact.getDependency().revalidate(file, repository));
+        assertArrayEquals(artifact.getJar(), read(file));
+        assertTrue(
+            server.bytesServed() < artifact.getJar().length,
+            "Revalidation transferred " + server.bytesServed() + " bytes"
+        );
+    }
+
+    private @NotNull FakeArtifact publish(@NotNull final String coordinates) {
+        final FakeArtifact artifact = ArtifactGenerator.artifact(coordinates, 20, 512);
+
+        server.publish(artifact);
+
+        return artifact;
+    }
+
+    private static @NotNull String jarPath(@NotNull final FakeArtifact artifact) {
+        final Dependency dependency = artifact.getDependency();
+
+        return dependency.getGroupId().replace('.', '/') + "/" +
+            dependency.getArtifactId() + "/" +
+            dependency.getVersion() + "/" +
+            dependency.getArtifactId() + "-" + dependency.getVersion() + ".jar";
+    }
+
+    private static void assertSuccess(@NotNull final DependencyDownloadResult result) {
+        if (!result.wasSuccessful()) {
+            throw new AssertionError("Download failed", result.asFailure().getError());
+        }
+    }
+
+    private static @NotNull Throwable assertFailure(@NotNull final DependencyDownloadResult result) {
+        assertFalse(result.wasSuccessful(), "Download succeeded");
+
+        return result.asFailure().getError();
+    }
+
+    private static byte @NotNull [] read(@NotNull final File file) {
+        try {
+            return Files.readAllBytes(file.toPath());
+        } catch (final Exception e) {
+            throw new AssertionError(e);
+        }
+    }
+}
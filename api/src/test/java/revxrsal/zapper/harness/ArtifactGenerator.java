@@ -0,0 +1,291 @@
+package revxrsal.zapper.harness;
+
+import org.jetbrains.annotations.NotNull;
+import revxrsal.zapper.Dependency;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+/**
+ * Generates jars and POMs for a {@link FakeMavenRepository}.
+ * <p>
+ * Generated jars contain real (if empty) class files, so they can be fed to the
+ * relocator as well. Every class has a field of the next class in its package, and
+ * of a class in every referenced package, so that relocation rules have something
+ * to rewrite.
+ * Each jar also has a manifest, a service file and a plain resource.
+ */
+public final class ArtifactGenerator {
+
+    private static final int CLASS_FILE_MAGIC = 0xCAFEBABE;
+    private static final int JAVA_8 = 52;
+    private static final int ACC_PUBLIC_SUPER = 0x0021;
+    private static final int ACC_PUBLIC_STATIC_FINAL = 0x0019;
+    private static final int ACC_PRIVATE_STATIC = 0x000A;
+
+    private static final byte CONSTANT_UTF8 = 1;
+    private static final byte CONSTANT_CLASS = 7;
+    private static final byte CONSTANT_STRING = 8;
+
+    /**
+     * The constant pool index of the first reference field name. The ones
+     * before it are fixed, see {@link #assemble(String, List, int)}.
+     */
+    private static final int FIRST_REFERENCE = 12;
+
+    private ArtifactGenerator() {
+    }
+
+    /**
+     * Generates an artifact whose classes live in a package derived from its
+     * coordinates, such as {@code com/example/lib} for {@code com.example:lib}.
+     *
+     * @param dependency   The coordinates of the artifact
+     * @param classes      The number of classes in the jar
+     * @param classSize    The approximate size of each class file, in bytes
+     * @param dependencies The dependencies declared in the POM. Their packages are
+     *                     referenced by the generated classes.
+     * @return The artifact
+     */
+    public static @NotNull FakeArtifact artifact(
+        @NotNull final Dependency dependency,
+        final int classes,
+        final int classSize,
+        @NotNull final List<Dependency> dependencies
+    ) {
+        final List<String> references = new ArrayList<>(dependencies.size());
+
+        for (final Dependency other : dependencies) {
+            references.add(packageOf(other));
+        }
+
+        return new FakeArtifact(
+            dependency,
+            jar(packageOf(dependency), classes, classSize, references),
+            pom(dependency, dependencies),
+            dependencies
+        );
+    }
+
+    /**
+     * Generates an artifact without dependencies
+     *
+     * @see #artifact(Dependency, int, int, List)
+     */
+    public static @NotNull FakeArtifact artifact(
+        @NotNull final String coordinates, final int classes, final int classSize
+    ) {
+        return artifact(parse(coordinates), classes, classSize, List.of());
+    }
+
+    /**
+     * Returns the internal package name of the classes generated for the given dependency
+     *
+     * @param dependency The dependency
+     * @return The package name, such as {@code com/example/lib}
+     */
+    public static @NotNull String packageOf(@NotNull final Dependency dependency) {
+        return (dependency.getGroupId() + "." + dependency.getArtifactId().replace('-', '_')).replace('.', '/');
+    }
+
+    /**
+     * Generates a jar
+     *
+     * @param packageName The internal name of the package of the classes
+     * @param classes     The number of classes
+     * @param classSize   The approximate size of each class file, in bytes
+     * @param references  The internal names of the packages every class references
+     * @return The jar content
+     */
+    public static byte @NotNull [] jar(
+        @NotNull final String packageName,
+        final int classes,
+        final int classSize,
+        @NotNull final List<String> references
+    ) {
+        final Manifest manifest = new Manifest();
+
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        try (final JarOutputStream jar = new JarOutputStream(out, manifest)) {
+            for (int i = 0; i < classes; i++) {
+                final String name = packageName + "/Generated" + i;
+                final List<String> referenced = new ArrayList<>(references.size() + 1);
+
+                referenced.add(packageName + "/Generated" + ((i + 1) % classes));
+
+                for (final String reference : references) {
+                    referenced.add(reference + "/Generated0");
+                }
+
+                jar.putNextEntry(new JarEntry(name + ".class"));
+                jar.write(classFile(name, referenced, classSize));
+                jar.closeEntry();
+            }
+
+            jar.putNextEntry(new JarEntry("META-INF/services/" + packageName.replace('/', '.') + ".Service"));
+            jar.write((packageName.replace('/', '.') + ".Generated0\n").getBytes(StandardCharsets.UTF_8));
+            jar.closeEntry();
+
+            jar.putNextEntry(new JarEntry(packageName + "/resource.txt"));
+            jar.write(("Resource of " + packageName + "\n").getBytes(StandardCharsets.UTF_8));
+            jar.closeEntry();
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+
+        return out.toByteArray();
+    }
+
+    /**
+     * Assembles a minimal, valid class file that extends {@link Object}, has a static
+     * field of every referenced class and a {@code SourceFile} attribute. It is padded
+     * to the given size with a string constant.
+     *
+     * @param name       The internal name of the class
+     * @param references The internal names of the referenced classes
+     * @param size       The approximate size of the class file, in bytes
+     * @return The class file
+     */
+    public static byte @NotNull [] classFile(
+        @NotNull final String name, @NotNull final List<String> references, final int size
+    ) {
+        final byte[] unpadded = assemble(name, references, 0);
+
+        return size <= unpadded.length ? unpadded : assemble(name, references, size - unpadded.length);
+    }
+
+    private static byte @NotNull [] assemble(
+        @NotNull final String name, @NotNull final List<String> references, final int padding
+    ) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + padding);
+
+        try (final DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(CLASS_FILE_MAGIC);
+            out.writeShort(0);
+            out.writeShort(JAVA_8);
+            out.writeShort(FIRST_REFERENCE + references.size() * 2);
+
+            utf8(out, name);                                                    // #1
+            classRef(out, 1);                                                   // #2
+            utf8(out, "java/lang/Object");                                      // #3
+            classRef(out, 3);                                                   // #4
+            utf8(out, "SourceFile");                                            // #5
+            utf8(out, name.substring(name.lastIndexOf('/') + 1) + ".java");     // #6
+            utf8(out, "ConstantValue");                                         // #7
+            utf8(out, "PADDING");                                               // #8
+            utf8(out, "Ljava/lang/String;");                                    // #9
+            utf8(out, padding(padding));                                        // #10
+            out.writeByte(CONSTANT_STRING);                                     // #11
+            out.writeShort(10);
+
+            for (int i = 0; i < references.size(); i++) {
+                utf8(out, "reference" + i);
+                utf8(out, "L" + references.get(i) + ";");
+            }
+
+            out.writeShort(ACC_PUBLIC_SUPER);
+            out.writeShort(2);
+            out.writeShort(4);
+            out.writeShort(0); // interfaces
+
+            out.writeShort(1 + references.size()); // fields
+            out.writeShort(ACC_PUBLIC_STATIC_FINAL);
+            out.writeShort(8);
+            out.writeShort(9);
+            out.writeShort(1);
+            out.writeShort(7);
+            out.writeInt(2);
+            out.writeShort(11);
+
+            for (int i = 0; i < references.size(); i++) {
+                out.writeShort(ACC_PRIVATE_STATIC);
+                out.writeShort(FIRST_REFERENCE + i * 2);
+                out.writeShort(FIRST_REFERENCE + i * 2 + 1);
+                out.writeShort(0);
+            }
+
+            out.writeShort(0); // methods
+            out.writeShort(1); // attributes
+            out.writeShort(5);
+            out.writeInt(2);
+            out.writeShort(6);
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Generates a POM declaring the given dependencies in the compile scope
+     *
+     * @param dependency   The coordinates of the artifact
+     * @param dependencies The dependencies
+     * @return The POM content
+     */
+    public static byte @NotNull [] pom(@NotNull final Dependency dependency, @NotNull final List<Dependency> dependencies) {
+        final StringBuilder pom = new StringBuilder()
+            .append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+            .append("<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n")
+            .append("  <modelVersion>4.0.0</modelVersion>\n")
+            .append("  <groupId>").append(dependency.getGroupId()).append("</groupId>\n")
+            .append("  <artifactId>").append(dependency.getArtifactId()).append("</artifactId>\n")
+            .append("  <version>").append(dependency.getVersion()).append("</version>\n")
+            .append("  <dependencies>\n");
+
+        for (final Dependency other : dependencies) {
+            pom.append("    <dependency>\n")
+                .append("      <groupId>").append(other.getGroupId()).append("</groupId>\n")
+                .append("      <artifactId>").append(other.getArtifactId()).append("</artifactId>\n")
+                .append("      <version>").append(other.getVersion()).append("</version>\n")
+                .append("      <scope>compile</scope>\n")
+                .append("    </dependency>\n");
+        }
+
+        pom.append("  </dependencies>\n").append("</project>\n");
+
+        return pom.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parses {@code group:artifact:version[:classifier]} coordinates
+     *
+     * @param coordinates The coordinates
+     * @return The dependency
+     */
+    public static @NotNull Dependency parse(@NotNull final String coordinates) {
+        final String[] parts = coordinates.split(":");
+
+        return new Dependency(parts[0], parts[1], parts[2], parts.length == 4 ? parts[3] : null);
+    }
+
+    private static void utf8(@NotNull final DataOutputStream out, @NotNull final String value) throws IOException {
+        out.writeByte(CONSTANT_UTF8);
+        out.writeUTF(value);
+    }
+
+    private static void classRef(@NotNull final DataOutputStream out, final int nameIndex) throws IOException {
+        out.writeByte(CONSTANT_CLASS);
+        out.writeShort(nameIndex);
+    }
+
+    private static @NotNull String padding(final int length) {
+        final char[] chars = new char[Math.max(0, Math.min(length, 65_535))];
+
+        Arrays.fill(chars, 'x');
+
+        return new String(chars);
+    }
+}
@@ -0,0 +1,260 @@
+package revxrsal.zapper.harness;
+
+import org.jetbrains.annotations.NotNull;
+import revxrsal.zapper.Dependency;
+import revxrsal.zapper.DependencyDownloadResult;
+import revxrsal.zapper.repository.Repository;
+import revxrsal.zapper.transitive.TransitiveResolver;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * Measures the download and resolution paths against a {@link FakeMavenRepository},
+ * so that changes to them can be compared for performance regressions.
+ * <p>
+ * Run it with {@code ./gradlew :api:benchmark}, optionally passing arguments as
+ * {@code --args="artifacts=50 classes=200 latency=20 bandwidth=10000000"}:
+ * <ul>
+ *     <li>{@code artifacts}: the number of artifacts to download (default 20)</li>
+ *     <li>{@code classes}: the number of classes in every jar (default 100)</li>
+ *     <li>{@code classSize}: the size of every class file, in bytes (default 2048)</li>
+ *     <li>{@code latency}: the simulated round trip, in milliseconds (default 10)</li>
+ *     <li>{@code bandwidth}: the bandwidth cap, in bytes per second (default none)</li>
+ * </ul>
+ */
+public final class DownloadBenchmark {
+
+    private DownloadBenchmark() {
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final Map<String, String> options = parse(args);
+        final int artifacts = Integer.parseInt(options.getOrDefault("artifacts", "20"));
+        final int classes = Integer.parseInt(options.getOrDefault("classes", "100"));
+        final int classSize = Integer.parseInt(options.getOrDefault("classSize", "2048"));
+        final long latency = Long.parseLong(options.getOrDefault("latency", "10"));
+        final long bandwidth = Long.parseLong(options.getOrDefault("bandwidth", "0"));
+
+        final Path directory = Files.createTempDirectory("zapper-benchmark");
+
+        try (final FakeMavenRepository server = FakeMavenRepository.start()) {
+            final Repository repository = server.toRepository();
+            final List<FakeArtifact> published = new ArrayList<>(artifacts);
+
+            for (int i = 0; i < artifacts; i++) {
+                final FakeArtifact artifact = ArtifactGenerator.artifact("com.example:lib" + i + ":1.0", classes, classSize);
+
+                server.publish(artifact);
+                published.add(artifact);
+            }
+
+            server.faults().latency(Duration.ofMillis(latency)).bandwidth(bandwidth);
+
+            System.out.printf(
+                Locale.ROOT,
+                "%d artifacts of %d bytes, %d ms latency, %s%n%n",
+                artifacts,
+                published.get(0).getJar().length,
+                latency,
+                bandwidth == 0 ? "unlimited bandwidth" : bandwidth + " bytes/s"
+            );
+            System.out.printf(Locale.ROOT, "%-28s %10s %10s %14s %8s%n", "scenario", "time (ms)", "requests", "bytes", "failed");
+
+            run(server, "sequential downloads", () -> {
+                int failed = 0;
+
+                for (final FakeArtifact artifact : published) {
+                    failed += download(artifact.getDependency(), directory.resolve("sequential"), repository);
+                }
+
+                return failed;
+            });
+
+            run(server, "parallel downloads", () -> parallel(published.size(), i ->
+                download(published.get(i).getDependency(), directory.resolve("parallel"), repository)
+            ));
+
+            run(server, "same artifact, 8 threads", () -> parallel(8, i ->
+                download(published.get(0).getDependency(), directory.resolve("same-" + i), repository)
+            ));
+
+            server.faults().truncate(0.2);
+            run(server, "20% truncated bodies", () -> parallel(published.size(), i ->
+                download(published.get(i).getDependency(), directory.resolve("truncated"), repository)
+            ));
+            server.faults().truncate(0).errors(0.2, 503);
+            run(server, "20% server errors", () -> parallel(published.size(), i ->
+                download(published.get(i).getDependency(), directory.resolve("errors"), repository)
+            ));
+            server.faults().errors(0, 500).corruptChecksums(true);
+            run(server, "corrupt checksums", () -> parallel(published.size(), i ->
+                download(published.get(i).getDependency(), directory.resolve("checksums"), repository)
+            ));
+            server.faults().corruptChecksums(false);
+
+            final FakeArtifact root = publishTree(server, "com.example.tree", 3, 4, classes, classSize);
+
+            run(server, "transitive resolution", () -> {
+                final List<Dependency> resolved = TransitiveResolver.builder()
+                    .clearRepositories()
+                    .repositories(repository)
+                    .build()
+                    .resolve(root.getDependency());
+
+                return resolved.isEmpty() ? 1 : 0;
+            });
+
+            final FakeArtifact snapshot = ArtifactGenerator.artifact("com.example:snapshot:1.0-SNAPSHOT", classes, classSize);
+            final File snapshotFile = directory.resolve("snapshot/snapshot.jar").toFile();
+
+            server.publish(snapshot);
+            run(server, "snapshot download", () -> snapshot.getDependency().download(snapshotFile, repository).wasSuccessful() ? 0 : 1);
+            run(server, "snapshot revalidation", () -> snapshot.getDependency().revalidate(snapshotFile, repository) ? 1 : 0);
+        } finally {
+            delete(directory);
+        }
+    }
+
+    /**
+     * Publishes a tree of artifacts, where every artifact down to the given depth
+     * depends on {@code fanOut} others, and returns its root
+     */
+    private static @NotNull FakeArtifact publishTree(
+        @NotNull final FakeMavenRepository server,
+        @NotNull final String groupId,
+        final int depth,
+        final int fanOut,
+        final int classes,
+        final int classSize
+    ) {
+        return publishTree(server, groupId, "node", depth, fanOut, classes, classSize);
+    }
+
+    private static @NotNull FakeArtifact publishTree(
+        @NotNull final FakeMavenRepository server,
+        @NotNull final String groupId,
+        @NotNull final String artifactId,
+        final int depth,
+        final int fanOut,
+        final int classes,
+        final int classSize
+    ) {
+        final List<Dependency> children = new ArrayList<>(fanOut);
+
+        if (depth > 0) {
+            for (int i = 0; i < fanOut; i++) {
+                children.add(publishTree(server, groupId, artifactId + "-" + i, depth - 1, fanOut, classes, classSize).getDependency());
+            }
+        }
+
+        final FakeArtifact artifact = ArtifactGenerator.artifact(
+            new Dependency(groupId, artifactId, "1.0"), classes, classSize, children
+        );
+
+        server.publish(artifact);
+
+        return artifact;
+    }
+
+    private static int download(
+        @NotNull final Dependency dependency, @NotNull final Path directory, @NotNull final Repository repository
+    ) {
+        final File file = directory.resolve(dependency.getArtifactId() + ".jar").toFile();
+        final DependencyDownloadResult result = dependency.download(file, repository);
+
+        return result.wasSuccessful() ? 0 : 1;
+    }
+
+    private static int parallel(final int tasks, @NotNull final IntTask task) throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(tasks, 16));
+        final CountDownLatch start = new CountDownLatch(1);
+
+        try {
+            final List<Future<Integer>> futures = new ArrayList<>(tasks);
+
+            for (int i = 0; i < tasks; i++) {
+                final int index = i;
+
+                futures.add(executor.submit(() -> {
+                    start.await();
+
+                    return task.run(index);
+                }));
+            }
+
+            start.countDown();
+
+            int failed = 0;
+
+            for (final Future<Integer> future : futures) {
+                failed += future.get();
+            }
+
+            return failed;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void run(
+        @NotNull final FakeMavenRepository server, @NotNull final String scenario, @NotNull final Callable<Integer> body
+    ) throws Exception {
+        server.resetCounters();
+
+        final long start = System.nanoTime();
+        final int failed = body.call();
+        final long elapsed = (System.nanoTime() - start) / 1_000_000;
+
+        System.out.printf(
+            Locale.ROOT,
+            "%-28s %10d %10d %14d %8d%n",
+            scenario,
+            elapsed,
+            server.totalRequests(),
+            server.bytesServed(),
+            failed
+        );
+    }
+
+    private static @NotNull Map<String, String> parse(final String @NotNull [] args) {
+        final Map<String, String> options = new HashMap<>();
+
+        for (final String arg : args) {
+            final int equals = arg.indexOf('=');
+
+            if (equals != -1) {
+                options.put(arg.substring(0, equals), arg.substring(equals + 1));
+            }
+        }
+
+        return options;
+    }
+
+    private static void delete(@NotNull final Path directory) throws IOException {
+        try (final Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @FunctionalInterface
+    private interface IntTask {
+
+        int run(int index) throws Exception;
+    }
+}
@@ -0,0 +1,80 @@
+package revxrsal.zapper.harness;
+
+import org.jetbrains.annotations.NotNull;
+import revxrsal.zapper.Dependency;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+/**
+ * An artifact served by a {@link FakeMavenRepository}: its coordinates, jar and POM.
+ *
+ * @see ArtifactGenerator
+ */
+public final class FakeArtifact {
+
+    private final Dependency dependency;
+    private final byte[] jar;
+    private final byte[] pom;
+    private final List<Dependency> dependencies;
+
+    public FakeArtifact(
+        @NotNull final Dependency dependency,
+        final byte @NotNull [] jar,
+        final byte @NotNull [] pom,
+        @NotNull final List<Dependency> dependencies
+    ) {
+        this.dependency = dependency;
+        this.jar = jar;
+        this.pom = pom;
+        this.dependencies = List.copyOf(dependencies);
+    }
+
+    public @NotNull Dependency getDependency() {
+        return dependency;
+    }
+
+    public byte @NotNull [] getJar() {
+        return jar;
+    }
+
+    public byte @NotNull [] getPom() {
+        return pom;
+    }
+
+    /**
+     * Returns the dependencies declared in the POM of this artifact
+     *
+     * @return The dependencies
+     */
+    public @NotNull List<Dependency> getDependencies() {
+        return dependencies;
+    }
+
+    /**
+     * Returns the hex-encoded SHA-1 of the given content, as served in {@code .sha1} files
+     *
+     * @param content The content
+     * @return The checksum
+     */
+    public static @NotNull String sha1(final byte @NotNull [] content) {
+        try {
+            final byte[] hash = MessageDigest.getInstance("SHA-1").digest(content);
+            final StringBuilder builder = new StringBuilder(hash.length * 2);
+
+            for (final byte value : hash) {
+                builder.append(String.format("%02x", value));
+            }
+
+            return builder.toString();
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return dependency + " (" + jar.length + " bytes)";
+    }
+}
@@ -0,0 +1,406 @@
+package revxrsal.zapper.harness;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.jetbrains.annotations.NotNull;
+import revxrsal.zapper.Dependency;
+import revxrsal.zapper.repository.Repository;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An in-process HTTP Maven repository, for testing and benchmarking the download
+ * and resolution paths without touching the network.
+ * <p>
+ * Artifacts are {@link #publish(FakeArtifact) published} with their jar, POM and
+ * checksums, and the artifact-level {@code maven-metadata.xml} is kept up to date.
+ * Snapshots are published with unique timestamped versions, and republishing one
+ * creates a new build. Every file is served with an {@code ETag} and a
+ * {@code Last-Modified} header, and conditional requests are honored.
+ * <p>
+ * Latency, bandwidth caps, error statuses, truncated bodies and corrupt checksums
+ * can be injected through {@link #faults()}. The repository counts the requests
+ * and bytes it serves, so that tests can assert on network behaviour.
+ *
+ * <pre>{@code
+ * try (FakeMavenRepository repository = FakeMavenRepository.start()) {
+ *     repository.publish(ArtifactGenerator.artifact("com.example:lib:1.0", 100, 2048));
+ *     repository.faults().latency(Duration.ofMillis(50)).failNext(1, 503);
+ *
+ *     DependencyDownloadResult result = dependency.download(file, repository.toRepository());
+ * }
+ * }</pre>
+ */
+public final class FakeMavenRepository implements AutoCloseable {
+
+    private static final DateTimeFormatter SNAPSHOT_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd.HHmmss");
+    private static final int CHUNK_SIZE = 8 * 1024;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Faults faults = new Faults();
+    private final Map<String, Served> files = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> versions = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> snapshotBuilds = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+    private final AtomicInteger totalRequests = new AtomicInteger();
+    private final AtomicLong bytesServed = new AtomicLong();
+
+    private FakeMavenRepository(@NotNull final HttpServer server, @NotNull final ExecutorService executor) {
+        this.server = server;
+        this.executor = executor;
+    }
+
+    /**
+     * Starts a repository on a random port of the loopback interface
+     *
+     * @return The started repository
+     * @throws IOException if the server could not be started
+     */
+    public static @NotNull FakeMavenRepository start() throws IOException {
+        // Without this, small responses are held back by Nagle's algorithm on
+        // loopback, adding ~40 ms to every request and skewing measurements.
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+
+        final HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+            final Thread thread = new Thread(runnable, "fake-maven-repository");
+
+            thread.setDaemon(true);
+
+            return thread;
+        });
+        final FakeMavenRepository repository = new FakeMavenRepository(server, executor);
+
+        server.createContext("/", repository::handle);
+        server.setExecutor(executor);
+        server.start();
+
+        return repository;
+    }
+
+    /**
+     * Returns the base URL of this repository, ending with a slash
+     *
+     * @return The URL
+     */
+    public @NotNull String url() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/";
+    }
+
+    /**
+     * Returns a {@link Repository} pointing at this repository
+     *
+     * @return The repository
+     */
+    public @NotNull Repository toRepository() {
+        return Repository.maven(url());
+    }
+
+    /**
+     * Returns the faults injected into responses
+     *
+     * @return The faults
+     */
+    public @NotNull Faults faults() {
+        return faults;
+    }
+
+    /**
+     * Publishes the given artifacts
+     *
+     * @param artifacts The artifacts to publish
+     */
+    public void publish(@NotNull final FakeArtifact... artifacts) {
+        for (final FakeArtifact artifact : artifacts) {
+            publish(artifact);
+        }
+    }
+
+    /**
+     * Publishes the jar, POM and checksums of the given artifact, and adds its
+     * version to the artifact metadata. Snapshots get a new timestamped build on
+     * every publish.
+     *
+     * @param artifact The artifact to publish
+     */
+    public void publish(@NotNull final FakeArtifact artifact) {
+        final Dependency dependency = artifact.getDependency();
+        final String artifactPath = dependency.getGroupId().replace('.', '/') + "/" + dependency.getArtifactId() + "/";
+        final String versionPath = artifactPath + dependency.getVersion() + "/";
+        final String classifier = dependency.getClassifier() == null ? "" : "-" + dependency.getClassifier();
+
+        String fileVersion = dependency.getVersion();
+
+        if (dependency.isSnapshot()) {
+            final int build = snapshotBuilds.computeIfAbsent(versionPath, k -> new AtomicInteger()).incrementAndGet();
+            final String timestamp = ZonedDateTime.now(ZoneOffset.UTC).format(SNAPSHOT_TIMESTAMP);
+
+            fileVersion = dependency.getVersion().replace("SNAPSHOT", timestamp + "-" + build);
+
+            put(versionPath + "maven-metadata.xml", snapshotMetadata(dependency, timestamp, build, classifier));
+        }
+
+        final String base = versionPath + dependency.getArtifactId() + "-" + fileVersion;
+
+        putWithChecksum(base + classifier + ".jar", artifact.getJar());
+        putWithChecksum(base + ".pom", artifact.getPom());
+
+        final Set<String> known = versions.computeIfAbsent(artifactPath, k -> new TreeSet<>());
+
+        synchronized (known) {
+            known.add(dependency.getVersion());
+            put(artifactPath + "maven-metadata.xml", artifactMetadata(dependency, known));
+        }
+    }
+
+    /**
+     * Serves the given content at the given path, replacing any previous content
+     *
+     * @param path    The path, relative to the repository root
+     * @param content The content
+     */
+    public void put(@NotNull final String path, final byte @NotNull [] content) {
+        files.put(path, new Served(content, System.currentTimeMillis()));
+    }
+
+    /**
+     * Stops serving the file at the given path
+     *
+     * @param path The path, relative to the repository root
+     */
+    public void remove(@NotNull final String path) {
+        files.remove(path);
+    }
+
+    /**
+     * Returns how many requests were received for the given path
+     *
+     * @param path The path, relative to the repository root
+     * @return The number of requests
+     */
+    public int requests(@NotNull final String path) {
+        final AtomicInteger count = requests.get(path);
+
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * Returns how many requests were received in total
+     *
+     * @return The number of requests
+     */
+    public int totalRequests() {
+        return totalRequests.get();
+    }
+
+    /**
+     * Returns how many body bytes were sent in total
+     *
+     * @return The number of bytes
+     */
+    public long bytesServed() {
+        return bytesServed.get();
+    }
+
+    /**
+     * Resets the request and byte counters
+     */
+    public void resetCounters() {
+        requests.clear();
+        totalRequests.set(0);
+        bytesServed.set(0);
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void putWithChecksum(@NotNull final String path, final byte @NotNull [] content) {
+        put(path, content);
+        put(path + ".sha1", FakeArtifact.sha1(content).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void handle(@NotNull final HttpExchange exchange) throws IOException {
+        try (exchange) {
+            final String path = exchange.getRequestURI().getPath().substring(1);
+
+            totalRequests.incrementAndGet();
+            requests.computeIfAbsent(path, k -> new AtomicInteger()).incrementAndGet();
+
+            sleep(faults.getLatencyMillis());
+
+            final Integer injected = faults.injectedStatus(path);
+
+            if (injected != null) {
+                exchange.sendResponseHeaders(injected, -1);
+
+                return;
+            }
+
+            final Served served = files.get(path);
+
+            if (served == null) {
+                exchange.sendResponseHeaders(404, -1);
+
+                return;
+            }
+
+            final String etag = '"' + served.etag + '"';
+            final String lastModified = DateTimeFormatter.RFC_1123_DATE_TIME.format(
+                ZonedDateTime.ofInstant(Instant.ofEpochMilli(served.lastModified), ZoneOffset.UTC)
+            );
+
+            exchange.getResponseHeaders().set("ETag", etag);
+            exchange.getResponseHeaders().set("Last-Modified", lastModified);
+
+            if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match")) ||
+                lastModified.equals(exchange.getRequestHeaders().getFirst("If-Modified-Since"))) {
+                exchange.sendResponseHeaders(304, -1);
+
+                return;
+            }
+
+            byte[] content = served.content;
+
+            if (path.endsWith(".sha1") && faults.shouldCorruptChecksums()) {
+                content = FakeArtifact.sha1(path.getBytes(StandardCharsets.UTF_8)).getBytes(StandardCharsets.UTF_8);
+            }
+
+            if (exchange.getRequestMethod().equals("HEAD")) {
+                exchange.getResponseHeaders().set("Content-Length", Integer.toString(content.length));
+                exchange.sendResponseHeaders(200, -1);
+
+                return;
+            }
+
+            exchange.sendResponseHeaders(200, content.length);
+
+            final int length = faults.shouldTruncate() ? content.length / 2 : content.length;
+
+            write(exchange.getResponseBody(), content, length);
+        }
+    }
+
+    /**
+     * Writes the content in chunks, pacing them to honor the bandwidth cap
+     */
+    private void write(@NotNull final OutputStream out, final byte @NotNull [] content, final int length) throws IOException {
+        final long bytesPerSecond = faults.getBytesPerSecond();
+        final long start = System.nanoTime();
+
+        for (int offset = 0; offset < length; offset += CHUNK_SIZE) {
+            final int chunk = Math.min(CHUNK_SIZE, length - offset);
+
+            out.write(content, offset, chunk);
+            bytesServed.addAndGet(chunk);
+
+            if (bytesPerSecond > 0) {
+                final long due = (offset + chunk) * 1_000L / bytesPerSecond;
+                final long elapsed = (System.nanoTime() - start) / 1_000_000;
+
+                sleep(due - elapsed);
+            }
+        }
+
+        out.flush();
+    }
+
+    private static void sleep(final long millis) {
+        if (millis <= 0) {
+            return;
+        }
+
+        try {
+            Thread.sleep(millis);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static byte @NotNull [] artifactMetadata(@NotNull final Dependency dependency, @NotNull final Set<String> versions) {
+        final StringBuilder xml = new StringBuilder()
+            .append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+            .append("<metadata>\n")
+            .append("  <groupId>").append(dependency.getGroupId()).append("</groupId>\n")
+            .append("  <artifactId>").append(dependency.getArtifactId()).append("</artifactId>\n")
+            .append("  <versioning>\n")
+            .append("    <versions>\n");
+
+        for (final String version : versions) {
+            xml.append("      <version>").append(version).append("</version>\n");
+        }
+
+        xml.append("    </versions>\n").append("  </versioning>\n").append("</metadata>\n");
+
+        return xml.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte @NotNull [] snapshotMetadata(
+        @NotNull final Dependency dependency,
+        @NotNull final String timestamp,
+        final int build,
+        @NotNull final String classifier
+    ) {
+        final String value = dependency.getVersion().replace("SNAPSHOT", timestamp + "-" + build);
+        final String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+            "<metadata modelVersion=\"1.1.0\">\n" +
+            "  <groupId>" + dependency.getGroupId() + "</groupId>\n" +
+            "  <artifactId>" + dependency.getArtifactId() + "</artifactId>\n" +
+            "  <version>" + dependency.getVersion() + "</version>\n" +
+            "  <versioning>\n" +
+            "    <snapshot>\n" +
+            "      <timestamp>" + timestamp + "</timestamp>\n" +
+            "      <buildNumber>" + build + "</buildNumber>\n" +
+            "    </snapshot>\n" +
+            "    <snapshotVersions>\n" +
+            "      <snapshotVersion>\n" +
+            (classifier.isEmpty() ? "" : "        <classifier>" + classifier.substring(1) + "</classifier>\n") +
+            "        <extension>jar</extension>\n" +
+            "        <value>" + value + "</value>\n" +
+            "      </snapshotVersion>\n" +
+            "      <snapshotVersion>\n" +
+            "        <extension>pom</extension>\n" +
+            "        <value>" + value + "</value>\n" +
+            "      </snapshotVersion>\n" +
+            "    </snapshotVersions>\n" +
+            "  </versioning>\n" +
+            "</metadata>\n";
+
+        return xml.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A served file, with the validators it is served with
+     */
+    private static final class Served {
+
+        private final byte[] content;
+        private final long lastModified;
+        private final String etag;
+
+        private Served(final byte @NotNull [] content, final long lastModified) {
+            this.content = content;
+            this.lastModified = lastModified;
+            this.etag = FakeArtifact.sha1(content);
+        }
+    }
+}
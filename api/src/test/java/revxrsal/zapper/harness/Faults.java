@@ -0,0 +1,142 @@
+package revxrsal.zapper.harness;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The network conditions and faults simulated by a {@link FakeMavenRepository}.
+ * <p>
+ * These may be changed at any time, including while requests are in flight,
+ * and apply to every request received afterwards.
+ */
+public final class Faults {
+
+    private volatile long latencyMillis;
+    private volatile long bytesPerSecond;
+    private volatile double errorRate;
+    private volatile int errorStatus = 500;
+    private volatile double truncationRate;
+    private volatile boolean corruptChecksums;
+    private final AtomicInteger failures = new AtomicInteger();
+    private final Map<String, Integer> statuses = new ConcurrentHashMap<>();
+
+    /**
+     * Delays every response by the given duration, simulating a round trip
+     */
+    public @NotNull Faults latency(@NotNull final Duration latency) {
+        this.latencyMillis = latency.toMillis();
+        return this;
+    }
+
+    /**
+     * Caps the rate at which response bodies are sent. A value of 0 removes the cap.
+     */
+    public @NotNull Faults bandwidth(final long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+        return this;
+    }
+
+    /**
+     * Fails the given fraction of requests, chosen at random, with the given status
+     */
+    public @NotNull Faults errors(final double rate, final int status) {
+        this.errorRate = rate;
+        this.errorStatus = status;
+        return this;
+    }
+
+    /**
+     * Fails the next {@code count} requests with the given status, regardless of
+     * the error rate. This is useful for deterministically exercising retries.
+     */
+    public @NotNull Faults failNext(final int count, final int status) {
+        this.errorStatus = status;
+        this.failures.set(count);
+        return this;
+    }
+
+    /**
+     * Always answers requests for paths ending with the given suffix with the given
+     * status, such as {@code 404} for {@code .sha1} or {@code 500} for one artifact.
+     */
+    public @NotNull Faults status(@NotNull final String pathSuffix, final int status) {
+        statuses.put(pathSuffix, status);
+        return this;
+    }
+
+    /**
+     * Cuts off the given fraction of response bodies, chosen at random, halfway
+     * through. The full length is still announced in {@code Content-Length}.
+     */
+    public @NotNull Faults truncate(final double rate) {
+        this.truncationRate = rate;
+        return this;
+    }
+
+    /**
+     * Serves wrong checksums in {@code .sha1} files
+     */
+    public @NotNull Faults corruptChecksums(final boolean corrupt) {
+        this.corruptChecksums = corrupt;
+        return this;
+    }
+
+    /**
+     * Removes all faults and network conditions
+     */
+    public @NotNull Faults reset() {
+        latencyMillis = 0;
+        bytesPerSecond = 0;
+        errorRate = 0;
+        errorStatus = 500;
+        truncationRate = 0;
+        corruptChecksums = false;
+        failures.set(0);
+        statuses.clear();
+        return this;
+    }
+
+    long getLatencyMillis() {
+        return latencyMillis;
+    }
+
+    long getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    boolean shouldCorruptChecksums() {
+        return corruptChecksums;
+    }
+
+    boolean shouldTruncate() {
+        return truncationRate > 0 && ThreadLocalRandom.current().nextDouble() < truncationRate;
+    }
+
+    /**
+     * Returns the status to fail the request for the given path with, or null
+     * if it should be served normally
+     */
+    @Nullable Integer injectedStatus(@NotNull final String path) {
+        for (final Map.Entry<String, Integer> entry : statuses.entrySet()) {
+            if (path.endsWith(entry.getKey())) {
+                return entry.getValue();
+            }
+        }
+
+        if (failures.getAndUpdate(remaining -> Math.max(0, remaining - 1)) > 0) {
+            return errorStatus;
+        }
+
+        if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+            return errorStatus;
+        }
+
+        return null;
+    }
+}
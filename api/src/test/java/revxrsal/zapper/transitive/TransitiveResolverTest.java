@@ -0,0 +1,200 @@
+package revxrsal.zapper.transitive;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import revxrsal.zapper.Dependency;
+import revxrsal.zapper.harness.ArtifactGenerator;
+import revxrsal.zapper.harness.FakeMavenRepository;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Resolves dependency graphs published to a {@link FakeMavenRepository}
+ */
+class TransitiveResolverTest {
+
+    private FakeMavenRepository server;
+
+    @BeforeEach
+    void start() throws Exception {
+        server = FakeMavenRepository.start();
+    }
+
+    @AfterEach
+    void stop() {
+        server.close();
+    }
+
+    @Test
+    void resolvesTheWholeGraph() {
+        pom("com.example:app:1.0", dependency("com.example:lib:1.0"), dependency("com.example:util:1.0"));
+        pom("com.example:lib:1.0", dependency("com.example:core:1.0"));
+        pom("com.example:util:1.0", dependency("com.example:core:1.0"));
+        pom("com.example:core:1.0");
+
+        assertEquals(
+            Set.of("com.example:lib:1.0", "com.example:util:1.0", "com.example:core:1.0"),
+            resolve(resolver(), "com.example:app:1.0")
+        );
+        // Every POM is fetched once, even though two artifacts depend on core
+        assertEquals(1, server.requests("com/example/core/1.0/core-1.0.pom"));
+    }
+
+    @Test
+    void resolvesDirectDependenciesOnly() {
+        pom("com.example:app:1.0", dependency("com.example:lib:1.0"));
+        pom("com.example:lib:1.0", dependency("com.example:core:1.0"));
+
+        assertEquals(Set.of("com.example:lib:1.0"), resolve(resolver().recursively(false), "com.example:app:1.0"));
+    }
+
+    @Test
+    void skipsOptionalDependencies() {
+        pom("com.example:app:1.0", dependency("com.example:lib:1.0"), optional("com.example:backend:1.0"));
+        pom("com.example:lib:1.0");
+        pom("com.example:backend:1.0", dependency("com.example:natives:1.0"));
+        pom("com.example:natives:1.0");
+
+        assertEquals(Set.of("com.example:lib:1.0"), resolve(resolver(), "com.example:app:1.0"));
+        assertEquals(0, server.requests("com/example/backend/1.0/backend-1.0.pom"));
+        assertEquals(
+            Set.of("com.example:lib:1.0", "com.example:backend:1.0", "com.example:natives:1.0"),
+            resolve(resolver().includeOptional(true), "com.example:app:1.0")
+        );
+    }
+
+    @Test
+    void skipsScopesThatAreNotRequested() {
+        pom(
+            "com.example:app:1.0",
+            dependency("com.example:lib:1.0"),
+            "<dependency><groupId>com.example</groupId><artifactId>junit</artifactId><version>1.0</version><scope>test</scope></dependency>"
+        );
+        pom("com.example:lib:1.0");
+
+        assertEquals(Set.of("com.example:lib:1.0"), resolve(resolver(), "com.example:app:1.0"));
+    }
+
+    @Test
+    void honoursDeclaredExclusionsInTheirSubtree() {
+        pom("com.example:app:1.0", excluding("com.example:lib:1.0", "org.slf4j", "*"));
+        pom("com.example:lib:1.0", dependency("com.example:util:1.0"), dependency("org.slf4j:slf4j-api:1.0"));
+        pom("com.example:util:1.0", dependency("org.slf4j:slf4j-simple:1.0"));
+        pom("org.slf4j:slf4j-api:1.0");
+        pom("org.slf4j:slf4j-simple:1.0");
+
+        assertEquals(Set.of("com.example:lib:1.0", "com.example:util:1.0"), resolve(resolver(), "com.example:app:1.0"));
+    }
+
+    @Test
+    void keepsChildrenThatAreOnlyExcludedOnOnePath() {
+        // util is reached through both branches, but only the left one excludes core
+        pom("com.example:app:1.0", excluding("com.example:left:1.0", "com.example", "core"), dependency("com.example:right:1.0"));
+        pom("com.example:left:1.0", dependency("com.example:util:1.0"));
+        pom("com.example:right:1.0", dependency("com.example:util:1.0"));
+        pom("com.example:util:1.0", dependency("com.example:core:1.0"));
+        pom("com.example:core:1.0");
+
+        final List<Dependency> resolved = resolver().build().resolve(ArtifactGenerator.parse("com.example:app:1.0"));
+
+        assertEquals(
+            Set.of("com.example:left:1.0", "com.example:right:1.0", "com.example:util:1.0", "com.example:core:1.0"),
+            coordinatesOf(resolved)
+        );
+        assertEquals(4, resolved.size());
+    }
+
+    @Test
+    void honoursGlobalExclusionsWithWildcards() {
+        pom("com.example:app:1.0", dependency("com.example:lib:1.0"), dependency("com.example:lib-natives-linux:1.0"));
+        pom("com.example:lib:1.0", dependency("com.example:lib-natives-windows:1.0"));
+
+        assertEquals(
+            Set.of("com.example:lib:1.0"),
+            resolve(resolver().exclude("*:*-natives-*"), "com.example:app:1.0")
+        );
+    }
+
+    @Test
+    void failsWhenAPomIsMissing() {
+        pom("com.example:app:1.0", dependency("com.example:missing:1.0"));
+
+        assertThrows(IllegalArgumentException.class, () -> resolve(resolver(), "com.example:app:1.0"));
+    }
+
+    private @NotNull TransitiveResolver.Builder resolver() {
+        return TransitiveResolver.builder()
+            .clearRepositories()
+            .repositories(server.toRepository());
+    }
+
+    private static @NotNull Set<String> resolve(@NotNull final TransitiveResolver.Builder resolver, @NotNull final String coordinates) {
+        return coordinatesOf(resolver.build().resolve(ArtifactGenerator.parse(coordinates)));
+    }
+
+    private static @NotNull Set<String> coordinatesOf(@NotNull final List<Dependency> dependencies) {
+        final Set<String> resolved = new TreeSet<>();
+
+        for (final Dependency dependency : dependencies) {
+            resolved.add(dependency.getGroupId() + ":" + dependency.getArtifactId() + ":" + dependency.getVersion());
+        }
+
+        return resolved;
+    }
+
+    /**
+     * Publishes a POM with the given {@code <dependency>} blocks
+     */
+    private void pom(@NotNull final String coordinates, @NotNull final String... dependencies) {
+        final Dependency dependency = ArtifactGenerator.parse(coordinates);
+        final StringBuilder pom = new StringBuilder()
+            .append("<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n")
+            .append("  <modelVersion>4.0.0</modelVersion>\n")
+            .append("  <groupId>").append(dependency.getGroupId()).append("</groupId>\n")
+            .append("  <artifactId>").append(dependency.getArtifactId()).append("</artifactId>\n")
+            .append("  <version>").append(dependency.getVersion()).append("</version>\n")
+            .append("  <dependencies>\n");
+
+        for (final String block : dependencies) {
+            pom.append("    ").append(block).append('\n');
+        }
+
+        pom.append("  </dependencies>\n").append("</project>\n");
+
+        server.put(
+            dependency.getGroupId().replace('.', '/') + "/" + dependency.getArtifactId() + "/" + dependency.getVersion() + "/" +
+            dependency.getArtifactId() + "-" + dependency.getVersion() + ".pom",
+            pom.toString().getBytes(StandardCharsets.UTF_8)
+        );
+    }
+
+    private static @NotNull String dependency(@NotNull final String coordinates) {
+        return block(coordinates, "");
+    }
+
+    private static @NotNull String optional(@NotNull final String coordinates) {
+        return block(coordinates, "<optional>true</optional>");
+    }
+
+    private static @NotNull String excluding(@NotNull final String coordinates, @NotNull final String groupId, @NotNull final String artifactId) {
+        return block(
+            coordinates,
+            "<exclusions><exclusion><groupId>" + groupId + "</groupId><artifactId>" + artifactId + "</artifactId></exclusion></exclusions>"
+        );
+    }
+
+    private static @NotNull String block(@NotNull final String coordinates, @NotNull final String extra) {
+        final String[] parts = coordinates.split(":");
+
+        return "<dependency><groupId>" + parts[0] + "</groupId><artifactId>" + parts[1] + "</artifactId><version>" + parts[2] +
+            "</version>" + extra + "</dependency>";
+    }
+}
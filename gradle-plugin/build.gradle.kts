@@ -14,6 +14,9 @@ repositories {
 
 dependencies {
     compileOnly("com.gradleup.shadow:com.gradleup.shadow.gradle.plugin:9.2.2")
+
+    // relocates artifacts at build time with the same relocator used at runtime
+    implementation(project(":relocator"))
 }
 
 gradlePlugin {
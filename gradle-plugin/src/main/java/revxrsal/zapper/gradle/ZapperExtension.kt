@@ -23,26 +23,86 @@ open class ZapperExtension {
      */
     var relocationPrefix: String = "zapper"
 
+    /**
+     * Whether relocated classes should be stored uncompressed, which
+     * makes them faster to load at the cost of disk space
+     */
+    var storeRelocatedClasses: Boolean = false
+
+    /**
+     * Whether classes should be relocated as they are loaded, instead of
+     * relocating every jar as a whole before the plugin loads
+     */
+    var relocateOnLoad: Boolean = false
+
+    /**
+     * Whether dependencies should be loaded from a single class path entry
+     * indexed by package, instead of searching every jar in turn
+     */
+    var indexClassPath: Boolean = false
+
+    /**
+     * Whether the jars of the indexed class path should be mapped into
+     * memory, reading classes straight from the mapping
+     */
+    var mapJars: Boolean = false
+
     /**
      * The repositories URLs
      */
     private var _repositories = mutableListOf(MAVEN_CENTRAL)
 
+    /**
+     * The repositories of each group prefix
+     */
+    private var _routes = mapOf<String, List<String>>()
+
+    /**
+     * The mirrors of each repository URL
+     */
+    private var _mirrors = mapOf<String, String>()
+
     /**
      * The relocation rules
      */
     private var _relocations = mutableListOf<Relocation>()
 
+    /**
+     * The payload stripped from the dependencies matching each pattern
+     */
+    private var _strips = linkedMapOf<String, StripDsl>()
+
     /**
      * The currently added repositories
      */
     val repositories: List<String> get() = _repositories
 
+    /**
+     * The current routing rules, mapping group prefixes to repository URLs
+     */
+    val routes: Map<String, List<String>> get() = _routes
+
+    /**
+     * The current mirrors, mapping repository URLs to their mirror URLs
+     */
+    val mirrors: Map<String, String> get() = _mirrors
+
     /**
      * The current relocation rules
      */
     val relocations: List<Relocation> get() = _relocations
 
+    /**
+     * The current stripping rules, mapping `group:artifact` patterns to the
+     * payload stripped from the dependencies they match
+     */
+    val strips: Map<String, StripDsl> get() = _strips
+
+    /**
+     * The configuration of the artifacts relocated at build time
+     */
+    val preRelocation = PreRelocationDsl()
+
     /**
      * Should project repositories be remembered for downloading
      * repositories at runtime?
@@ -58,9 +118,21 @@ open class ZapperExtension {
         val dsl = BasicRepositoryDsl()
         configure.execute(dsl)
         _repositories = dsl.repositories
+        _routes = dsl.routes
+        _mirrors = dsl.mirrors
         includeProjectRepositories = dsl.includeProjectRepositories
     }
 
+    /**
+     * Relocates the zapped artifacts at build time and publishes them, so that
+     * servers download them relocated instead of relocating them on first boot.
+     *
+     * See [PreRelocationDsl]
+     */
+    fun preRelocate(configure: Action<PreRelocationDsl>) {
+        configure.execute(preRelocation)
+    }
+
     /**
      * Adds a relocation rule
      */
@@ -68,11 +140,33 @@ open class ZapperExtension {
         _relocations.add(Relocation(pattern, newPattern))
     }
 
+    /**
+     * Strips debug information or metadata from the dependencies matching the
+     * given `group:artifact` pattern, which may contain `*` wildcards, while
+     * they are relocated. A dependency matching several patterns has the
+     * payload of all of them stripped.
+     *
+     * See [StripDsl]
+     */
+    fun strip(pattern: String, configure: Action<StripDsl>) {
+        configure.execute(_strips.getOrPut(pattern, ::StripDsl))
+    }
+
+    /**
+     * Strips debug information or metadata from all dependencies while they
+     * are relocated
+     *
+     * See [StripDsl]
+     */
+    fun strip(configure: Action<StripDsl>) {
+        strip("*:*", configure)
+    }
+
     /**
      * A fancy toString implementation
      */
     override fun toString(): String {
-        return "RuntimeLibsExtension(libsFolder='$libsFolder', includeProjectRepositories=$includeProjectRepositories, repositries=$repositories)"
+        return "RuntimeLibsExtension(libsFolder='$libsFolder', includeProjectRepositories=$includeProjectRepositories, repositries=$repositories, routes=$routes, mirrors=$mirrors)"
     }
 
     /**
@@ -83,6 +177,10 @@ open class ZapperExtension {
         return """
             libs-folder=${libsFolder}
             relocation-prefix=${relocationPrefix}
+            store-relocated-classes=${storeRelocatedClasses}
+            relocate-on-load=${relocateOnLoad}
+            index-class-path=${indexClassPath}
+            map-jars=${mapJars}
         """.trimIndent()
     }
 }
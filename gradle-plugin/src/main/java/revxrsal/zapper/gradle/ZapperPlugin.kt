@@ -9,6 +9,8 @@ import org.gradle.kotlin.dsl.register
 import org.gradle.kotlin.dsl.withType
 import java.util.jar.JarFile
 import revxrsal.zapper.gradle.task.ZapperFilesTask
+import revxrsal.zapper.gradle.task.ZapperPublishTask
+import revxrsal.zapper.gradle.task.ZapperRelocateTask
 
 /**
  * The Zapper Gradle plugin collects information about the zapped dependencies
@@ -53,6 +55,20 @@ class ZapperPlugin : Plugin<Project> {
                 }
             )
 
+            lockedArtifacts.set(
+                project.provider {
+                    zap.resolvedConfiguration.resolvedArtifacts
+                        .filter { artifact -> artifact.extension == "jar" }
+                        .associate { artifact ->
+                            val classifier = artifact.classifier?.let { ":$it" } ?: ""
+
+                            "${artifact.moduleVersion.id}$classifier" to artifact.file
+                        }
+                }
+            )
+
+            lockedArtifactFiles.from(project.provider { zap.resolvedConfiguration.resolvedArtifacts.map { it.file } })
+
             resourceClasspath.from(
                 project.provider {
                     listOfNotNull(
@@ -75,7 +91,20 @@ class ZapperPlugin : Plugin<Project> {
             configuredRepositories.set(project.provider { project.zapper.repositories.distinct().sorted() })
             includeRepositories.set(project.provider { project.zapper.includeProjectRepositories })
 
+            routeList.set(
+                project.provider {
+                    project.zapper.routes.map { (prefix, urls) -> "$prefix ${urls.joinToString(" ")}" }
+                }
+            )
+
+            mirrorList.set(
+                project.provider {
+                    project.zapper.mirrors.map { (url, mirror) -> "$url $mirror" }
+                }
+            )
+
             librariesFolder.set(project.provider { project.zapper.libsFolder })
+            offline.set(project.gradle.startParameter.isOffline)
 
             relocationList.set(
                 project.provider {
@@ -87,18 +116,87 @@ class ZapperPlugin : Plugin<Project> {
             )
 
             relocationPrefix.set(project.provider { project.zapper.relocationPrefix })
+
+            stripList.set(
+                project.provider {
+                    project.zapper.strips
+                        .mapValues { (_, dsl) -> dsl.options }
+                        .filterValues { options -> options.isNotEmpty() }
+                        .map { (pattern, options) -> "$pattern ${options.joinToString(",")}" }
+                }
+            )
+            storeRelocatedClasses.set(project.provider { project.zapper.storeRelocatedClasses })
+            relocateOnLoad.set(project.provider { project.zapper.relocateOnLoad })
+            indexClassPath.set(project.provider { project.zapper.indexClassPath })
+            mapJars.set(project.provider { project.zapper.mapJars })
+        }
+
+        val relocatedDirFile = project.layout.buildDirectory.asFile.get().resolve("zapper-relocated")
+
+        val relocateZappedArtifacts = project.tasks.register<ZapperRelocateTask>("relocateZappedArtifacts") {
+            group = "build"
+            description = "Relocates the zapped artifacts at build time, so they can be downloaded pre-relocated"
+
+            outputDirectory.set(project.layout.buildDirectory.dir("zapper-relocated"))
+            relocationsFile.set(generateZapperFiles.flatMap { it.outputDirectory.file("relocations.txt") })
+            stripFile.set(generateZapperFiles.flatMap { it.outputDirectory.file("strip.txt") })
+
+            artifacts.set(
+                project.provider {
+                    zap.resolvedConfiguration.resolvedArtifacts
+                        .filter { artifact -> artifact.extension == "jar" }
+                        .associate { artifact ->
+                            val classifier = artifact.classifier?.let { ":$it" } ?: ""
+
+                            "${artifact.moduleVersion.id}$classifier" to artifact.file
+                        }
+                }
+            )
+
+            artifactFiles.from(project.provider { zap.resolvedConfiguration.resolvedArtifacts.map { it.file } })
+            storeRelocatedClasses.set(project.provider { project.zapper.storeRelocatedClasses })
+            repository.set(project.provider { project.zapper.preRelocation.repository })
         }
 
-        project.tasks.withType(Jar::class.java).configureEach {
-            dependsOn(generateZapperFiles)
+        val publishRelocatedArtifacts = project.tasks.register<ZapperPublishTask>("publishRelocatedArtifacts") {
+            group = "publishing"
+            description = "Publishes the artifacts relocated at build time to the pre-relocation repository"
+
+            dependsOn(relocateZappedArtifacts)
+
+            relocatedDirectory.set(relocateZappedArtifacts.flatMap { it.outputDirectory.dir("repository") })
+            url.set(project.provider { project.zapper.preRelocation.uploadUrl })
+            username.set(project.provider { project.zapper.preRelocation.username })
+            password.set(project.provider { project.zapper.preRelocation.password })
+            directory.fileProvider(project.provider { project.zapper.preRelocation.directory })
+        }
+
+        project.tasks.matching { it.name == "publish" }.configureEach {
+            dependsOn(publishRelocatedArtifacts)
+        }
+
+        // only the jars that ship classes carry zapper/, not sources or javadoc jars
+        val classJars = project.tasks.withType(Jar::class.java).matching { it.name == "jar" || it is ShadowJar }
+
+        classJars.configureEach {
+            dependsOn(generateZapperFiles, relocateZappedArtifacts)
 
             from(outputDirFile) {
                 include("dependencies.txt")
                 include("relocations.txt")
+                include("strip.txt")
                 include("repositories.txt")
+                include("lockfile.txt")
+                include("routes.txt")
+                include("mirrors.txt")
                 include("zapper.properties")
                 into("zapper")
             }
+
+            from(relocatedDirFile) {
+                include("prerelocated.txt")
+                into("zapper")
+            }
         }
     }
 }
@@ -113,6 +211,9 @@ private fun configureShadowRelocations(project: Project) {
             }
 
             relocate("revxrsal.zapper", "${extension.relocationPrefix}.zapper")
+
+            // Zapper's relocator is built on ASM, which is shaded along with it
+            relocate("org.objectweb.asm", "${extension.relocationPrefix}.zapper.asm")
         }
     }
 }
\ No newline at end of file
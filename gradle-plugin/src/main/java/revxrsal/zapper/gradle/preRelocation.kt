@@ -0,0 +1,48 @@
+package revxrsal.zapper.gradle
+
+import java.io.File
+
+/**
+ * Configures the zapped artifacts that are relocated at build time, and where
+ * they are published to. Servers download these artifacts already relocated,
+ * and fall back to relocating the original artifacts if that fails.
+ *
+ * Pre-relocation is disabled as long as [repository] is not set.
+ */
+open class PreRelocationDsl {
+
+    /**
+     * The URL of the Maven repository that servers download the relocated
+     * artifacts from
+     */
+    var repository: String? = null
+
+    /**
+     * The URL of the Maven repository that the relocated artifacts are uploaded
+     * to by the `publishRelocatedArtifacts` task. Defaults to [repository], unless
+     * a [directory] is set.
+     */
+    var publishUrl: String? = null
+
+    /**
+     * A directory that the relocated artifacts are copied to by the
+     * `publishRelocatedArtifacts` task, such as one served by a web server
+     */
+    var directory: File? = null
+
+    /**
+     * The username to upload the relocated artifacts with
+     */
+    var username: String? = null
+
+    /**
+     * The password to upload the relocated artifacts with
+     */
+    var password: String? = null
+
+    /**
+     * The URL that the relocated artifacts are uploaded to, if any
+     */
+    internal val uploadUrl: String?
+        get() = publishUrl ?: repository.takeIf { directory == null }
+}
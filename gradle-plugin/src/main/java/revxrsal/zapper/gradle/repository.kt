@@ -16,6 +16,18 @@ interface RepositoryDsl {
      * resolving dependencies
      */
     fun includeProjectRepositories(include: Boolean = true)
+
+    /**
+     * Looks up all dependencies whose group starts with the given
+     * prefix (such as `io.papermc`) only in the given repositories
+     */
+    fun route(groupPrefix: String, vararg urls: String)
+
+    /**
+     * Replaces the repository at the given URL with a mirror, wherever
+     * it is used
+     */
+    fun mirror(url: String, mirrorUrl: String)
 }
 
 /**
@@ -33,6 +45,16 @@ internal class BasicRepositoryDsl : RepositoryDsl {
      */
     var includeProjectRepositories = true
 
+    /**
+     * The repositories of each group prefix
+     */
+    val routes = linkedMapOf<String, MutableList<String>>()
+
+    /**
+     * The mirrors of each repository URL
+     */
+    val mirrors = linkedMapOf<String, String>()
+
     /**
      * Adds the given repository to the repositories list
      */
@@ -47,5 +69,20 @@ internal class BasicRepositoryDsl : RepositoryDsl {
     override fun includeProjectRepositories(include: Boolean) {
         includeProjectRepositories = include
     }
+
+    /**
+     * Routes the given group prefix to the given repositories
+     */
+    override fun route(groupPrefix: String, vararg urls: String) {
+        require(urls.isNotEmpty()) { "No repositories given for route '$groupPrefix'" }
+        routes.getOrPut(groupPrefix) { mutableListOf() }.addAll(urls)
+    }
+
+    /**
+     * Replaces the given repository with a mirror
+     */
+    override fun mirror(url: String, mirrorUrl: String) {
+        mirrors[url] = mirrorUrl
+    }
 }
 
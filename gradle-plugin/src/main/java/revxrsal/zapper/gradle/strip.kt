@@ -0,0 +1,61 @@
+package revxrsal.zapper.gradle
+
+import revxrsal.zapper.relocation.StripOption
+
+/**
+ * Configures the payload stripped from dependencies while they are relocated.
+ * Nothing is stripped by default.
+ *
+ * Stripping does not change how a dependency behaves, unless it reads its own
+ * debug information, such as frameworks that bind method parameters by name.
+ */
+open class StripDsl {
+
+    /**
+     * Strips the names of local variables, which only debuggers use
+     */
+    var localVariables = false
+
+    /**
+     * Strips line numbers. Stack traces of the dependency will have no line numbers.
+     */
+    var lineNumbers = false
+
+    /**
+     * Strips the names of method parameters of classes compiled with `-parameters`
+     */
+    var parameterNames = false
+
+    /**
+     * Strips source file names. Stack traces of the dependency will show `Unknown Source`.
+     */
+    var sourceFiles = false
+
+    /**
+     * Strips the build metadata under `META-INF/maven/`
+     */
+    var metadata = false
+
+    /**
+     * Strips all debug information, optionally keeping line numbers
+     * (and the source file names they refer to) for stack traces
+     */
+    fun debugInfo(keepLineNumbers: Boolean = true) {
+        localVariables = true
+        parameterNames = true
+        lineNumbers = !keepLineNumbers
+        sourceFiles = !keepLineNumbers
+    }
+
+    /**
+     * The options to strip, in the form read by the Zapper API
+     */
+    internal val options: Set<StripOption>
+        get() = buildSet {
+            if (localVariables) add(StripOption.LOCAL_VARIABLES)
+            if (lineNumbers) add(StripOption.LINE_NUMBERS)
+            if (parameterNames) add(StripOption.PARAMETERS)
+            if (sourceFiles) add(StripOption.SOURCE_FILE)
+            if (metadata) add(StripOption.METADATA)
+        }
+}
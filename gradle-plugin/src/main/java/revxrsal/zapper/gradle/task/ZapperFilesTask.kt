@@ -1,25 +1,60 @@
 package revxrsal.zapper.gradle.task
 
+import java.io.File
+import java.io.FileNotFoundException
+import java.io.IOException
+import java.net.HttpURLConnection
+import java.net.URI
 import java.nio.charset.StandardCharsets
 import java.nio.file.Files
 import java.nio.file.Path
+import java.security.MessageDigest
 import java.util.jar.JarFile
 import org.gradle.api.DefaultTask
 import org.gradle.api.file.ConfigurableFileCollection
 import org.gradle.api.file.DirectoryProperty
 import org.gradle.api.provider.ListProperty
+import org.gradle.api.provider.MapProperty
 import org.gradle.api.provider.Property
-import org.gradle.api.tasks.CacheableTask
 import org.gradle.api.tasks.Classpath
 import org.gradle.api.tasks.Input
+import org.gradle.api.tasks.InputFiles
+import org.gradle.api.tasks.Internal
 import org.gradle.api.tasks.OutputDirectory
+import org.gradle.api.tasks.PathSensitive
+import org.gradle.api.tasks.PathSensitivity
 import org.gradle.api.tasks.TaskAction
-
-@CacheableTask
+import org.gradle.work.DisableCachingByDefault
+
+/**
+ * Marks a lockfile entry whose artifact could not be found in any repository
+ * at build time. Zapper probes the repositories at runtime for such entries.
+ */
+private const val NO_REPOSITORY = "-"
+
+/**
+ * Generates the files read by the Zapper API. The lockfile pins each artifact
+ * to the repository that serves it, which is found by probing the repositories
+ * over the network. As the probe results are not inputs, the outputs of this
+ * task are never restored from the build cache.
+ */
+@DisableCachingByDefault(because = "The lockfile pins artifacts to repositories probed over the network")
 abstract class ZapperFilesTask : DefaultTask() {
     @get:Input
     abstract val zapDependencies: ListProperty<String>
 
+    /**
+     * The resolved zap artifacts, mapped by their notation
+     * (`group:artifact:version[:classifier]`). The files themselves
+     * are tracked by [lockedArtifactFiles].
+     */
+    @get:Internal
+    abstract val lockedArtifacts: MapProperty<String, File>
+
+    @get:InputFiles
+    @get:PathSensitive(PathSensitivity.NONE)
+    abstract val lockedArtifactFiles: ConfigurableFileCollection
+
     @get:Classpath
     abstract val resourceClasspath: ConfigurableFileCollection
 
@@ -32,15 +67,52 @@ abstract class ZapperFilesTask : DefaultTask() {
     @get:Input
     abstract val includeRepositories: Property<Boolean>
 
+    /**
+     * The routing rules, in the form of `groupPrefix url1 url2...`
+     */
+    @get:Input
+    abstract val routeList: ListProperty<String>
+
+    /**
+     * The mirrors, in the form of `url mirrorUrl`
+     */
+    @get:Input
+    abstract val mirrorList: ListProperty<String>
+
     @get:Input
     abstract val librariesFolder: Property<String>
 
+    /**
+     * Whether Gradle runs offline, in which case repositories are not
+     * probed and every artifact is looked up at runtime instead
+     */
+    @get:Input
+    abstract val offline: Property<Boolean>
+
     @get:Input
     abstract val relocationList: ListProperty<String>
 
     @get:Input
     abstract val relocationPrefix: Property<String>
 
+    /**
+     * The stripping rules, in the form of `group:artifact OPTION,OPTION...`
+     */
+    @get:Input
+    abstract val stripList: ListProperty<String>
+
+    @get:Input
+    abstract val storeRelocatedClasses: Property<Boolean>
+
+    @get:Input
+    abstract val relocateOnLoad: Property<Boolean>
+
+    @get:Input
+    abstract val indexClassPath: Property<Boolean>
+
+    @get:Input
+    abstract val mapJars: Property<Boolean>
+
     @get:OutputDirectory
     abstract val outputDirectory: DirectoryProperty
 
@@ -50,14 +122,25 @@ abstract class ZapperFilesTask : DefaultTask() {
 
         Files.createDirectories(outputPath)
 
-        outputPath.resolve("repositories.txt").writeLines(collectRepositories())
+        val repositories = collectRepositories()
+        val routes = collectRoutes()
+
+        outputPath.resolve("repositories.txt").writeLines(repositories)
+        outputPath.resolve("routes.txt").writeLines(routes)
+        outputPath.resolve("mirrors.txt").writeLines(collectMirrors())
         outputPath.resolve("relocations.txt").writeLines(collectRelocations())
+        outputPath.resolve("strip.txt").writeLines(collectStripRules())
         outputPath.resolve("dependencies.txt").writeLines(collectDependencies())
+        outputPath.resolve("lockfile.txt").writeLines(collectLockfile(repositories, routes))
 
         outputPath.resolve("zapper.properties").writeText(
             """
             libs-folder=${librariesFolder.get()}
             relocation-prefix=${relocationPrefix.get()}
+            store-relocated-classes=${storeRelocatedClasses.get()}
+            relocate-on-load=${relocateOnLoad.get()}
+            index-class-path=${indexClassPath.get()}
+            map-jars=${mapJars.get()}
             """.trimIndent()
         )
     }
@@ -82,6 +165,20 @@ abstract class ZapperFilesTask : DefaultTask() {
         return values.toList()
     }
 
+    /**
+     * Collects the stripping rules of this project and of its dependencies.
+     * Rules for the same pattern are merged at runtime.
+     */
+    private fun collectStripRules(): List<String> {
+        val values = linkedSetOf<String>()
+
+        stripList.get().forEach(values::add)
+
+        collectResource("strip.txt").forEach(values::add)
+
+        return values.toList()
+    }
+
     private fun collectRepositories(): List<String> {
         val values = linkedSetOf<String>()
 
@@ -96,6 +193,163 @@ abstract class ZapperFilesTask : DefaultTask() {
         return values.toList()
     }
 
+    /**
+     * Collects the routes of this project and of its dependencies. The routes
+     * of this project come first, so they take precedence at runtime.
+     */
+    private fun collectRoutes(): List<String> {
+        val values = linkedSetOf<String>()
+
+        routeList.get().forEach(values::add)
+
+        collectResource("routes.txt").forEach(values::add)
+
+        return values.toList()
+    }
+
+    /**
+     * Collects the mirrors of this project and of its dependencies. A repository
+     * mirrored by this project is never mirrored differently by a dependency.
+     */
+    private fun collectMirrors(): List<String> {
+        val mirrors = linkedMapOf<String, String>()
+
+        mirrorList.get().forEach { line -> mirrors[line.substringBefore(' ')] = line }
+
+        collectResource("mirrors.txt").forEach { line -> mirrors.putIfAbsent(line.substringBefore(' '), line) }
+
+        return mirrors.values.toList()
+    }
+
+    /**
+     * Returns the repositories routed for the given group, or null if
+     * no route matches it. The longest matching prefix wins.
+     */
+    private fun findRoute(routes: List<String>, group: String): List<String>? {
+        return routes
+            .map { line -> line.split(' ') }
+            .filter { parts ->
+                val prefix = parts[0].removeSuffix(".*")
+
+                group == prefix || group.startsWith("$prefix.")
+            }
+            .maxByOrNull { parts -> parts[0].removeSuffix(".*").length }
+            ?.drop(1)
+    }
+
+    /**
+     * Generates the lockfile, where each line is in the form of:
+     *
+     * `group:artifact:version[:classifier] <repository URL> <size> <sha-256>`
+     *
+     * The repository is the first one (among the routed ones, if the group is
+     * routed) that serves the artifact, so it can be downloaded on the first try
+     * at runtime. Snapshots are left out, as they are mutable and cannot be
+     * pinned to a checksum.
+     */
+    private fun collectLockfile(repositories: List<String>, routes: List<String>): List<String> {
+        val entries = linkedMapOf<String, String>()
+        val unreachable = mutableSetOf<String>()
+
+        collectResource("lockfile.txt").forEach { line ->
+            entries[line.substringBefore(' ')] = line
+        }
+
+        lockedArtifacts.get().toSortedMap().forEach { (notation, file) ->
+            val parts = notation.split(':')
+
+            if (parts[2].endsWith("SNAPSHOT")) {
+                return@forEach
+            }
+
+            val classifier = if (parts.size == 4) "-${parts[3]}" else ""
+            val path = "${parts[0].replace('.', '/')}/${parts[1]}/${parts[2]}/${parts[1]}-${parts[2]}$classifier.jar"
+            val candidates = findRoute(routes, parts[0]) ?: repositories
+            val repository = findRepository(candidates - unreachable, path, file, unreachable) ?: NO_REPOSITORY
+
+            entries[notation] = "$notation $repository ${file.length()} ${file.sha256()}"
+        }
+
+        return entries.values.toList()
+    }
+
+    /**
+     * Returns the first repository that serves the artifact at the given
+     * path with the same size as the resolved file, or null if none does.
+     * Repositories that cannot be reached are added to [unreachable], so
+     * they are not probed again for the remaining artifacts.
+     */
+    private fun findRepository(repositories: List<String>, path: String, file: File, unreachable: MutableSet<String>): String? {
+        if (offline.get()) {
+            return null
+        }
+
+        for (repository in repositories) {
+            val base = if (repository.endsWith('/')) repository else "$repository/"
+
+            try {
+                val connection = URI.create(base + path).toURL().openConnection()
+
+                if (connection !is HttpURLConnection) {
+                    connection.getInputStream().close()
+
+                    return base
+                }
+
+                connection.requestMethod = "HEAD"
+                connection.connectTimeout = 5_000
+                connection.readTimeout = 10_000
+                connection.instanceFollowRedirects = true
+
+                try {
+                    if (connection.responseCode != HttpURLConnection.HTTP_OK) {
+                        continue
+                    }
+
+                    val length = connection.contentLengthLong
+
+                    if (length != -1L && length != file.length()) {
+                        continue
+                    }
+
+                    return base
+                } finally {
+                    connection.disconnect()
+                }
+            } catch (_: FileNotFoundException) {
+                continue
+            } catch (_: IOException) {
+                unreachable += repository
+
+                continue
+            }
+        }
+
+        logger.warn("Could not find a repository serving $path; it will be looked up at runtime.")
+
+        return null
+    }
+
+    private fun File.sha256(): String {
+        val digest = MessageDigest.getInstance("SHA-256")
+
+        inputStream().use { stream ->
+            val buffer = ByteArray(8 * 1024)
+
+            while (true) {
+                val read = stream.read(buffer)
+
+                if (read == -1) {
+                    break
+                }
+
+                digest.update(buffer, 0, read)
+            }
+        }
+
+        return digest.digest().joinToString("") { "%02x".format(it) }
+    }
+
     private fun collectResource(name: String): List<String> {
         val collected = linkedSetOf<String>()
 
@@ -0,0 +1,143 @@
+package revxrsal.zapper.gradle.task
+
+import java.io.File
+import java.io.IOException
+import java.net.HttpURLConnection
+import java.net.URI
+import java.nio.charset.StandardCharsets
+import java.util.Base64
+import org.gradle.api.DefaultTask
+import org.gradle.api.GradleException
+import org.gradle.api.file.DirectoryProperty
+import org.gradle.api.provider.Property
+import org.gradle.api.tasks.Input
+import org.gradle.api.tasks.Internal
+import org.gradle.api.tasks.Optional
+import org.gradle.api.tasks.TaskAction
+
+/**
+ * Publishes the artifacts relocated by [ZapperRelocateTask] to a Maven repository,
+ * with HTTP `PUT` requests, and/or copies them to a directory.
+ *
+ * Artifacts that the repository already serves with the same size are not uploaded
+ * again, as release repositories usually reject redeployments.
+ */
+abstract class ZapperPublishTask : DefaultTask() {
+
+    /**
+     * The repository layout generated by [ZapperRelocateTask]
+     */
+    @get:Internal
+    abstract val relocatedDirectory: DirectoryProperty
+
+    @get:Input
+    @get:Optional
+    abstract val url: Property<String>
+
+    @get:Internal
+    abstract val username: Property<String>
+
+    @get:Internal
+    abstract val password: Property<String>
+
+    @get:Internal
+    abstract val directory: DirectoryProperty
+
+    @TaskAction
+    fun publish() {
+        val root = relocatedDirectory.get().asFile
+
+        if (!root.isDirectory) {
+            logger.lifecycle("There are no relocated artifacts to publish. Is preRelocate { repository } set?")
+
+            return
+        }
+
+        // Checksums are uploaded after the artifacts they belong to
+        val files = root.walkTopDown()
+            .filter(File::isFile)
+            .sortedWith(compareBy({ it.parentFile.path }, { it.extension != "jar" }, { it.name }))
+            .toList()
+
+        directory.orNull?.asFile?.let { target ->
+            files.forEach { file -> file.copyTo(target.resolve(file.relativeTo(root).invariantSeparatorsPath), overwrite = true) }
+
+            logger.lifecycle("Copied ${files.size} relocated files to $target.")
+        }
+
+        url.orNull?.let { url ->
+            val base = if (url.endsWith('/')) url else "$url/"
+            var uploaded = 0
+
+            files.forEach { file ->
+                if (upload(base + file.relativeTo(root).invariantSeparatorsPath, file)) {
+                    uploaded++
+                }
+            }
+
+            logger.lifecycle("Uploaded $uploaded relocated files to $base (${files.size - uploaded} already present).")
+        }
+    }
+
+    /**
+     * Uploads a file, unless the repository already serves it with the same size
+     *
+     * @return true if the file was uploaded
+     */
+    private fun upload(url: String, file: File): Boolean {
+        if (exists(url, file.length())) {
+            return false
+        }
+
+        val connection = URI.create(url).toURL().openConnection() as HttpURLConnection
+
+        try {
+            connection.requestMethod = "PUT"
+            connection.doOutput = true
+            connection.connectTimeout = 10_000
+            connection.readTimeout = 60_000
+            connection.setFixedLengthStreamingMode(file.length())
+            authorize(connection)
+
+            connection.outputStream.use { out -> file.inputStream().use { it.copyTo(out) } }
+
+            val code = connection.responseCode
+
+            if (code !in 200..299) {
+                throw GradleException("Failed to upload $url: HTTP $code ${connection.responseMessage}")
+            }
+
+            return true
+        } catch (e: IOException) {
+            throw GradleException("Failed to upload $url", e)
+        } finally {
+            connection.disconnect()
+        }
+    }
+
+    private fun exists(url: String, length: Long): Boolean {
+        return try {
+            val connection = URI.create(url).toURL().openConnection() as HttpURLConnection
+
+            try {
+                connection.requestMethod = "HEAD"
+                connection.connectTimeout = 10_000
+                connection.readTimeout = 10_000
+                authorize(connection)
+
+                connection.responseCode == HttpURLConnection.HTTP_OK && connection.contentLengthLong == length
+            } finally {
+                connection.disconnect()
+            }
+        } catch (_: IOException) {
+            false
+        }
+    }
+
+    private fun authorize(connection: HttpURLConnection) {
+        val username = username.orNull ?: return
+        val credentials = "$username:${password.orNull.orEmpty()}".toByteArray(StandardCharsets.UTF_8)
+
+        connection.setRequestProperty("Authorization", "Basic " + Base64.getEncoder().encodeToString(credentials))
+    }
+}
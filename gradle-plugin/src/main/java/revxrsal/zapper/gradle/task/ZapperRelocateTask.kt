@@ -0,0 +1,201 @@
+package revxrsal.zapper.gradle.task
+
+import java.io.File
+import java.nio.charset.StandardCharsets
+import java.security.MessageDigest
+import java.util.concurrent.ForkJoinPool
+import org.gradle.api.DefaultTask
+import org.gradle.api.file.ConfigurableFileCollection
+import org.gradle.api.file.DirectoryProperty
+import org.gradle.api.file.RegularFileProperty
+import org.gradle.api.provider.MapProperty
+import org.gradle.api.provider.Property
+import org.gradle.api.tasks.CacheableTask
+import org.gradle.api.tasks.Input
+import org.gradle.api.tasks.InputFile
+import org.gradle.api.tasks.InputFiles
+import org.gradle.api.tasks.Internal
+import org.gradle.api.tasks.Optional
+import org.gradle.api.tasks.OutputDirectory
+import org.gradle.api.tasks.PathSensitive
+import org.gradle.api.tasks.PathSensitivity
+import org.gradle.api.tasks.TaskAction
+import revxrsal.zapper.relocation.JarRelocator
+import revxrsal.zapper.relocation.MemoryBudget
+import revxrsal.zapper.relocation.StripOption
+import revxrsal.zapper.relocation.Relocation as RelocationRule
+
+/**
+ * Relocates the zapped artifacts at build time, with the same rules and relocator
+ * that Zapper uses at runtime, into a Maven repository layout under `repository/`.
+ *
+ * Relocated artifacts keep the coordinates of the originals, with a classifier
+ * derived from the relocation rules, so that plugins relocating the same artifact
+ * differently can share a repository. Each one is listed in `prerelocated.txt`
+ * along with its size and SHA-256 checksum, in the form of:
+ *
+ * `group:artifact:version[:classifier] group:artifact:version:relocatedClassifier <repository URL> <size> <sha-256>`
+ *
+ * Snapshots are left out, as they are mutable and cannot be pinned to a checksum.
+ * The payload selected by the stripping rules is stripped as well, and is part of
+ * the classifier.
+ */
+@CacheableTask
+abstract class ZapperRelocateTask : DefaultTask() {
+
+    /**
+     * The resolved zap artifacts, mapped by their notation
+     * (`group:artifact:version[:classifier]`). The files themselves
+     * are tracked by [artifactFiles].
+     */
+    @get:Internal
+    abstract val artifacts: MapProperty<String, File>
+
+    @get:InputFiles
+    @get:PathSensitive(PathSensitivity.NONE)
+    abstract val artifactFiles: ConfigurableFileCollection
+
+    /**
+     * The generated relocations file, which holds the rules used at runtime
+     */
+    @get:InputFile
+    @get:PathSensitive(PathSensitivity.NONE)
+    abstract val relocationsFile: RegularFileProperty
+
+    /**
+     * The generated stripping rules file
+     */
+    @get:InputFile
+    @get:PathSensitive(PathSensitivity.NONE)
+    abstract val stripFile: RegularFileProperty
+
+    @get:Input
+    abstract val storeRelocatedClasses: Property<Boolean>
+
+    /**
+     * The URL servers download the relocated artifacts from. Nothing is
+     * relocated if this is not set.
+     */
+    @get:Input
+    @get:Optional
+    abstract val repository: Property<String>
+
+    @get:OutputDirectory
+    abstract val outputDirectory: DirectoryProperty
+
+    @TaskAction
+    fun relocate() {
+        val output = outputDirectory.get().asFile
+
+        output.deleteRecursively()
+        output.mkdirs()
+
+        val entries = mutableListOf<String>()
+        val url = repository.orNull
+        val relocations = relocationsFile.get().asFile.readLines()
+            .filter(String::isNotBlank)
+            .map { line -> RelocationRule(line.substringBefore(':'), line.substringAfter(':')) }
+
+        val stripRules = stripFile.get().asFile.readLines()
+            .filter(String::isNotBlank)
+            .map { line -> line.trim().split(Regex("\\s+")) }
+            .map { parts -> parts[0].toCoordinatesRegex() to parts[1].split(',').map { StripOption.valueOf(it.trim()) } }
+
+        if (url != null && (relocations.isNotEmpty() || stripRules.isNotEmpty())) {
+            val base = if (url.endsWith('/')) url else "$url/"
+
+            artifacts.get().toSortedMap().forEach { (notation, file) ->
+                val parts = notation.split(':')
+
+                if (parts[2].endsWith("SNAPSHOT")) {
+                    return@forEach
+                }
+
+                val strip = stripRules
+                    .filter { (pattern, _) -> pattern.matches("${parts[0]}:${parts[1]}") }
+                    .flatMapTo(sortedSetOf()) { (_, options) -> options }
+
+                if (relocations.isEmpty() && strip.isEmpty()) {
+                    return@forEach
+                }
+
+                val marker = "zapper-${fingerprint(relocations, strip)}"
+                val relocator = JarRelocator(
+                    relocations,
+                    ForkJoinPool.commonPool(),
+                    storeRelocatedClasses.get(),
+                    MemoryBudget.unlimited(),
+                    strip
+                )
+
+                val classifier = if (parts.size == 4) "${parts[3]}-$marker" else marker
+                val path = "${parts[0].replace('.', '/')}/${parts[1]}/${parts[2]}/${parts[1]}-${parts[2]}-$classifier.jar"
+                val target = output.resolve("repository/$path")
+
+                relocator.relocate(file, target)
+
+                val sha256 = target.digest("SHA-256")
+
+                target.resolveSibling("${target.name}.sha1").writeText(target.digest("SHA-1"))
+                target.resolveSibling("${target.name}.sha256").writeText(sha256)
+
+                entries += "$notation ${parts[0]}:${parts[1]}:${parts[2]}:$classifier $base ${target.length()} $sha256"
+            }
+
+            logger.info("Relocated ${entries.size} zapped artifacts into ${output.resolve("repository")}.")
+        }
+
+        output.resolve("prerelocated.txt").writeText(entries.joinToString("\n"), StandardCharsets.UTF_8)
+    }
+
+    /**
+     * Hashes the rules and options that affect a relocated artifact. Rules are
+     * hashed in order, as the first matching rule wins.
+     */
+    private fun fingerprint(relocations: List<RelocationRule>, strip: Set<StripOption>): String {
+        val digest = MessageDigest.getInstance("SHA-256")
+
+        digest.update("store-classes=${storeRelocatedClasses.get()}\n".toByteArray(StandardCharsets.UTF_8))
+
+        if (strip.isNotEmpty()) {
+            digest.update("strip=$strip\n".toByteArray(StandardCharsets.UTF_8))
+        }
+
+        relocations.forEach { relocation ->
+            digest.update("${relocation.pattern}\u0000${relocation.newPattern}\n".toByteArray(StandardCharsets.UTF_8))
+        }
+
+        return digest.digest().joinToString("") { "%02x".format(it) }.take(12)
+    }
+
+    /**
+     * Compiles a `group:artifact` pattern, where `*` matches any sequence of
+     * characters, as Zapper matches the stripping rules at runtime. If the
+     * artifact ID is omitted, every artifact of the group matches.
+     */
+    private fun String.toCoordinatesRegex(): Regex {
+        val pattern = if (':' in this) this else "$this:*"
+
+        return Regex(pattern.split('*').joinToString(".*") { part -> Regex.escape(part) })
+    }
+
+    private fun File.digest(algorithm: String): String {
+        val digest = MessageDigest.getInstance(algorithm)
+
+        inputStream().use { stream ->
+            val buffer = ByteArray(8 * 1024)
+
+            while (true) {
+                val read = stream.read(buffer)
+
+                if (read == -1) {
+                    break
+                }
+
+                digest.update(buffer, 0, read)
+            }
+        }
+
+        return digest.digest().joinToString("") { "%02x".format(it) }
+    }
+}
@@ -0,0 +1,74 @@
+plugins {
+    id("java-library")
+    id("com.vanniktech.maven.publish") version "0.30.0"
+}
+
+group = rootProject.group
+version = rootProject.version
+
+repositories {
+    mavenCentral()
+}
+
+dependencies {
+    implementation("org.ow2.asm:asm:9.8")
+    implementation("org.ow2.asm:asm-commons:9.8")
+
+    compileOnly("org.jetbrains:annotations:24.1.0")
+
+    testCompileOnly("org.jetbrains:annotations:24.1.0")
+    testImplementation("org.ow2.asm:asm-tree:9.8")
+    testImplementation("me.lucko:jar-relocator:1.7")
+    testImplementation(platform("org.junit:junit-bom:5.11.4"))
+    testImplementation("org.junit.jupiter:junit-jupiter")
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher")
+}
+
+// the relocator also runs inside the Gradle plugin, so it targets the
+// oldest JVM Gradle is run with rather than the server's
+java {
+    toolchain {
+        languageVersion.set(JavaLanguageVersion.of(17))
+    }
+}
+
+tasks.test {
+    useJUnitPlatform()
+}
+
+tasks.withType<Jar>().configureEach {
+    archiveBaseName.set("zapper-relocator")
+}
+
+mavenPublishing {
+    coordinates(
+        groupId = rootProject.group as String,
+        artifactId = "zapper-relocator",
+        version = rootProject.version as String
+    )
+    pom {
+        name.set("Zapper Relocator")
+        description.set("The jar relocator used by Zapper, at runtime and at build time")
+        inceptionYear.set("2024")
+        url.set("https://github.com/devceanias/zapper")
+        licenses {
+            license {
+                name.set("MIT")
+                url.set("https://mit-license.org/")
+                distribution.set("https://mit-license.org/")
+            }
+        }
+        developers {
+            developer {
+                id.set("revxrsal")
+                name.set("Revxrsal")
+                url.set("https://github.com/Revxrsal/")
+            }
+        }
+        scm {
+            url.set("https://github.com/devceanias/zapper")
+            connection.set("scm:git:git://github.com/devceanias/zapper.git")
+            developerConnection.set("scm:git:ssh://git@github.com/devceanias/zapper.git")
+        }
+    }
+}
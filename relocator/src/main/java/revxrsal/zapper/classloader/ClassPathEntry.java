@@ -0,0 +1,64 @@
+/*
+ * This file is part of Zapper, licensed under the MIT License.
+ *
+ *  Copyright (c) Revxrsal <reflxction.github@gmail.com>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package revxrsal.zapper.classloader;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.Collection;
+
+/**
+ * A view of a jar whose entries are served from a URL, rather than read from a
+ * file, such as a jar that is relocated as its classes are loaded. Such views can
+ * be indexed by the dependency class path like any other jar.
+ */
+public interface ClassPathEntry {
+
+    /**
+     * Returns the URL that entry names are resolved against. It ends with a slash.
+     *
+     * @return The URL
+     */
+    @NotNull URL getURL();
+
+    /**
+     * Returns the names of all entries served under {@link #getURL()}
+     *
+     * @return The entry names
+     */
+    @NotNull Collection<String> getEntryNames();
+
+    /**
+     * Opens an entry on behalf of a class path that serves it under its own URL
+     *
+     * @param url  The URL the connection reports
+     * @param name The name of the entry, as returned by {@link #getEntryNames()}
+     * @return The connection, or {@code null} if there is no such entry
+     * @throws IOException if the entry could not be opened
+     */
+    @Nullable URLConnection open(@NotNull URL url, @NotNull String name) throws IOException;
+}
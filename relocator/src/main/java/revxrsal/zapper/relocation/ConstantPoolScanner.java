@@ -0,0 +1,164 @@
+/*
+ * This file is part of Zapper, licensed under the MIT License.
+ *
+ *  Copyright (c) Revxrsal <reflxction.github@gmail.com>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package revxrsal.zapper.relocation;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Reads the constant pool of a class file, without ASM, to find out whether
+ * relocation would change the class at all.
+ * <p>
+ * Every name a class refers to, in its own name, descriptors, signatures and
+ * string constants, is stored in a {@code CONSTANT_Utf8} entry of its constant
+ * pool. If none of those entries can match a rule, the class can be copied
+ * as is, which is much cheaper than rewriting it. The same goes for the names
+ * of the attributes a class has, which tell whether there is anything to strip
+ * from it.
+ */
+final class ConstantPoolScanner {
+
+    private static final int UTF8 = 1;
+    private static final int INTEGER = 3;
+    private static final int FLOAT = 4;
+    private static final int LONG = 5;
+    private static final int DOUBLE = 6;
+    private static final int CLASS = 7;
+    private static final int STRING = 8;
+    private static final int FIELD_REF = 9;
+    private static final int METHOD_REF = 10;
+    private static final int INTERFACE_METHOD_REF = 11;
+    private static final int NAME_AND_TYPE = 12;
+    private static final int METHOD_HANDLE = 15;
+    private static final int METHOD_TYPE = 16;
+    private static final int DYNAMIC = 17;
+    private static final int INVOKE_DYNAMIC = 18;
+    private static final int MODULE = 19;
+    private static final int PACKAGE = 20;
+
+    private ConstantPoolScanner() {
+    }
+
+    /**
+     * Tests whether relocation may change the given class. Malformed or unknown
+     * class files are reported as affected, so that they go through ASM and fail
+     * with a proper error.
+     *
+     * @param remapper The remapper
+     * @param bytes    The class file
+     * @param length   The length of the class file
+     * @return {@code true} if the class may be relocated
+     */
+    static boolean mayRelocate(@NotNull RelocatingRemapper remapper, byte @NotNull [] bytes, int length) {
+        return scan(bytes, length, remapper::mayRelocate);
+    }
+
+    /**
+     * Tests whether the given class may have any of the given attributes.
+     * Malformed or unknown class files are reported as having them.
+     *
+     * @param attributes The attribute names, encoded as UTF-8
+     * @param bytes      The class file
+     * @param length     The length of the class file
+     * @return {@code true} if the class may have any of the attributes
+     */
+    static boolean mayHaveAttribute(byte @NotNull [][] attributes, byte @NotNull [] bytes, int length) {
+        return scan(bytes, length, (utf8, start, end) -> {
+            for (byte[] attribute : attributes) {
+                if (Arrays.equals(utf8, start, end, attribute, 0, attribute.length))
+                    return true;
+            }
+            return false;
+        });
+    }
+
+    /**
+     * Tests the {@code CONSTANT_Utf8} entries of a class, stopping at the first
+     * one that matches. Malformed or unknown class files always match.
+     */
+    private static boolean scan(byte @NotNull [] bytes, int length, @NotNull Utf8Predicate predicate) {
+        if (length < 10 || readInt(bytes, 0) != 0xCAFEBABE)
+            return true;
+        int count = readUnsignedShort(bytes, 8);
+        int offset = 10;
+        for (int i = 1; i < count; i++) {
+            if (offset >= length)
+                return true;
+            int tag = bytes[offset++];
+            switch (tag) {
+                case UTF8:
+                    if (offset + 2 > length)
+                        return true;
+                    int end = offset + 2 + readUnsignedShort(bytes, offset);
+                    if (end > length || predicate.test(bytes, offset + 2, end))
+                        return true;
+                    offset = end;
+                    break;
+                case CLASS:
+                case STRING:
+                case METHOD_TYPE:
+                case MODULE:
+                case PACKAGE:
+                    offset += 2;
+                    break;
+                case METHOD_HANDLE:
+                    offset += 3;
+                    break;
+                case INTEGER:
+                case FLOAT:
+                case FIELD_REF:
+                case METHOD_REF:
+                case INTERFACE_METHOD_REF:
+                case NAME_AND_TYPE:
+                case DYNAMIC:
+                case INVOKE_DYNAMIC:
+                    offset += 4;
+                    break;
+                case LONG:
+                case DOUBLE:
+                    offset += 8;
+                    i++;
+                    break;
+                default:
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    @FunctionalInterface
+    private interface Utf8Predicate {
+
+        boolean test(byte @NotNull [] bytes, int start, int end);
+    }
+
+    private static int readUnsignedShort(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0xFF) << 8) | (bytes[offset + 1] & 0xFF);
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return (readUnsignedShort(bytes, offset) << 16) | readUnsignedShort(bytes, offset + 2);
+    }
+}
@@ -0,0 +1,744 @@
+/*
+ * This file is part of Zapper, licensed under the MIT License.
+ *
+ *  Copyright (c) Revxrsal <reflxction.github@gmail.com>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package revxrsal.zapper.relocation;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.commons.ClassRemapper;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Relocates the classes and resources of a jar according to a set of
+ * {@link Relocation} rules, using ASM.
+ * <p>
+ * Entries are processed one at a time through a reusable buffer, so memory use is
+ * bounded by the largest entry rather than by the size of the jar. Entries that are
+ * copied are streamed and never held in memory as a whole. Entries that are read
+ * reserve memory from a {@link MemoryBudget} first, which may be shared across
+ * relocators to bound the memory of all relocations running at once. Classes are
+ * rewritten without recomputing stack map frames, as relocation only renames
+ * types, which the frames are remapped along with.
+ * <p>
+ * Besides classes, this relocates the names of resources, the names and contents
+ * of {@code META-INF/services} files, and entries of multi-release jars. Signature
+ * files are dropped, as relocation invalidates them.
+ * <p>
+ * Entries whose content does not change, such as resources, native libraries and
+ * classes that no rule applies to, are copied with their original compressed bytes
+ * (see {@link ZipReader} and {@link ZipWriter}), so they are never inflated and
+ * deflated again. Rewritten classes are deflated, or stored uncompressed if the
+ * relocator is set to, which makes them faster to load at the cost of disk space.
+ * <p>
+ * For large jars, classes are rewritten in parallel on a {@link ForkJoinPool}: the
+ * entries listed in the central directory are split into windows, each window is
+ * rewritten concurrently, and its entries are then written in their original order.
+ * A window only grows as long as its entries fit in the memory budget.
+ * Smaller jars are relocated on the calling thread.
+ * <p>
+ * Jars are scanned before they are rewritten: if no rule applies to any of their
+ * classes or resources, the original jar is reused as is. Otherwise, classes that
+ * no rule applies to are copied without going through ASM. Both checks read the
+ * constant pools of classes directly (see {@link ConstantPoolScanner}).
+ * <p>
+ * A relocator may also strip debug information and build metadata from the jars it
+ * relocates (see {@link StripOption}). Classes that have none of the stripped
+ * attributes are still copied as is.
+ * <p>
+ * A relocator is stateless and may be used from multiple threads at once.
+ */
+public final class JarRelocator {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String SERVICES = "META-INF/services/";
+    private static final String VERSIONS = "META-INF/versions/";
+    private static final String MAVEN_METADATA = "META-INF/maven/";
+
+    /**
+     * Jars with fewer classes than this are relocated on the calling thread,
+     * as splitting them up costs more than it saves.
+     */
+    private static final int PARALLEL_THRESHOLD = 256;
+
+    /**
+     * The maximum number of entries, and of uncompressed bytes, held in memory at once
+     * while relocating in parallel
+     */
+    private static final int WINDOW_ENTRIES = 4096;
+    private static final long WINDOW_BYTES = 32L * 1024 * 1024;
+
+    /**
+     * How many times its own size rewriting a class takes in memory
+     */
+    private static final int CLASS_COST_FACTOR = 4;
+
+    /**
+     * The number of entries below which a fork/join task stops splitting
+     */
+    private static final int TASK_ENTRIES = 16;
+
+    private final RelocatingRemapper remapper;
+    private final @Nullable ForkJoinPool pool;
+    private final boolean storeClasses;
+    private final MemoryBudget budget;
+    private final Set<StripOption> strip;
+
+    /**
+     * The names of the class attributes to strip, encoded as UTF-8
+     */
+    private final byte[][] strippedAttributes;
+
+    /**
+     * Creates a relocator that rewrites the classes of large jars in
+     * parallel, on the {@link ForkJoinPool#commonPool() common pool}
+     *
+     * @param relocations The relocation rules
+     */
+    public JarRelocator(@NotNull List<Relocation> relocations) {
+        this(relocations, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a relocator that rewrites the classes of large jars in parallel
+     * on the given pool
+     *
+     * @param relocations The relocation rules
+     * @param pool        The pool, or {@code null} to relocate on the calling thread only
+     */
+    public JarRelocator(@NotNull List<Relocation> relocations, @Nullable ForkJoinPool pool) {
+        this(relocations, pool, false);
+    }
+
+    /**
+     * Creates a relocator that rewrites the classes of large jars in parallel
+     * on the given pool
+     *
+     * @param relocations  The relocation rules
+     * @param pool         The pool, or {@code null} to relocate on the calling thread only
+     * @param storeClasses Whether to write class entries uncompressed
+     */
+    public JarRelocator(@NotNull List<Relocation> relocations, @Nullable ForkJoinPool pool, boolean storeClasses) {
+        this(relocations, pool, storeClasses, MemoryBudget.unlimited());
+    }
+
+    /**
+     * Creates a relocator that rewrites the classes of large jars in parallel
+     * on the given pool, holding no more entries in memory than the budget allows
+     *
+     * @param relocations  The relocation rules
+     * @param pool         The pool, or {@code null} to relocate on the calling thread only
+     * @param storeClasses Whether to write class entries uncompressed
+     * @param budget       The memory budget, which may be shared with other relocators
+     */
+    public JarRelocator(
+            @NotNull List<Relocation> relocations,
+            @Nullable ForkJoinPool pool,
+            boolean storeClasses,
+            @NotNull MemoryBudget budget
+    ) {
+        this(relocations, pool, storeClasses, budget, Collections.emptySet());
+    }
+
+    /**
+     * Creates a relocator that rewrites the classes of large jars in parallel
+     * on the given pool, and strips the given payload from them
+     *
+     * @param relocations  The relocation rules
+     * @param pool         The pool, or {@code null} to relocate on the calling thread only
+     * @param storeClasses Whether to write class entries uncompressed
+     * @param budget       The memory budget, which may be shared with other relocators
+     * @param strip        The payload to strip
+     */
+    public JarRelocator(
+            @NotNull List<Relocation> relocations,
+            @Nullable ForkJoinPool pool,
+            boolean storeClasses,
+            @NotNull MemoryBudget budget,
+            @NotNull Set<StripOption> strip
+    ) {
+        this(new RelocatingRemapper(relocations), pool, storeClasses, budget, strip);
+    }
+
+    JarRelocator(
+            @NotNull RelocatingRemapper remapper,
+            @Nullable ForkJoinPool pool,
+            boolean storeClasses,
+            @NotNull MemoryBudget budget,
+            @NotNull Set<StripOption> strip
+    ) {
+        this.remapper = remapper;
+        this.pool = pool;
+        this.storeClasses = storeClasses;
+        this.budget = budget;
+        this.strip = strip.isEmpty() ? Collections.emptySet() : EnumSet.copyOf(strip);
+        List<byte[]> attributes = new ArrayList<>();
+        for (StripOption option : this.strip) {
+            for (String attribute : option.getAttributes())
+                attributes.add(attribute.getBytes(StandardCharsets.UTF_8));
+        }
+        this.strippedAttributes = attributes.toArray(new byte[0][]);
+    }
+
+    /**
+     * Relocates the input jar into the output jar. The output is written to a
+     * temporary file first and moved into place once complete, so a failed or
+     * interrupted relocation never leaves a partial jar behind.
+     *
+     * @param input  The jar to relocate
+     * @param output The relocated jar
+     * @throws IOException if the input could not be read or the output could not be written
+     */
+    public void relocate(@NotNull File input, @NotNull File output) throws IOException {
+        Path target = output.toPath().toAbsolutePath();
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), output.getName(), ".tmp");
+        try {
+            try (ZipReader zip = new ZipReader(input.toPath())) {
+                if (isAffected(zip)) {
+                    try (ZipWriter out = new ZipWriter(new BufferedOutputStream(Files.newOutputStream(temp), BUFFER_SIZE))) {
+                        relocate(zip, out);
+                    }
+                } else {
+                    reuse(input.toPath(), temp);
+                }
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Tests whether any rule applies to the classes or resources of a jar. This
+     * stops at the first entry that is affected, which for most dependencies that
+     * are relocated is one of the first classes.
+     */
+    private boolean isAffected(@NotNull ZipReader zip) throws IOException {
+        try (Encoder encoder = Encoder.obtain()) {
+            for (ZipReader.Entry entry : zip.entries()) {
+                int permits = budget.permitsFor(cost(entry));
+                budget.acquire(permits);
+                try {
+                    if (isAffected(zip, entry, encoder.buffer))
+                        return true;
+                } finally {
+                    budget.release(permits);
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean isAffected(@NotNull ZipReader zip, @NotNull ZipReader.Entry entry, @NotNull EntryBuffer buffer) throws IOException {
+        String name = entry.getName();
+        if (entry.isDirectory() || isSignatureFile(name) || name.equals("META-INF/INDEX.LIST"))
+            return false;
+        if (isStripped(name) || !relocatedEntryName(name).equals(name))
+            return true;
+        boolean service = isServiceFile(name);
+        if (!service && !name.endsWith(".class"))
+            return false;
+        buffer.read(zip, entry);
+        if (service) {
+            byte[] relocated = relocateServices(buffer.bytes, buffer.length);
+            return !Arrays.equals(relocated, 0, relocated.length, buffer.bytes, 0, buffer.length);
+        }
+        return ConstantPoolScanner.mayRelocate(remapper, buffer.bytes, buffer.length) || mayStrip(buffer);
+    }
+
+    /**
+     * Tests whether a class may have any of the attributes to strip
+     */
+    private boolean mayStrip(@NotNull EntryBuffer buffer) {
+        return strippedAttributes.length > 0
+                && ConstantPoolScanner.mayHaveAttribute(strippedAttributes, buffer.bytes, buffer.length);
+    }
+
+    /**
+     * Tests whether an entry is left out of the relocated jar entirely
+     */
+    boolean isStripped(@NotNull String name) {
+        return name.startsWith(MAVEN_METADATA) && strip.contains(StripOption.METADATA);
+    }
+
+    /**
+     * Reuses a jar that no rule applies to, by linking it to the target if possible
+     * and copying it otherwise. Relocated jars are only ever replaced, never written
+     * to, so sharing the file with the original is safe.
+     */
+    private static void reuse(@NotNull Path input, @NotNull Path target) throws IOException {
+        Files.deleteIfExists(target);
+        try {
+            Files.createLink(target, input);
+        } catch (IOException | UnsupportedOperationException | SecurityException e) {
+            Files.copy(input, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private void relocate(@NotNull ZipReader zip, @NotNull ZipWriter out) throws IOException {
+        List<ZipReader.Entry> entries = new ArrayList<>(zip.entries().size());
+        int classes = 0;
+        for (ZipReader.Entry entry : zip.entries()) {
+            String name = entry.getName();
+            if (entry.isDirectory() || isSignatureFile(name) || name.equals("META-INF/INDEX.LIST") || isStripped(name))
+                continue;
+            entries.add(entry);
+            if (name.endsWith(".class"))
+                classes++;
+        }
+
+        Set<String> written = new HashSet<>();
+        if (pool == null || classes < PARALLEL_THRESHOLD || pool.getParallelism() < 2) {
+            try (Encoder encoder = Encoder.obtain()) {
+                for (ZipReader.Entry entry : entries) {
+                    int permits = budget.permitsFor(cost(entry));
+                    budget.acquire(permits);
+                    try {
+                        write(zip, out, process(zip, entry, encoder), written);
+                    } finally {
+                        budget.release(permits);
+                    }
+                }
+            }
+            return;
+        }
+
+        // Entries are rewritten in parallel one window at a time, so that memory use is
+        // bounded by the window rather than by the whole jar, and written in order.
+        // The memory of a window is reserved before it is processed. Only the first
+        // entry waits for memory, as no other memory is held at that point; the window
+        // ends at the first entry that does not fit, so relocators never wait on each
+        // other while holding memory.
+        int start = 0;
+        while (start < entries.size()) {
+            int end = start;
+            long windowSize = 0;
+            int held = 0;
+            try {
+                while (end < entries.size() && end - start < WINDOW_ENTRIES && windowSize < WINDOW_BYTES) {
+                    ZipReader.Entry entry = entries.get(end);
+                    int permits = budget.permitsFor(cost(entry));
+                    if (end == start)
+                        budget.acquire(permits);
+                    else if (!budget.tryAcquire(permits))
+                        break;
+                    held += permits;
+                    windowSize += Math.max(0, entry.getSize());
+                    end++;
+                }
+
+                Processed[] processed = new Processed[end - start];
+                try {
+                    pool.invoke(new RelocateTask(zip, entries, start, end, processed));
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+                for (Processed entry : processed)
+                    write(zip, out, entry, written);
+            } finally {
+                budget.release(held);
+            }
+            start = end;
+        }
+    }
+
+    /**
+     * Estimates the memory that processing an entry takes: its content, and for
+     * classes, the copy that ASM builds along with its symbol table. Entries that
+     * are copied as is are streamed, and cost nothing.
+     */
+    private static long cost(@NotNull ZipReader.Entry entry) {
+        String name = entry.getName();
+        long size = Math.max(0, entry.getSize());
+        if (name.endsWith(".class"))
+            return size * CLASS_COST_FACTOR;
+        if (isServiceFile(name))
+            return size * 2;
+        return 0;
+    }
+
+    /**
+     * Relocates the name and content of a single entry. Only classes and service
+     * files are read, everything else is copied as is.
+     */
+    private @NotNull Processed process(@NotNull ZipReader zip, @NotNull ZipReader.Entry entry, @NotNull Encoder encoder) throws IOException {
+        String name = entry.getName();
+        if (name.endsWith(".class")) {
+            String relocatedName = relocatedEntryName(name);
+            EntryBuffer buffer = encoder.buffer;
+            buffer.read(zip, entry);
+            boolean relocate = ConstantPoolScanner.mayRelocate(remapper, buffer.bytes, buffer.length);
+            boolean stripped = mayStrip(buffer);
+            if (!relocate && !stripped) {
+                if (!storeClasses || entry.getMethod() == ZipReader.STORED)
+                    return Processed.copy(relocatedName, entry);
+                return encoder.encode(relocatedName, entry.getDosTime(), Arrays.copyOf(buffer.bytes, buffer.length), true);
+            }
+            byte[] relocated = relocateClass(name, buffer.bytes, buffer.length, relocate, stripped);
+            return encoder.encode(relocatedName, entry.getDosTime(), relocated, storeClasses);
+        }
+        if (isServiceFile(name)) {
+            EntryBuffer buffer = encoder.buffer;
+            buffer.read(zip, entry);
+            byte[] relocated = relocateServices(buffer.bytes, buffer.length);
+            return encoder.encode(relocatedEntryName(name), entry.getDosTime(), relocated, false);
+        }
+        return Processed.copy(relocatedEntryName(name), entry);
+    }
+
+    /**
+     * Relocates the content of a single entry, for loading it without relocating
+     * the whole jar. Entries that relocation does not change are returned as is.
+     */
+    byte @NotNull [] relocateEntry(@NotNull ZipReader zip, @NotNull ZipReader.Entry entry) throws IOException {
+        String name = entry.getName();
+        try (Encoder encoder = Encoder.obtain()) {
+            EntryBuffer buffer = encoder.buffer;
+            buffer.read(zip, entry);
+            if (name.endsWith(".class")) {
+                boolean relocate = ConstantPoolScanner.mayRelocate(remapper, buffer.bytes, buffer.length);
+                boolean stripped = mayStrip(buffer);
+                if (relocate || stripped)
+                    return relocateClass(name, buffer.bytes, buffer.length, relocate, stripped);
+            } else if (isServiceFile(name)) {
+                return relocateServices(buffer.bytes, buffer.length);
+            }
+            return Arrays.copyOf(buffer.bytes, buffer.length);
+        }
+    }
+
+    private static void write(
+            @NotNull ZipReader zip,
+            @NotNull ZipWriter out,
+            @NotNull Processed entry,
+            @NotNull Set<String> written
+    ) throws IOException {
+        // Relocation may map two entries to the same name. The first one wins.
+        if (!written.add(entry.name))
+            return;
+        if (entry.source != null)
+            out.copy(entry.name, zip, entry.source);
+        else
+            out.write(entry.name, entry.dosTime, entry.method, entry.crc, entry.size, entry.content, entry.content.length);
+    }
+
+    /**
+     * Returns the name an entry has in the relocated jar. Classes and resources
+     * are moved along with their packages, and service files are renamed after
+     * the relocated service interface.
+     */
+    @NotNull String relocatedEntryName(@NotNull String name) {
+        if (name.endsWith(".class"))
+            return mapEntryName(name.substring(0, name.length() - ".class".length())) + ".class";
+        if (isServiceFile(name))
+            return SERVICES + remapper.mapClassName(name.substring(SERVICES.length()));
+        return mapEntryName(name);
+    }
+
+    /**
+     * Relocates an entry name, keeping the {@code META-INF/versions/<n>/}
+     * prefix of multi-release entries intact.
+     */
+    private @NotNull String mapEntryName(@NotNull String name) {
+        if (name.startsWith(VERSIONS)) {
+            int slash = name.indexOf('/', VERSIONS.length());
+            if (slash != -1)
+                return name.substring(0, slash + 1) + remapper.mapPath(name.substring(slash + 1));
+        }
+        return remapper.mapPath(name);
+    }
+
+    /**
+     * Rewrites a class, relocating it and/or stripping it. Classes that only need
+     * stripping skip the remapper, and the reader skips all debug attributes itself
+     * if they are all stripped.
+     */
+    private byte @NotNull [] relocateClass(
+            @NotNull String name,
+            byte @NotNull [] content,
+            int length,
+            boolean relocate,
+            boolean stripped
+    ) throws IOException {
+        try {
+            ClassReader reader = new ClassReader(content, 0, length);
+            ClassWriter writer = new ClassWriter(0);
+            ClassVisitor visitor = writer;
+            int flags = 0;
+            if (stripped) {
+                if (StrippingClassVisitor.stripsAllDebugInfo(strip))
+                    flags = ClassReader.SKIP_DEBUG;
+                else
+                    visitor = new StrippingClassVisitor(visitor, strip);
+            }
+            if (relocate)
+                visitor = new ClassRemapper(visitor, remapper);
+            reader.accept(visitor, flags);
+            return writer.toByteArray();
+        } catch (RuntimeException e) {
+            throw new IOException("Failed to relocate class " + name, e);
+        }
+    }
+
+    /**
+     * Relocates the implementation class names listed in a service file
+     */
+    private byte @NotNull [] relocateServices(byte @NotNull [] bytes, int length) {
+        String content = new String(bytes, 0, length, StandardCharsets.UTF_8);
+        StringBuilder relocated = new StringBuilder(content.length());
+        for (String line : content.split("\r?\n", -1)) {
+            if (relocated.length() > 0)
+                relocated.append('\n');
+            int comment = line.indexOf('#');
+            String className = (comment == -1 ? line : line.substring(0, comment)).trim();
+            if (className.isEmpty())
+                relocated.append(line);
+            else
+                relocated.append(line.replace(className, remapper.mapClassName(className)));
+        }
+        return relocated.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static boolean isServiceFile(@NotNull String name) {
+        return name.startsWith(SERVICES) && name.indexOf('/', SERVICES.length()) == -1;
+    }
+
+    static boolean isSignatureFile(@NotNull String name) {
+        if (!name.startsWith("META-INF/") || name.indexOf('/', "META-INF/".length()) != -1)
+            return false;
+        String upper = name.toUpperCase(Locale.ROOT);
+        return upper.endsWith(".SF") || upper.endsWith(".DSA") || upper.endsWith(".RSA") || upper.endsWith(".EC");
+    }
+
+    /**
+     * An entry, with its relocated name, and either the entry of the original jar
+     * to copy it from or its new content, already compressed
+     */
+    private static final class Processed {
+
+        private final String name;
+        private final @Nullable ZipReader.Entry source;
+        private final int dosTime;
+        private final int method;
+        private final int crc;
+        private final long size;
+        private final byte[] content;
+
+        private Processed(@NotNull String name, @Nullable ZipReader.Entry source, int dosTime, int method, int crc, long size, byte[] content) {
+            this.name = name;
+            this.source = source;
+            this.dosTime = dosTime;
+            this.method = method;
+            this.crc = crc;
+            this.size = size;
+            this.content = content;
+        }
+
+        private static @NotNull Processed copy(@NotNull String name, @NotNull ZipReader.Entry source) {
+            return new Processed(name, source, 0, 0, 0, 0, null);
+        }
+    }
+
+    /**
+     * Relocates a range of entries, splitting it in halves until it is small
+     * enough to be processed by a single thread. Results are stored by index,
+     * so they can be written in the original order.
+     */
+    @SuppressWarnings("serial")
+    private final class RelocateTask extends RecursiveAction {
+
+        private final ZipReader zip;
+        private final List<ZipReader.Entry> entries;
+        private final int start;
+        private final int end;
+        private final Processed[] results;
+        private final int offset;
+
+        private RelocateTask(ZipReader zip, List<ZipReader.Entry> entries, int start, int end, Processed[] results) {
+            this(zip, entries, start, end, results, start);
+        }
+
+        private RelocateTask(ZipReader zip, List<ZipReader.Entry> entries, int start, int end, Processed[] results, int offset) {
+            this.zip = zip;
+            this.entries = entries;
+            this.start = start;
+            this.end = end;
+            this.results = results;
+            this.offset = offset;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start > TASK_ENTRIES) {
+                int middle = (start + end) >>> 1;
+                invokeAll(
+                        new RelocateTask(zip, entries, start, middle, results, offset),
+                        new RelocateTask(zip, entries, middle, end, results, offset)
+                );
+                return;
+            }
+            try (Encoder encoder = Encoder.obtain()) {
+                for (int i = start; i < end; i++)
+                    results[i - offset] = process(zip, entries.get(i), encoder);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * The buffers and deflater used to process entries on one thread. Encoders are
+     * pooled, so that relocating many jars or windows does not allocate new buffers
+     * and native deflaters for each of them.
+     */
+    private static final class Encoder implements AutoCloseable {
+
+        /**
+         * Encoders are returned to the pool only while it holds fewer than this
+         */
+        private static final int POOL_SIZE = Runtime.getRuntime().availableProcessors() * 2;
+
+        /**
+         * Buffers that grew larger than this, to hold a large entry, are not kept
+         * in the pool, so that pooled encoders hold a fixed amount of memory
+         */
+        private static final int MAX_POOLED_BUFFER = 1024 * 1024;
+
+        private static final Queue<Encoder> POOL = new ConcurrentLinkedQueue<>();
+
+        private final EntryBuffer buffer = new EntryBuffer();
+        private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        private final CRC32 crc = new CRC32();
+        private byte[] output = new byte[BUFFER_SIZE];
+
+        private static @NotNull Encoder obtain() {
+            Encoder encoder = POOL.poll();
+            return encoder == null ? new Encoder() : encoder;
+        }
+
+        /**
+         * Compresses new content of an entry. The content must not be
+         * the entry buffer, as it is reused for the next entry.
+         */
+        private @NotNull Processed encode(@NotNull String name, int dosTime, byte @NotNull [] content, boolean store) {
+            crc.reset();
+            crc.update(content, 0, content.length);
+            int checksum = (int) crc.getValue();
+            if (store)
+                return new Processed(name, null, dosTime, ZipReader.STORED, checksum, content.length, content);
+
+            deflater.reset();
+            deflater.setInput(content);
+            deflater.finish();
+            int length = 0;
+            while (!deflater.finished()) {
+                if (length == output.length)
+                    output = Arrays.copyOf(output, output.length * 2);
+                length += deflater.deflate(output, length, output.length - length);
+            }
+            return new Processed(name, null, dosTime, ZipReader.DEFLATED, checksum, content.length, Arrays.copyOf(output, length));
+        }
+
+        /**
+         * Returns this encoder to the pool, or releases it if the pool is full
+         */
+        @Override
+        public void close() {
+            if (POOL.size() >= POOL_SIZE) {
+                deflater.end();
+                return;
+            }
+            if (buffer.bytes.length > MAX_POOLED_BUFFER)
+                buffer.bytes = new byte[BUFFER_SIZE];
+            if (output.length > MAX_POOLED_BUFFER)
+                output = new byte[BUFFER_SIZE];
+            POOL.offer(this);
+        }
+    }
+
+    /**
+     * A growable buffer that entries are read into, reused across all entries of a jar
+     */
+    private static final class EntryBuffer {
+
+        private byte[] bytes = new byte[BUFFER_SIZE];
+        private int length;
+
+        private void read(@NotNull ZipReader zip, @NotNull ZipReader.Entry entry) throws IOException {
+            try (InputStream in = zip.open(entry)) {
+                read(in, entry.getSize());
+            }
+        }
+
+        private void read(@NotNull InputStream in, long sizeHint) throws IOException {
+            length = 0;
+            if (sizeHint > bytes.length && sizeHint < Integer.MAX_VALUE - 8)
+                bytes = new byte[(int) sizeHint + 1];
+            while (true) {
+                if (length == bytes.length)
+                    grow();
+                int read = in.read(bytes, length, bytes.length - length);
+                if (read == -1)
+                    return;
+                length += read;
+            }
+        }
+
+        private void grow() {
+            byte[] grown = new byte[bytes.length * 2];
+            System.arraycopy(bytes, 0, grown, 0, length);
+            bytes = grown;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * This file is part of Zapper, licensed under the MIT License.
+ *
+ *  Copyright (c) Revxrsal <reflxction.github@gmail.com>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package revxrsal.zapper.relocation;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * A budget of heap memory that relocations may use at once, shared by all the
+ * jars relocated with it.
+ * <p>
+ * Before a jar entry is read into memory, a relocator reserves an estimate of what
+ * it costs to hold and rewrite it, and releases it once the entry is written. When
+ * the budget is exhausted, relocations wait for memory to be released instead of
+ * growing the heap, which keeps memory use predictable when relocating next to a
+ * running server. An entry that costs more than the whole budget is processed on
+ * its own, once every other entry has been released.
+ */
+public final class MemoryBudget {
+
+    /**
+     * The granularity of reservations. Permits count kibibytes, so that
+     * budgets of up to 2 TiB fit in a semaphore.
+     */
+    private static final int UNIT = 1024;
+
+    private final long bytes;
+    private final int total;
+    private final Semaphore permits;
+
+    /**
+     * Creates a budget of the given size
+     *
+     * @param bytes The number of bytes relocations may hold at once
+     */
+    public MemoryBudget(long bytes) {
+        if (bytes < UNIT)
+            throw new IllegalArgumentException("The memory budget must be at least " + UNIT + " bytes.");
+        this.bytes = bytes;
+        this.total = (int) Math.min(Integer.MAX_VALUE, bytes / UNIT);
+        this.permits = new Semaphore(total, true);
+    }
+
+    /**
+     * Creates a budget that never makes relocations wait
+     *
+     * @return The budget
+     */
+    @Contract("-> new")
+    public static @NotNull MemoryBudget unlimited() {
+        return new MemoryBudget(Long.MAX_VALUE);
+    }
+
+    /**
+     * Returns the size of this budget
+     *
+     * @return The number of bytes relocations may hold at once
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Returns the number of permits that reserving the given number of bytes takes,
+     * which is never more than the whole budget
+     */
+    int permitsFor(long bytes) {
+        if (bytes <= 0)
+            return 0;
+        return (int) Math.min(total, (bytes + UNIT - 1) / UNIT);
+    }
+
+    void acquire(int permits) throws InterruptedIOException {
+        if (permits == 0)
+            return;
+        try {
+            this.permits.acquire(permits);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for relocation memory");
+        }
+    }
+
+    boolean tryAcquire(int permits) {
+        return permits == 0 || this.permits.tryAcquire(permits);
+    }
+
+    void release(int permits) {
+        if (permits > 0)
+            this.permits.release(permits);
+    }
+
+    @Override
+    public String toString() {
+        return "MemoryBudget{bytes=" + bytes + '}';
+    }
+}
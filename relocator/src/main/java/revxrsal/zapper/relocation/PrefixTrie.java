@@ -0,0 +1,134 @@
+/*
+ * This file is part of Zapper, licensed under the MIT License.
+ *
+ *  Copyright (c) Revxrsal <reflxction.github@gmail.com>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package revxrsal.zapper.relocation;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * A trie of string prefixes, each associated with the index of the rule it
+ * belongs to.
+ * <p>
+ * Looking up a string walks the trie once, character by character, so its cost
+ * depends on the length of the longest matching prefix rather than on the number
+ * of prefixes. When several prefixes match, the one with the lowest index wins,
+ * which is the same result as testing the prefixes in order.
+ * <p>
+ * A trie is not modified after it is built, and may be shared across threads.
+ */
+final class PrefixTrie {
+
+    private static final int NO_MATCH = -1;
+
+    private final Node root = new Node();
+
+    /**
+     * Adds a prefix. Prefixes must be added before the trie is shared.
+     *
+     * @param prefix The prefix
+     * @param index  The index of the rule. If the same prefix is added more
+     *               than once, the lowest index is kept.
+     */
+    void add(@NotNull String prefix, int index) {
+        Node node = root;
+        for (int i = 0; i < prefix.length(); i++)
+            node = node.childOrCreate(prefix.charAt(i));
+        if (node.index == NO_MATCH || index < node.index)
+            node.index = index;
+    }
+
+    /**
+     * Finds the lowest rule index among the prefixes of the given range of a string
+     *
+     * @param value The string
+     * @param start The index to start matching at
+     * @param end   The index to stop matching at
+     * @return The rule index, or {@code -1} if no prefix matches
+     */
+    int match(@NotNull String value, int start, int end) {
+        int best = root.index;
+        Node node = root;
+        for (int i = start; i < end; i++) {
+            node = node.child(value.charAt(i));
+            if (node == null)
+                break;
+            if (node.index != NO_MATCH && (best == NO_MATCH || node.index < best))
+                best = node.index;
+        }
+        return best;
+    }
+
+    /**
+     * Tests whether any prefix matches the given range of a byte array, comparing
+     * each byte to a character. This is only meaningful if all prefixes are ASCII.
+     *
+     * @param bytes The bytes
+     * @param start The index to start matching at
+     * @param end   The index to stop matching at
+     * @return {@code true} if a prefix matches
+     */
+    boolean matches(byte @NotNull [] bytes, int start, int end) {
+        Node node = root;
+        if (node.index != NO_MATCH)
+            return true;
+        for (int i = start; i < end; i++) {
+            node = node.child((char) (bytes[i] & 0xFF));
+            if (node == null)
+                return false;
+            if (node.index != NO_MATCH)
+                return true;
+        }
+        return false;
+    }
+
+    private static final class Node {
+
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        private int index = NO_MATCH;
+
+        private Node child(char key) {
+            char[] keys = this.keys;
+            // Nodes rarely have more than a handful of children, so a linear scan beats hashing.
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == key)
+                    return children[i];
+            }
+            return null;
+        }
+
+        private @NotNull Node childOrCreate(char key) {
+            Node child = child(key);
+            if (child != null)
+                return child;
+            child = new Node();
+            keys = Arrays.copyOf(keys, keys.length + 1);
+            children = Arrays.copyOf(children, children.length + 1);
+            keys[keys.length - 1] = key;
+            children[children.length - 1] = child;
+            return child;
+        }
+    }
+}
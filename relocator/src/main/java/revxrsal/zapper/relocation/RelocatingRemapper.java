@@ -0,0 +1,188 @@
+/*
+ * This file is part of Zapper, licensed under the MIT License.
+ *
+ *  Copyright (c) Revxrsal <reflxction.github@gmail.com>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package revxrsal.zapper.relocation;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.commons.Remapper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link Remapper} that applies {@link Relocation} rules to class names, descriptors
+ * and string constants.
+ * <p>
+ * Rules match by plain prefix, like ShadowJar's and jar-relocator's do, so that
+ * classes relocated at runtime agree with the plugin code relocated at build time.
+ * String constants are relocated both in their internal ({@code com/example/Foo})
+ * and binary ({@code com.example.Foo}) forms, which covers most reflective lookups.
+ * <p>
+ * When several rules match a name, the one declared first wins, as it does in
+ * jar-relocator, even if a later rule has a longer pattern.
+ * <p>
+ * This class is stateless and may be shared across threads.
+ */
+final class RelocatingRemapper extends Remapper {
+
+    private final List<Rule> rules;
+
+    /**
+     * The binary ({@code com.example}) and internal ({@code com/example}) forms of
+     * the patterns, compiled once so that matching does not depend on the number
+     * of rules
+     */
+    private final PrefixTrie patterns = new PrefixTrie();
+    private final PrefixTrie pathPatterns = new PrefixTrie();
+    private final boolean ascii;
+
+    RelocatingRemapper(@NotNull List<Relocation> relocations) {
+        this.rules = new ArrayList<>(relocations.size());
+        boolean ascii = true;
+        for (Relocation relocation : relocations) {
+            Rule rule = new Rule(relocation);
+            patterns.add(rule.pattern, rules.size());
+            pathPatterns.add(rule.pathPattern, rules.size());
+            rules.add(rule);
+            ascii &= isAscii(rule.pattern);
+        }
+        this.ascii = ascii;
+    }
+
+    @Override
+    public String map(String internalName) {
+        String relocated = relocate(internalName, false);
+        return relocated == null ? internalName : relocated;
+    }
+
+    @Override
+    public Object mapValue(Object value) {
+        if (value instanceof String) {
+            String relocated = relocate((String) value, true);
+            if (relocated != null)
+                return relocated;
+        }
+        return super.mapValue(value);
+    }
+
+    /**
+     * Relocates a path, such as the name of a resource
+     *
+     * @param path The path
+     * @return The relocated path, or the path itself if no rule applies
+     */
+    @NotNull String mapPath(@NotNull String path) {
+        return map(path);
+    }
+
+    /**
+     * Relocates a binary class name, such as {@code com.example.Foo}
+     *
+     * @param className The class name
+     * @return The relocated name, or the name itself if no rule applies
+     */
+    @NotNull String mapClassName(@NotNull String className) {
+        String relocated = relocate(className, true);
+        return relocated == null ? className : relocated;
+    }
+
+    /**
+     * Tests whether relocation may change a {@code CONSTANT_Utf8} constant, given
+     * in its raw modified UTF-8 form. Names are only relocated when they start with
+     * a pattern, either at the beginning of the constant or within a descriptor
+     * (after an {@code L}), so only those positions are tested.
+     * <p>
+     * This may report constants that are left unchanged, but never the opposite.
+     *
+     * @param bytes The bytes of the class file
+     * @param start The offset of the constant
+     * @param end   The offset after the constant
+     * @return {@code true} if the constant may be relocated
+     */
+    boolean mayRelocate(byte @NotNull [] bytes, int start, int end) {
+        if (!ascii)
+            return true;
+        if (patterns.matches(bytes, start, end) || pathPatterns.matches(bytes, start, end))
+            return true;
+        for (int i = start; i < end - 1; i++) {
+            if (bytes[i] == 'L' && (patterns.matches(bytes, i + 1, end) || pathPatterns.matches(bytes, i + 1, end)))
+                return true;
+        }
+        return false;
+    }
+
+    private static boolean isAscii(@NotNull String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) >= 0x80)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Relocates the given name, which may be wrapped in a type descriptor
+     * (such as {@code [Lcom/example/Foo;}).
+     *
+     * @param name         The name
+     * @param allowDotted  Whether binary (dotted) class names are relocated too
+     * @return The relocated name, or {@code null} if no rule applies
+     */
+    private @Nullable String relocate(@NotNull String name, boolean allowDotted) {
+        int start = 0;
+        while (start < name.length() && name.charAt(start) == '[')
+            start++;
+        int end = name.length();
+        boolean descriptor = end - start > 2 && name.charAt(start) == 'L' && name.charAt(end - 1) == ';';
+        int from = descriptor ? start + 1 : 0;
+        int to = descriptor ? end - 1 : end;
+
+        // A name without slashes may be a binary name. If it matches a rule in its internal
+        // form, it necessarily matches the same rule in its binary form, so one lookup suffices.
+        boolean dotted = allowDotted && name.indexOf('/', from) == -1;
+        int index = (dotted ? patterns : pathPatterns).match(name, from, to);
+        if (index == -1)
+            return null;
+
+        Rule rule = rules.get(index);
+        String relocated = dotted
+                ? rule.relocatedPattern + name.substring(from + rule.pattern.length(), to)
+                : rule.relocatedPathPattern + name.substring(from + rule.pathPattern.length(), to);
+        return descriptor ? name.substring(0, from) + relocated + ';' : relocated;
+    }
+
+    private static final class Rule {
+
+        private final String pattern;
+        private final String relocatedPattern;
+        private final String pathPattern;
+        private final String relocatedPathPattern;
+
+        private Rule(@NotNull Relocation relocation) {
+            this.pattern = relocation.getPattern();
+            this.relocatedPattern = relocation.getNewPattern();
+            this.pathPattern = pattern.replace('.', '/');
+            this.relocatedPathPattern = relocatedPattern.replace('.', '/');
+        }
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * This file is part of Zapper, licensed under the MIT License.
+ *
+ *  Copyright (c) Revxrsal <reflxction.github@gmail.com>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package revxrsal.zapper.relocation;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import revxrsal.zapper.classloader.ClassPathEntry;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLDecoder;
+import java.net.URLStreamHandler;
+import java.nio.channels.ClosedChannelException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Serves the entries of a jar relocated as they are loaded, so that the jar never
+ * has to be relocated as a whole.
+ * <p>
+ * The jar is exposed as a {@code zapper:} URL that ends with a slash, which a
+ * {@link java.net.URLClassLoader} treats as a directory of resources: to load a
+ * class, it resolves the relocated name of the class against the URL and opens
+ * it, which relocates that one class from the original jar. Classes that are
+ * never loaded are never read.
+ * <p>
+ * The relocated names of all entries are computed up front from the central
+ * directory, which is cheap, so lookups of resources that the jar does not have
+ * fail without reading it. Multi-release entries that apply to the running Java
+ * version replace their base entries, as class loaders only see the base entries
+ * of such URLs.
+ * <p>
+ * The jar stays open for as long as the handler is reachable, as it is with jars
+ * opened by a class loader.
+ */
+final class RelocatingURLStreamHandler extends URLStreamHandler implements ClassPathEntry {
+
+    private static final String PROTOCOL = "zapper";
+    private static final String VERSIONS = "META-INF/versions/";
+    private static final AtomicInteger IDS = new AtomicInteger();
+
+    private final File file;
+    private final JarRelocator relocator;
+    private final String base;
+    private final Map<String, ZipReader.Entry> entries = new HashMap<>();
+    private final Map<String, String> names = new HashMap<>();
+    private volatile ZipReader zip;
+
+    RelocatingURLStreamHandler(@NotNull File file, @NotNull JarRelocator relocator) throws IOException {
+        this.file = file;
+        this.relocator = relocator;
+        this.base = "/" + IDS.incrementAndGet() + "/" + file.getName() + "/";
+        this.zip = new ZipReader(file.toPath());
+        for (ZipReader.Entry entry : zip.entries())
+            entries.putIfAbsent(entry.getName(), entry);
+        indexNames();
+    }
+
+    @Override
+    public @NotNull URL getURL() {
+        try {
+            return new URL(PROTOCOL, "", -1, base, this);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public @NotNull Collection<String> getEntryNames() {
+        return Collections.unmodifiableSet(names.keySet());
+    }
+
+    /**
+     * Maps the relocated name of every entry to its original name
+     */
+    private void indexNames() {
+        int feature = Runtime.version().feature();
+        Map<String, Integer> versions = new HashMap<>();
+        for (String name : entries.keySet()) {
+            if (JarRelocator.isSignatureFile(name) || relocator.isStripped(name))
+                continue;
+            int version = 0;
+            String baseName = name;
+            if (name.startsWith(VERSIONS)) {
+                int slash = name.indexOf('/', VERSIONS.length());
+                if (slash == -1)
+                    continue;
+                try {
+                    version = Integer.parseInt(name.substring(VERSIONS.length(), slash));
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                if (version > feature)
+                    continue;
+                baseName = name.substring(slash + 1);
+            }
+            String relocated = relocator.relocatedEntryName(baseName);
+            if (version >= versions.getOrDefault(relocated, -1)) {
+                versions.put(relocated, version);
+                names.put(relocated, name);
+            }
+        }
+    }
+
+    /**
+     * Relocates the entry with the given relocated name
+     *
+     * @return The relocated content, or {@code null} if the jar has no such entry
+     */
+    private byte @Nullable [] read(@NotNull String relocatedName) throws IOException {
+        String name = names.get(relocatedName);
+        if (name == null)
+            return null;
+        ZipReader.Entry entry = entries.get(name);
+        if (entry.isDirectory())
+            return new byte[0];
+        try {
+            return relocator.relocateEntry(zip, entry);
+        } catch (ClosedChannelException e) {
+            // A thread that is interrupted while reading closes the channel for every
+            // other thread as well, so the jar is opened again. Entries stay valid, as
+            // they only hold offsets into the file.
+            synchronized (this) {
+                if (!zip.isOpen())
+                    zip = new ZipReader(file.toPath());
+            }
+            if (Thread.currentThread().isInterrupted())
+                throw e;
+            return relocator.relocateEntry(zip, entry);
+        }
+    }
+
+    @Override
+    protected URLConnection openConnection(URL url) throws IOException {
+        String path = url.getPath();
+        if (!path.startsWith(base))
+            throw new FileNotFoundException(url.toString());
+        String name = URLDecoder.decode(path.substring(base.length()).replace("+", "%2B"), StandardCharsets.UTF_8);
+        URLConnection connection = open(url, name);
+        if (connection == null)
+            throw new FileNotFoundException(url.toString());
+        return connection;
+    }
+
+    @Override
+    public @Nullable URLConnection open(@NotNull URL url, @NotNull String name) {
+        return names.containsKey(name) ? new RelocatedConnection(url, name) : null;
+    }
+
+    /**
+     * A connection to a single relocated entry, which is relocated once connected
+     */
+    private final class RelocatedConnection extends URLConnection {
+
+        private final String name;
+        private byte[] content;
+
+        private RelocatedConnection(@NotNull URL url, @NotNull String name) {
+            super(url);
+            this.name = name;
+        }
+
+        @Override
+        public synchronized void connect() throws IOException {
+            if (connected)
+                return;
+            content = read(name);
+            if (content == null)
+                throw new FileNotFoundException(url.toString());
+            connected = true;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            connect();
+            return new ByteArrayInputStream(content);
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            try {
+                connect();
+            } catch (IOException e) {
+                return -1;
+            }
+            return content.length;
+        }
+
+        @Override
+        public int getContentLength() {
+            long length = getContentLengthLong();
+            return length > Integer.MAX_VALUE ? -1 : (int) length;
+        }
+
+        @Override
+        public long getLastModified() {
+            return file.lastModified();
+        }
+    }
+}
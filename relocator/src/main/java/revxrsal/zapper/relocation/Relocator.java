@@ -0,0 +1,166 @@
+/*
+ * This file is part of Zapper, licensed under the MIT License.
+ *
+ *  Copyright (c) Revxrsal <reflxction.github@gmail.com>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package revxrsal.zapper.relocation;
+
+import org.jetbrains.annotations.NotNull;
+import revxrsal.zapper.classloader.ClassPathEntry;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The relocator utility
+ */
+public final class Relocator {
+
+    /**
+     * The rules compiled for each set of relocations. Compiling the rules is cheap
+     * compared to relocating a jar, but a plugin relocates every dependency with
+     * the same rules, so there is no reason to do it more than once.
+     */
+    private static final Map<List<Relocation>, RelocatingRemapper> REMAPPERS = new ConcurrentHashMap<>();
+
+    private Relocator() {
+    }
+
+    /**
+     * Relocates the input jar into the output jar
+     *
+     * @param input       The jar to relocate
+     * @param output      The relocated jar
+     * @param relocations The relocation rules
+     * @throws UncheckedIOException if the jar could not be relocated
+     * @see JarRelocator
+     */
+    public static void relocate(
+            @NotNull File input,
+            @NotNull File output,
+            @NotNull List<Relocation> relocations
+    ) {
+        relocate(input, output, relocations, false);
+    }
+
+    /**
+     * Relocates the input jar into the output jar
+     *
+     * @param input        The jar to relocate
+     * @param output       The relocated jar
+     * @param relocations  The relocation rules
+     * @param storeClasses Whether to write class entries uncompressed
+     * @throws UncheckedIOException if the jar could not be relocated
+     * @see JarRelocator
+     */
+    public static void relocate(
+            @NotNull File input,
+            @NotNull File output,
+            @NotNull List<Relocation> relocations,
+            boolean storeClasses
+    ) {
+        relocate(input, output, relocations, storeClasses, MemoryBudget.unlimited());
+    }
+
+    /**
+     * Relocates the input jar into the output jar, holding no more entries in
+     * memory than the budget allows
+     *
+     * @param input        The jar to relocate
+     * @param output       The relocated jar
+     * @param relocations  The relocation rules
+     * @param storeClasses Whether to write class entries uncompressed
+     * @param budget       The memory budget, which may be shared with other relocations
+     * @throws UncheckedIOException if the jar could not be relocated
+     * @see JarRelocator
+     */
+    public static void relocate(
+            @NotNull File input,
+            @NotNull File output,
+            @NotNull List<Relocation> relocations,
+            boolean storeClasses,
+            @NotNull MemoryBudget budget
+    ) {
+        relocate(input, output, relocations, storeClasses, budget, Collections.emptySet());
+    }
+
+    /**
+     * Relocates the input jar into the output jar, stripping the given payload
+     * from it, and holding no more entries in memory than the budget allows
+     *
+     * @param input        The jar to relocate
+     * @param output       The relocated jar
+     * @param relocations  The relocation rules
+     * @param storeClasses Whether to write class entries uncompressed
+     * @param budget       The memory budget, which may be shared with other relocations
+     * @param strip        The payload to strip
+     * @throws UncheckedIOException if the jar could not be relocated
+     * @see JarRelocator
+     */
+    public static void relocate(
+            @NotNull File input,
+            @NotNull File output,
+            @NotNull List<Relocation> relocations,
+            boolean storeClasses,
+            @NotNull MemoryBudget budget,
+            @NotNull Set<StripOption> strip
+    ) {
+        RelocatingRemapper remapper = REMAPPERS.computeIfAbsent(new ArrayList<>(relocations), RelocatingRemapper::new);
+        try {
+            new JarRelocator(remapper, ForkJoinPool.commonPool(), storeClasses, budget, strip).relocate(input, output);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to relocate " + input.getName(), e);
+        }
+    }
+
+    /**
+     * Returns a view of a jar that serves its entries relocated as they are loaded,
+     * instead of relocating the whole jar up front. Adding its URL to a
+     * {@link java.net.URLClassLoader} makes it load the relocated classes.
+     *
+     * @param input       The jar to relocate
+     * @param relocations The relocation rules
+     * @param strip       The payload to strip
+     * @return The relocated jar
+     * @throws UncheckedIOException if the jar could not be opened
+     */
+    public static @NotNull ClassPathEntry relocateOnLoad(
+            @NotNull File input,
+            @NotNull List<Relocation> relocations,
+            @NotNull Set<StripOption> strip
+    ) {
+        RelocatingRemapper remapper = REMAPPERS.computeIfAbsent(new ArrayList<>(relocations), RelocatingRemapper::new);
+        try {
+            JarRelocator relocator = new JarRelocator(remapper, null, false, MemoryBudget.unlimited(), strip);
+            return new RelocatingURLStreamHandler(input, relocator);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open " + input.getName(), e);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * This file is part of Zapper, licensed under the MIT License.
+ *
+ *  Copyright (c) Revxrsal <reflxction.github@gmail.com>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package revxrsal.zapper.relocation;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Represents a kind of payload that may be stripped from a dependency while it
+ * is relocated. None of these change how the classes of a dependency behave,
+ * unless it reads its own debug information through reflection (for example,
+ * frameworks that bind method parameters by name).
+ */
+public enum StripOption {
+
+    /**
+     * The {@code LocalVariableTable} and {@code LocalVariableTypeTable} attributes,
+     * which hold the names of local variables for debuggers
+     */
+    LOCAL_VARIABLES("LocalVariableTable", "LocalVariableTypeTable"),
+
+    /**
+     * The {@code LineNumberTable} attribute, which maps bytecode to source lines.
+     * Without it, stack traces have no line numbers.
+     */
+    LINE_NUMBERS("LineNumberTable"),
+
+    /**
+     * The {@code MethodParameters} attribute, which holds the names of method
+     * parameters of classes compiled with {@code -parameters}
+     */
+    PARAMETERS("MethodParameters"),
+
+    /**
+     * The {@code SourceFile} and {@code SourceDebugExtension} attributes. Without
+     * them, stack traces show {@code Unknown Source}.
+     */
+    SOURCE_FILE("SourceFile", "SourceDebugExtension"),
+
+    /**
+     * The build metadata under {@code META-INF/maven/}, such as the POM
+     * the dependency was built from
+     */
+    METADATA;
+
+    private final String[] attributes;
+
+    StripOption(@NotNull String... attributes) {
+        this.attributes = attributes;
+    }
+
+    /**
+     * Returns the names of the class file attributes this option strips
+     *
+     * @return The attribute names, which are empty for options that do not
+     * apply to classes
+     */
+    String @NotNull [] getAttributes() {
+        return attributes;
+    }
+}
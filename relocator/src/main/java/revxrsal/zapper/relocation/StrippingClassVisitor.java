@@ -0,0 +1,115 @@
+/*
+ * This file is part of Zapper, licensed under the MIT License.
+ *
+ *  Copyright (c) Revxrsal <reflxction.github@gmail.com>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package revxrsal.zapper.relocation;
+
+import org.jetbrains.annotations.NotNull;
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.TypePath;
+
+import java.util.Set;
+
+/**
+ * A class visitor that drops the debug attributes selected by a set of
+ * {@link StripOption}s. When every kind of debug information is stripped,
+ * {@link org.objectweb.asm.ClassReader#SKIP_DEBUG} does the same without
+ * visiting them at all.
+ */
+final class StrippingClassVisitor extends ClassVisitor {
+
+    private final boolean localVariables;
+    private final boolean lineNumbers;
+    private final boolean parameters;
+    private final boolean sourceFile;
+
+    StrippingClassVisitor(@NotNull ClassVisitor visitor, @NotNull Set<StripOption> options) {
+        super(Opcodes.ASM9, visitor);
+        this.localVariables = options.contains(StripOption.LOCAL_VARIABLES);
+        this.lineNumbers = options.contains(StripOption.LINE_NUMBERS);
+        this.parameters = options.contains(StripOption.PARAMETERS);
+        this.sourceFile = options.contains(StripOption.SOURCE_FILE);
+    }
+
+    /**
+     * Tests whether the given options strip every attribute that
+     * {@link org.objectweb.asm.ClassReader#SKIP_DEBUG} skips
+     */
+    static boolean stripsAllDebugInfo(@NotNull Set<StripOption> options) {
+        return options.contains(StripOption.LOCAL_VARIABLES)
+                && options.contains(StripOption.LINE_NUMBERS)
+                && options.contains(StripOption.PARAMETERS)
+                && options.contains(StripOption.SOURCE_FILE);
+    }
+
+    @Override
+    public void visitSource(String source, String debug) {
+        if (!sourceFile)
+            super.visitSource(source, debug);
+    }
+
+    @Override
+    public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+        MethodVisitor visitor = super.visitMethod(access, name, descriptor, signature, exceptions);
+        if (visitor == null)
+            return null;
+        return new MethodVisitor(Opcodes.ASM9, visitor) {
+            @Override
+            public void visitParameter(String name, int access) {
+                if (!parameters)
+                    super.visitParameter(name, access);
+            }
+
+            @Override
+            public void visitLineNumber(int line, Label start) {
+                if (!lineNumbers)
+                    super.visitLineNumber(line, start);
+            }
+
+            @Override
+            public void visitLocalVariable(String name, String descriptor, String signature, Label start, Label end, int index) {
+                if (!localVariables)
+                    super.visitLocalVariable(name, descriptor, signature, start, end, index);
+            }
+
+            // Type annotations on local variables refer to the ranges of the local variable table
+            @Override
+            public AnnotationVisitor visitLocalVariableAnnotation(
+                    int typeRef,
+                    TypePath typePath,
+                    Label[] start,
+                    Label[] end,
+                    int[] index,
+                    String descriptor,
+                    boolean visible
+            ) {
+                if (localVariables)
+                    return null;
+                return super.visitLocalVariableAnnotation(typeRef, typePath, start, end, index, descriptor, visible);
+            }
+        };
+    }
+}
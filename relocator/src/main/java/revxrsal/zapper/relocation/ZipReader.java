@@ -0,0 +1,541 @@
+/*
+ * This file is part of Zapper, licensed under the MIT License.
+ *
+ *  Copyright (c) Revxrsal <reflxction.github@gmail.com>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package revxrsal.zapper.relocation;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * A minimal zip reader that, unlike {@link java.util.zip.ZipFile}, gives access
+ * to the compressed bytes of entries, so that they can be copied to another
+ * archive without being inflated and deflated again.
+ * <p>
+ * Entries are read from the central directory. Content is read with positional
+ * reads on a {@link FileChannel}, or straight from memory if the archive is
+ * {@link #map(Path) mapped}, so entries may be read from multiple threads at once.
+ */
+public final class ZipReader implements Closeable {
+
+    static final int STORED = 0;
+    static final int DEFLATED = 8;
+
+    private static final int LOCAL_HEADER = 0x04034b50;
+    private static final int CENTRAL_HEADER = 0x02014b50;
+    private static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+    private static final int ZIP64_END_OF_CENTRAL_DIRECTORY = 0x06064b50;
+    private static final int ZIP64_LOCATOR = 0x07064b50;
+    private static final int ZIP64_EXTRA = 0x0001;
+
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+    private static final int ZIP64_LOCATOR_SIZE = 20;
+    private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_SIZE = 56;
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+
+    private final @Nullable FileChannel channel;
+    private final @Nullable ByteBuffer mapped;
+    private final List<Entry> entries;
+
+    ZipReader(@NotNull Path path) throws IOException {
+        this(FileChannel.open(path, StandardOpenOption.READ), null);
+    }
+
+    private ZipReader(@Nullable FileChannel channel, @Nullable ByteBuffer mapped) throws IOException {
+        this.channel = channel;
+        this.mapped = mapped;
+        try {
+            this.entries = Collections.unmodifiableList(readCentralDirectory());
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens an archive mapped into memory, so that its central directory and entries
+     * are read straight from the mapped region, without system calls or intermediate
+     * buffers. Stored entries are served without being copied at all. The mapping
+     * lasts until the reader is garbage collected, regardless of {@link #close()}.
+     * <p>
+     * Archives too large to be mapped at once are read from a channel instead.
+     *
+     * @param path The archive
+     * @return The reader
+     * @throws IOException if the archive could not be read
+     */
+    public static @NotNull ZipReader map(@NotNull Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE)
+                return new ZipReader(path);
+            ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new ZipReader(null, mapped.order(ByteOrder.LITTLE_ENDIAN));
+        }
+    }
+
+    /**
+     * Returns the entries of the archive, in the order of the central directory
+     *
+     * @return The entries
+     */
+    public @NotNull List<Entry> entries() {
+        return entries;
+    }
+
+    /**
+     * Opens the uncompressed content of an entry
+     *
+     * @param entry The entry
+     * @return The content
+     * @throws ZipException if the entry is encrypted or uses an unsupported compression method
+     */
+    public @NotNull InputStream open(@NotNull Entry entry) throws IOException {
+        InputStream raw = openRaw(entry);
+        switch (entry.method) {
+            case STORED:
+                return raw;
+            case DEFLATED:
+                if (raw instanceof BufferInputStream)
+                    return new MappedInflaterInputStream(((BufferInputStream) raw).buffer);
+                return new EntryInflaterInputStream(raw, entry.size);
+            default:
+                raw.close();
+                throw new ZipException("Unsupported compression method " + entry.method + " of entry " + entry.name);
+        }
+    }
+
+    /**
+     * Opens the content of an entry as it is stored in the archive, compressed
+     *
+     * @param entry The entry
+     * @return The compressed content
+     * @throws ZipException if the entry is encrypted
+     */
+    @NotNull InputStream openRaw(@NotNull Entry entry) throws IOException {
+        if ((entry.flags & 1) != 0)
+            throw new ZipException("Encrypted entries are not supported: " + entry.name);
+        if (mapped != null)
+            return new BufferInputStream(content(entry));
+        return new ChannelInputStream(dataOffset(entry), entry.compressedSize);
+    }
+
+    /**
+     * Returns the mapped content of an entry, as it is stored in the archive
+     */
+    private @NotNull ByteBuffer content(@NotNull Entry entry) throws IOException {
+        if (entry.compressedSize > Integer.MAX_VALUE)
+            throw new ZipException("Entry too large: " + entry.name);
+        return read(dataOffset(entry), (int) entry.compressedSize);
+    }
+
+    /**
+     * Tests whether the archive is still open. Interrupting a thread that is
+     * reading from it closes it.
+     *
+     * @return {@code true} if the archive is open
+     */
+    boolean isOpen() {
+        return channel == null || channel.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null)
+            channel.close();
+    }
+
+    /**
+     * Returns the offset of the content of an entry, which follows its local header.
+     * The local header may have a different extra field than the central directory,
+     * so it has to be read.
+     */
+    private long dataOffset(@NotNull Entry entry) throws IOException {
+        long offset = entry.dataOffset;
+        if (offset != -1)
+            return offset;
+        ByteBuffer header = read(entry.localHeaderOffset, LOCAL_HEADER_SIZE);
+        if (header.getInt(0) != LOCAL_HEADER)
+            throw new ZipException("Invalid local header of entry " + entry.name);
+        offset = entry.localHeaderOffset + LOCAL_HEADER_SIZE
+                + Short.toUnsignedInt(header.getShort(26))
+                + Short.toUnsignedInt(header.getShort(28));
+        entry.dataOffset = offset;
+        return offset;
+    }
+
+    private @NotNull List<Entry> readCentralDirectory() throws IOException {
+        long size = mapped != null ? mapped.capacity() : channel.size();
+        int tailSize = (int) Math.min(size, END_OF_CENTRAL_DIRECTORY_SIZE + MAX_COMMENT_SIZE);
+        long tailOffset = size - tailSize;
+        ByteBuffer tail = read(tailOffset, tailSize);
+        int end = -1;
+        for (int i = tailSize - END_OF_CENTRAL_DIRECTORY_SIZE; i >= 0; i--) {
+            if (tail.getInt(i) == END_OF_CENTRAL_DIRECTORY) {
+                end = i;
+                break;
+            }
+        }
+        if (end == -1)
+            throw new ZipException("Not a zip file: end of central directory not found");
+
+        long count = Short.toUnsignedInt(tail.getShort(end + 10));
+        long directorySize = Integer.toUnsignedLong(tail.getInt(end + 12));
+        long directoryOffset = Integer.toUnsignedLong(tail.getInt(end + 16));
+        long locatorOffset = tailOffset + end - ZIP64_LOCATOR_SIZE;
+        if ((count == 0xFFFF || directorySize == 0xFFFFFFFFL || directoryOffset == 0xFFFFFFFFL) && locatorOffset >= 0) {
+            ByteBuffer locator = read(locatorOffset, ZIP64_LOCATOR_SIZE);
+            if (locator.getInt(0) == ZIP64_LOCATOR) {
+                ByteBuffer zip64 = read(locator.getLong(8), ZIP64_END_OF_CENTRAL_DIRECTORY_SIZE);
+                if (zip64.getInt(0) != ZIP64_END_OF_CENTRAL_DIRECTORY)
+                    throw new ZipException("Invalid zip64 end of central directory");
+                count = zip64.getLong(32);
+                directorySize = zip64.getLong(40);
+                directoryOffset = zip64.getLong(48);
+            }
+        }
+        if (directorySize > Integer.MAX_VALUE || directoryOffset + directorySize > size)
+            throw new ZipException("Invalid central directory");
+
+        ByteBuffer directory = read(directoryOffset, (int) directorySize);
+        List<Entry> entries = new ArrayList<>((int) Math.min(count, 1 << 16));
+        int position = 0;
+        while (position + CENTRAL_HEADER_SIZE <= directorySize && directory.getInt(position) == CENTRAL_HEADER) {
+            int nameLength = Short.toUnsignedInt(directory.getShort(position + 28));
+            int extraLength = Short.toUnsignedInt(directory.getShort(position + 30));
+            int commentLength = Short.toUnsignedInt(directory.getShort(position + 32));
+            int next = position + CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+            if (next > directorySize)
+                throw new ZipException("Invalid central directory");
+
+            byte[] name = new byte[nameLength];
+            directory.get(position + CENTRAL_HEADER_SIZE, name);
+            Entry entry = new Entry(
+                    new String(name, StandardCharsets.UTF_8),
+                    Short.toUnsignedInt(directory.getShort(position + 8)),
+                    Short.toUnsignedInt(directory.getShort(position + 10)),
+                    directory.getInt(position + 12),
+                    directory.getInt(position + 16),
+                    Integer.toUnsignedLong(directory.getInt(position + 20)),
+                    Integer.toUnsignedLong(directory.getInt(position + 24)),
+                    Integer.toUnsignedLong(directory.getInt(position + 42))
+            );
+            readZip64Extra(entry, directory, position + CENTRAL_HEADER_SIZE + nameLength, extraLength);
+            entries.add(entry);
+            position = next;
+        }
+        if (entries.size() != count && count != 0xFFFF)
+            throw new ZipException("Invalid central directory: expected " + count + " entries, found " + entries.size());
+        return entries;
+    }
+
+    /**
+     * Reads the sizes and offset that did not fit in the central directory
+     * header from the zip64 extra field, in the order the format stores them
+     */
+    private static void readZip64Extra(@NotNull Entry entry, @NotNull ByteBuffer directory, int start, int length) throws ZipException {
+        int position = start;
+        while (position + 4 <= start + length) {
+            int id = Short.toUnsignedInt(directory.getShort(position));
+            int size = Short.toUnsignedInt(directory.getShort(position + 2));
+            int data = position + 4;
+            if (data + size > start + length)
+                throw new ZipException("Invalid extra field of entry " + entry.name);
+            if (id == ZIP64_EXTRA) {
+                if (entry.size == 0xFFFFFFFFL && data + 8 <= position + 4 + size) {
+                    entry.size = directory.getLong(data);
+                    data += 8;
+                }
+                if (entry.compressedSize == 0xFFFFFFFFL && data + 8 <= position + 4 + size) {
+                    entry.compressedSize = directory.getLong(data);
+                    data += 8;
+                }
+                if (entry.localHeaderOffset == 0xFFFFFFFFL && data + 8 <= position + 4 + size)
+                    entry.localHeaderOffset = directory.getLong(data);
+                return;
+            }
+            position = data + size;
+        }
+    }
+
+    private @NotNull ByteBuffer read(long position, int length) throws IOException {
+        if (mapped != null) {
+            if (position < 0 || position + length > mapped.capacity())
+                throw new EOFException("Unexpected end of zip file");
+            return mapped.slice((int) position, length).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) == -1)
+                throw new EOFException("Unexpected end of zip file");
+        }
+        return buffer.clear();
+    }
+
+    /**
+     * An entry of the central directory
+     */
+    public static final class Entry {
+
+        private final String name;
+        private final int flags;
+        private final int method;
+        private final int dosTime;
+        private final int crc;
+        private long compressedSize;
+        private long size;
+        private long localHeaderOffset;
+        private volatile long dataOffset = -1;
+
+        private Entry(String name, int flags, int method, int dosTime, int crc, long compressedSize, long size, long localHeaderOffset) {
+            this.name = name;
+            this.flags = flags;
+            this.method = method;
+            this.dosTime = dosTime;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localHeaderOffset = localHeaderOffset;
+        }
+
+        public @NotNull String getName() {
+            return name;
+        }
+
+        public boolean isDirectory() {
+            return name.endsWith("/");
+        }
+
+        int getMethod() {
+            return method;
+        }
+
+        /**
+         * Returns the modification time and date, in MS-DOS format, with the date
+         * in the upper 16 bits
+         */
+        int getDosTime() {
+            return dosTime;
+        }
+
+        int getCrc() {
+            return crc;
+        }
+
+        long getCompressedSize() {
+            return compressedSize;
+        }
+
+        public long getSize() {
+            return size;
+        }
+    }
+
+    /**
+     * Reads a range of the file, failing if the file ends before the range does
+     */
+    private final class ChannelInputStream extends InputStream {
+
+        private long position;
+        private long remaining;
+
+        private ChannelInputStream(long position, long length) {
+            this.position = position;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte @NotNull [] b, int off, int len) throws IOException {
+            if (remaining == 0)
+                return -1;
+            if (len == 0)
+                return 0;
+            int read = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, remaining)), position);
+            if (read == -1)
+                throw new EOFException("Unexpected end of zip file");
+            position += read;
+            remaining -= read;
+            return read;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(remaining, Integer.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Reads a mapped range of the file
+     */
+    private static final class BufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        private BufferInputStream(@NotNull ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte @NotNull [] b, int off, int len) {
+            if (!buffer.hasRemaining())
+                return -1;
+            int read = Math.min(len, buffer.remaining());
+            buffer.get(b, off, read);
+            return read;
+        }
+
+        @Override
+        public long skip(long n) {
+            int skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+
+    /**
+     * Inflates a mapped deflated entry, giving the inflater the whole mapped range
+     * at once, and releasing it once closed
+     */
+    private static final class MappedInflaterInputStream extends InputStream {
+
+        private final Inflater inflater = new Inflater(true);
+        private boolean padded;
+        private boolean closed;
+
+        private MappedInflaterInputStream(@NotNull ByteBuffer content) {
+            inflater.setInput(content);
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte @NotNull [] b, int off, int len) throws IOException {
+            if (closed)
+                throw new IOException("Stream closed");
+            if (len == 0)
+                return 0;
+            try {
+                while (true) {
+                    int read = inflater.inflate(b, off, len);
+                    if (read > 0)
+                        return read;
+                    if (inflater.finished())
+                        return -1;
+                    if (inflater.needsDictionary())
+                        throw new ZipException("Invalid deflated entry");
+                    if (inflater.needsInput()) {
+                        // Raw deflate streams may need an extra dummy byte to be fully inflated
+                        if (padded)
+                            throw new EOFException("Unexpected end of deflated entry");
+                        inflater.setInput(new byte[1]);
+                        padded = true;
+                    }
+                }
+            } catch (DataFormatException e) {
+                throw new ZipException("Invalid deflated entry: " + e.getMessage());
+            }
+        }
+
+        @Override
+        public void close() {
+            if (closed)
+                return;
+            closed = true;
+            inflater.end();
+        }
+    }
+
+    /**
+     * Inflates a deflated entry, releasing the inflater once closed
+     */
+    private static final class EntryInflaterInputStream extends InflaterInputStream {
+
+        private boolean eof;
+        private boolean closed;
+
+        private EntryInflaterInputStream(@NotNull InputStream in, long size) {
+            super(in, new Inflater(true), (int) Math.max(512, Math.min(size, 64 * 1024)));
+        }
+
+        @Override
+        protected void fill() throws IOException {
+            if (eof)
+                throw new EOFException("Unexpected end of deflated entry");
+            len = in.read(buf, 0, buf.length);
+            if (len == -1) {
+                // Raw deflate streams may need an extra dummy byte to be fully inflated
+                buf[0] = 0;
+                len = 1;
+                eof = true;
+            }
+            inf.setInput(buf, 0, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed)
+                return;
+            closed = true;
+            inf.end();
+            super.close();
+        }
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * This file is part of Zapper, licensed under the MIT License.
+ *
+ *  Copyright (c) Revxrsal <reflxction.github@gmail.com>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package revxrsal.zapper.relocation;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipException;
+
+/**
+ * A minimal zip writer, the counterpart of {@link ZipReader}. Entries are written
+ * with their sizes and checksums known up front, either from content that has
+ * already been compressed or by copying the compressed bytes of an entry of
+ * another archive.
+ * <p>
+ * Archives with more than 65535 entries or larger than 4 GiB are written in the
+ * zip64 format. Single entries larger than 4 GiB are not supported.
+ */
+final class ZipWriter implements Closeable {
+
+    private static final int LOCAL_HEADER = 0x04034b50;
+    private static final int CENTRAL_HEADER = 0x02014b50;
+    private static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+    private static final int ZIP64_END_OF_CENTRAL_DIRECTORY = 0x06064b50;
+    private static final int ZIP64_LOCATOR = 0x07064b50;
+    private static final int ZIP64_EXTRA = 0x0001;
+
+    private static final int VERSION = 20;
+    private static final int ZIP64_VERSION = 45;
+    private static final int UTF8_FLAG = 1 << 11;
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+
+    private final OutputStream out;
+    private final List<Header> headers = new ArrayList<>();
+    private long offset;
+
+    ZipWriter(@NotNull OutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Writes an entry whose content has already been compressed with the given method
+     *
+     * @param name    The entry name
+     * @param dosTime The modification time and date, in MS-DOS format
+     * @param method  The compression method, {@link ZipReader#STORED} or {@link ZipReader#DEFLATED}
+     * @param crc     The CRC-32 of the uncompressed content
+     * @param size    The size of the uncompressed content
+     * @param content The compressed content
+     * @param length  The length of the compressed content
+     */
+    void write(@NotNull String name, int dosTime, int method, int crc, long size, byte @NotNull [] content, int length) throws IOException {
+        writeLocalHeader(new Header(name, dosTime, method, crc, length, size, offset));
+        out.write(content, 0, length);
+        offset += length;
+    }
+
+    /**
+     * Copies the compressed content of an entry of another archive, under the given name
+     *
+     * @param name   The entry name
+     * @param source The archive to copy from
+     * @param entry  The entry to copy
+     */
+    void copy(@NotNull String name, @NotNull ZipReader source, @NotNull ZipReader.Entry entry) throws IOException {
+        writeLocalHeader(new Header(
+                name,
+                entry.getDosTime(),
+                entry.getMethod(),
+                entry.getCrc(),
+                entry.getCompressedSize(),
+                entry.getSize(),
+                offset
+        ));
+        try (InputStream in = source.openRaw(entry)) {
+            offset += in.transferTo(out);
+        }
+    }
+
+    private void writeLocalHeader(@NotNull Header header) throws IOException {
+        if (header.compressedSize >= ZIP64_MAGIC || header.size >= ZIP64_MAGIC)
+            throw new ZipException("Entries larger than 4 GiB are not supported: " + header.name);
+        ByteBuffer buffer = allocate(30 + header.name.length);
+        buffer.putInt(LOCAL_HEADER)
+                .putShort((short) VERSION)
+                .putShort((short) UTF8_FLAG)
+                .putShort((short) header.method)
+                .putInt(header.dosTime)
+                .putInt(header.crc)
+                .putInt((int) header.compressedSize)
+                .putInt((int) header.size)
+                .putShort((short) header.name.length)
+                .putShort((short) 0)
+                .put(header.name);
+        out.write(buffer.array());
+        offset += buffer.capacity();
+        headers.add(header);
+    }
+
+    /**
+     * Writes the central directory and closes the underlying stream
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            long directoryOffset = offset;
+            for (Header header : headers)
+                writeCentralHeader(header);
+            long directorySize = offset - directoryOffset;
+            boolean zip64 = headers.size() >= 0xFFFF || directoryOffset >= ZIP64_MAGIC || directorySize >= ZIP64_MAGIC;
+            if (zip64)
+                writeZip64EndOfCentralDirectory(directoryOffset, directorySize);
+
+            ByteBuffer end = allocate(22);
+            end.putInt(END_OF_CENTRAL_DIRECTORY)
+                    .putShort((short) 0)
+                    .putShort((short) 0)
+                    .putShort((short) Math.min(headers.size(), 0xFFFF))
+                    .putShort((short) Math.min(headers.size(), 0xFFFF))
+                    .putInt((int) Math.min(directorySize, ZIP64_MAGIC))
+                    .putInt((int) Math.min(directoryOffset, ZIP64_MAGIC))
+                    .putShort((short) 0);
+            out.write(end.array());
+        } finally {
+            out.close();
+        }
+    }
+
+    private void writeCentralHeader(@NotNull Header header) throws IOException {
+        boolean zip64 = header.offset >= ZIP64_MAGIC;
+        int extraLength = zip64 ? 12 : 0;
+        ByteBuffer buffer = allocate(46 + header.name.length + extraLength);
+        buffer.putInt(CENTRAL_HEADER)
+                .putShort((short) (zip64 ? ZIP64_VERSION : VERSION))
+                .putShort((short) (zip64 ? ZIP64_VERSION : VERSION))
+                .putShort((short) UTF8_FLAG)
+                .putShort((short) header.method)
+                .putInt(header.dosTime)
+                .putInt(header.crc)
+                .putInt((int) header.compressedSize)
+                .putInt((int) header.size)
+                .putShort((short) header.name.length)
+                .putShort((short) extraLength)
+                .putShort((short) 0)
+                .putShort((short) 0)
+                .putShort((short) 0)
+                .putInt(0)
+                .putInt((int) Math.min(header.offset, ZIP64_MAGIC))
+                .put(header.name);
+        if (zip64)
+            buffer.putShort((short) ZIP64_EXTRA).putShort((short) 8).putLong(header.offset);
+        out.write(buffer.array());
+        offset += buffer.capacity();
+    }
+
+    private void writeZip64EndOfCentralDirectory(long directoryOffset, long directorySize) throws IOException {
+        long recordOffset = offset;
+        ByteBuffer buffer = allocate(56 + 20);
+        buffer.putInt(ZIP64_END_OF_CENTRAL_DIRECTORY)
+                .putLong(44)
+                .putShort((short) ZIP64_VERSION)
+                .putShort((short) ZIP64_VERSION)
+                .putInt(0)
+                .putInt(0)
+                .putLong(headers.size())
+                .putLong(headers.size())
+                .putLong(directorySize)
+                .putLong(directoryOffset);
+        buffer.putInt(ZIP64_LOCATOR)
+                .putInt(0)
+                .putLong(recordOffset)
+                .putInt(1);
+        out.write(buffer.array());
+        offset += buffer.capacity();
+    }
+
+    private static @NotNull ByteBuffer allocate(int size) {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * The fields of an entry that are repeated in the central directory
+     */
+    private static final class Header {
+
+        private final byte[] name;
+        private final int dosTime;
+        private final int method;
+        private final int crc;
+        private final long compressedSize;
+        private final long size;
+        private final long offset;
+
+        private Header(String name, int dosTime, int method, int crc, long compressedSize, long size, long offset) {
+            this.name = name.getBytes(StandardCharsets.UTF_8);
+            this.dosTime = dosTime;
+            this.method = method;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.offset = offset;
+        }
+    }
+}
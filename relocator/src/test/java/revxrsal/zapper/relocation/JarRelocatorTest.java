@@ -0,0 +1,321 @@
+package revxrsal.zapper.relocation;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.FieldNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TypeInsnNode;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.objectweb.asm.Opcodes.ACC_ABSTRACT;
+import static org.objectweb.asm.Opcodes.ACC_INTERFACE;
+import static org.objectweb.asm.Opcodes.ACC_PRIVATE;
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.ARETURN;
+import static org.objectweb.asm.Opcodes.DUP;
+import static org.objectweb.asm.Opcodes.GETFIELD;
+import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
+import static org.objectweb.asm.Opcodes.INVOKEVIRTUAL;
+import static org.objectweb.asm.Opcodes.NEW;
+import static org.objectweb.asm.Opcodes.PUTFIELD;
+import static org.objectweb.asm.Opcodes.RETURN;
+import static org.objectweb.asm.Opcodes.V17;
+
+/**
+ * Checks the output of {@link JarRelocator} against {@code java.util.zip} and
+ * against the output of jar-relocator, which Zapper used to relocate with.
+ */
+class JarRelocatorTest {
+
+    private static final String SERVICE = "META-INF/services/com.example.lib.Greeter";
+    private static final List<Relocation> RELOCATIONS = List.of(new Relocation("com.example.lib", "shaded.lib"));
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void relocatesLikeJarRelocator() throws IOException {
+        File input = library();
+        File ours = directory.resolve("ours.jar").toFile();
+        File theirs = directory.resolve("theirs.jar").toFile();
+        new JarRelocator(RELOCATIONS).relocate(input, ours);
+        new me.lucko.jarrelocator.JarRelocator(input, theirs, Map.of("com.example.lib", "shaded.lib")).run();
+
+        // Service files are compared with what they should hold instead, in
+        // relocatedJarsReadBackWithJavaUtilZip
+        Map<String, byte[]> expected = read(theirs);
+        Map<String, byte[]> actual = read(ours);
+        expected.keySet().removeIf(name -> name.startsWith("META-INF/services/"));
+        actual.keySet().removeIf(name -> name.startsWith("META-INF/services/"));
+
+        assertEquals(expected.keySet(), actual.keySet());
+        for (Map.Entry<String, byte[]> entry : expected.entrySet()) {
+            String name = entry.getKey();
+            if (name.endsWith(".class"))
+                assertEquals(describe(entry.getValue()), describe(actual.get(name)), name);
+            else
+                assertArrayEquals(entry.getValue(), actual.get(name), name);
+        }
+    }
+
+    @Test
+    void relocatedJarsReadBackWithJavaUtilZip() throws Exception {
+        File input = library();
+        for (boolean storeClasses : new boolean[] {false, true}) {
+            File output = directory.resolve("relocated-" + storeClasses + ".jar").toFile();
+            new JarRelocator(RELOCATIONS, null, storeClasses).relocate(input, output);
+
+            Map<String, byte[]> central = read(output);
+            Map<String, byte[]> local = readLocalHeaders(output);
+            assertEquals(central.keySet(), local.keySet());
+            for (Map.Entry<String, byte[]> entry : central.entrySet())
+                assertArrayEquals(entry.getValue(), local.get(entry.getKey()), entry.getKey());
+
+            assertEquals(
+                    "shaded.lib.impl.DefaultGreeter\n",
+                    new String(central.get("META-INF/services/shaded.lib.Greeter"), StandardCharsets.UTF_8)
+            );
+            assertEquals("shaded.lib.Helper", greet(output.toURI().toURL()));
+        }
+    }
+
+    @Test
+    void relocatesOnLoadLikeRelocatedJar() throws Exception {
+        File input = library();
+        File output = directory.resolve("relocated.jar").toFile();
+        JarRelocator relocator = new JarRelocator(RELOCATIONS);
+        relocator.relocate(input, output);
+
+        Map<String, byte[]> relocated = read(output);
+        RelocatingURLStreamHandler handler = new RelocatingURLStreamHandler(input, relocator);
+        List<String> names = new ArrayList<>(handler.getEntryNames());
+        names.removeIf(name -> name.endsWith("/"));
+
+        assertEquals(relocated.keySet(), new TreeSet<>(names));
+        for (String name : names) {
+            try (InputStream in = new URL(handler.getURL(), name).openStream()) {
+                assertArrayEquals(relocated.get(name), in.readAllBytes(), name);
+            }
+        }
+        assertEquals("shaded.lib.Helper", greet(handler.getURL()));
+    }
+
+    /**
+     * Loads the relocated greeter through its service file, and greets
+     */
+    private static @NotNull String greet(@NotNull URL url) throws Exception {
+        try (URLClassLoader loader = new URLClassLoader(new URL[] {url}, null)) {
+            Class<?> greeter = loader.loadClass("shaded.lib.Greeter");
+            Object provider = ServiceLoader.load(greeter, loader).findFirst().orElseThrow();
+            return (String) greeter.getMethod("greet").invoke(provider);
+        }
+    }
+
+    /**
+     * Writes a library with classes that reference each other in their signatures,
+     * instructions and string constants, along with a service file, a resource and
+     * a class outside of the relocated package
+     */
+    private @NotNull File library() throws IOException {
+        File file = directory.resolve("library.jar").toFile();
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(file.toPath()), manifest)) {
+            put(out, "com/", new byte[0]);
+            put(out, "com/example/", new byte[0]);
+            put(out, "com/example/lib/", new byte[0]);
+            put(out, "com/example/lib/Greeter.class", greeter());
+            put(out, "com/example/lib/Helper.class", helper());
+            put(out, "com/example/lib/impl/DefaultGreeter.class", defaultGreeter());
+            put(out, "com/example/lib/messages.properties", "greeting=hello\n".getBytes(StandardCharsets.UTF_8));
+            put(out, "org/other/Untouched.class", untouched());
+            put(out, SERVICE, "com.example.lib.impl.DefaultGreeter\n".getBytes(StandardCharsets.UTF_8));
+        }
+        return file;
+    }
+
+    private static void put(@NotNull JarOutputStream out, @NotNull String name, byte @NotNull [] content) throws IOException {
+        out.putNextEntry(new JarEntry(name));
+        out.write(content);
+        out.closeEntry();
+    }
+
+    private static byte @NotNull [] greeter() {
+        ClassWriter writer = new ClassWriter(0);
+        writer.visit(V17, ACC_PUBLIC | ACC_INTERFACE | ACC_ABSTRACT, "com/example/lib/Greeter", null, "java/lang/Object", null);
+        writer.visitMethod(ACC_PUBLIC | ACC_ABSTRACT, "greet", "()Ljava/lang/String;", null, null).visitEnd();
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    /**
+     * A helper that holds a greeter and names itself with a string constant
+     */
+    private static byte @NotNull [] helper() {
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        writer.visit(V17, ACC_PUBLIC, "com/example/lib/Helper", null, "java/lang/Object", null);
+        writer.visitField(ACC_PRIVATE, "owner", "Lcom/example/lib/Greeter;", null, null).visitEnd();
+        constructor(writer, "java/lang/Object");
+        MethodVisitor name = writer.visitMethod(ACC_PUBLIC, "name", "()Ljava/lang/String;", null, null);
+        name.visitCode();
+        name.visitLdcInsn("com.example.lib.Helper");
+        name.visitInsn(ARETURN);
+        name.visitMaxs(0, 0);
+        name.visitEnd();
+        MethodVisitor owner = writer.visitMethod(ACC_PUBLIC, "owner", "(Lcom/example/lib/Greeter;)Lcom/example/lib/Greeter;", null, null);
+        owner.visitCode();
+        owner.visitVarInsn(ALOAD, 0);
+        owner.visitVarInsn(ALOAD, 1);
+        owner.visitFieldInsn(PUTFIELD, "com/example/lib/Helper", "owner", "Lcom/example/lib/Greeter;");
+        owner.visitVarInsn(ALOAD, 0);
+        owner.visitFieldInsn(GETFIELD, "com/example/lib/Helper", "owner", "Lcom/example/lib/Greeter;");
+        owner.visitInsn(ARETURN);
+        owner.visitMaxs(0, 0);
+        owner.visitEnd();
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    /**
+     * A greeter that greets with the name of a new helper
+     */
+    private static byte @NotNull [] defaultGreeter() {
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        writer.visit(V17, ACC_PUBLIC, "com/example/lib/impl/DefaultGreeter", null, "java/lang/Object", new String[] {"com/example/lib/Greeter"});
+        constructor(writer, "java/lang/Object");
+        MethodVisitor greet = writer.visitMethod(ACC_PUBLIC, "greet", "()Ljava/lang/String;", null, null);
+        greet.visitCode();
+        greet.visitTypeInsn(NEW, "com/example/lib/Helper");
+        greet.visitInsn(DUP);
+        greet.visitMethodInsn(INVOKESPECIAL, "com/example/lib/Helper", "<init>", "()V", false);
+        greet.visitMethodInsn(INVOKEVIRTUAL, "com/example/lib/Helper", "name", "()Ljava/lang/String;", false);
+        greet.visitInsn(ARETURN);
+        greet.visitMaxs(0, 0);
+        greet.visitEnd();
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    private static byte @NotNull [] untouched() {
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        writer.visit(V17, ACC_PUBLIC, "org/other/Untouched", null, "java/lang/Object", null);
+        constructor(writer, "java/lang/Object");
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    private static void constructor(@NotNull ClassWriter writer, @NotNull String superName) {
+        MethodVisitor constructor = writer.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+        constructor.visitCode();
+        constructor.visitVarInsn(ALOAD, 0);
+        constructor.visitMethodInsn(INVOKESPECIAL, superName, "<init>", "()V", false);
+        constructor.visitInsn(RETURN);
+        constructor.visitMaxs(0, 0);
+        constructor.visitEnd();
+    }
+
+    /**
+     * Describes the names a class declares and references, ignoring how the class
+     * file encodes them, such as the order of its constant pool or its frames
+     */
+    private static @NotNull String describe(byte @NotNull [] content) {
+        ClassNode node = new ClassNode();
+        new ClassReader(content).accept(node, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+        StringBuilder description = new StringBuilder()
+                .append(node.access).append(' ').append(node.name)
+                .append(" extends ").append(node.superName)
+                .append(" implements ").append(node.interfaces).append('\n');
+        for (FieldNode field : node.fields)
+            description.append("field ").append(field.name).append(' ').append(field.desc).append('\n');
+        for (MethodNode method : node.methods) {
+            description.append("method ").append(method.name).append(method.desc).append('\n');
+            for (AbstractInsnNode instruction : method.instructions) {
+                if (instruction.getOpcode() == -1)
+                    continue;
+                description.append("  ").append(instruction.getOpcode());
+                if (instruction instanceof MethodInsnNode) {
+                    MethodInsnNode call = (MethodInsnNode) instruction;
+                    description.append(' ').append(call.owner).append('.').append(call.name).append(call.desc);
+                } else if (instruction instanceof FieldInsnNode) {
+                    FieldInsnNode field = (FieldInsnNode) instruction;
+                    description.append(' ').append(field.owner).append('.').append(field.name).append(' ').append(field.desc);
+                } else if (instruction instanceof TypeInsnNode) {
+                    description.append(' ').append(((TypeInsnNode) instruction).desc);
+                } else if (instruction instanceof LdcInsnNode) {
+                    Object constant = ((LdcInsnNode) instruction).cst;
+                    description.append(' ').append(constant instanceof Type ? ((Type) constant).getDescriptor() : constant);
+                }
+                description.append('\n');
+            }
+        }
+        return description.toString();
+    }
+
+    /**
+     * Reads the files of a jar through its central directory, skipping directories
+     */
+    private static @NotNull Map<String, byte[]> read(@NotNull File jar) throws IOException {
+        Map<String, byte[]> contents = new TreeMap<>();
+        try (ZipFile zip = new ZipFile(jar)) {
+            for (Enumeration<? extends ZipEntry> entries = zip.entries(); entries.hasMoreElements(); ) {
+                ZipEntry entry = entries.nextElement();
+                if (entry.isDirectory())
+                    continue;
+                try (InputStream in = zip.getInputStream(entry)) {
+                    contents.put(entry.getName(), in.readAllBytes());
+                }
+            }
+        }
+        return contents;
+    }
+
+    /**
+     * Reads the files of a jar through its local headers, which checks the size and
+     * checksum of every entry against its content
+     */
+    private static @NotNull Map<String, byte[]> readLocalHeaders(@NotNull File jar) throws IOException {
+        Map<String, byte[]> contents = new TreeMap<>();
+        try (ZipInputStream in = new ZipInputStream(Files.newInputStream(jar.toPath()))) {
+            for (ZipEntry entry; (entry = in.getNextEntry()) != null; ) {
+                if (!entry.isDirectory())
+                    contents.put(entry.getName(), in.readAllBytes());
+            }
+        }
+        return contents;
+    }
+}
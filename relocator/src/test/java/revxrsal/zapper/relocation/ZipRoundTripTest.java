@@ -0,0 +1,215 @@
+package revxrsal.zapper.relocation;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks {@link ZipReader} and {@link ZipWriter} against {@code java.util.zip}:
+ * archives written by either one must read back the same with the other.
+ */
+class ZipRoundTripTest {
+
+    /**
+     * Larger than the 65535 entries that fit in a plain end of central directory
+     */
+    private static final int ZIP64_ENTRIES = 70_000;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsWhatJavaUtilZipWrites() throws IOException {
+        Path file = directory.resolve("written.zip");
+        Map<String, byte[]> contents = contents();
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(file))) {
+            out.setComment("an archive comment");
+            for (Map.Entry<String, byte[]> content : contents.entrySet()) {
+                ZipEntry entry = new ZipEntry(content.getKey());
+                if (content.getKey().endsWith(".txt")) {
+                    // Stored entries need their sizes and checksum up front
+                    entry.setMethod(ZipEntry.STORED);
+                    entry.setSize(content.getValue().length);
+                    entry.setCrc(crc(content.getValue()));
+                }
+                entry.setComment("an entry comment");
+                entry.setExtra(new byte[] {(byte) 0xFE, (byte) 0xCA, 0, 0});
+                out.putNextEntry(entry);
+                out.write(content.getValue());
+                out.closeEntry();
+            }
+        }
+
+        try (ZipReader zip = new ZipReader(file)) {
+            assertSameContents(contents, read(zip));
+        }
+        try (ZipReader zip = ZipReader.map(file)) {
+            assertSameContents(contents, read(zip));
+        }
+    }
+
+    @Test
+    void writesWhatJavaUtilZipReads() throws IOException {
+        Path file = directory.resolve("written.zip");
+        Map<String, byte[]> contents = contents();
+        try (ZipWriter out = new ZipWriter(Files.newOutputStream(file))) {
+            for (Map.Entry<String, byte[]> content : contents.entrySet())
+                write(out, content.getKey(), content.getValue(), !content.getKey().endsWith(".txt"));
+        }
+
+        assertSameContents(contents, readWithZipFile(file));
+        assertSameContents(contents, readWithZipInputStream(file));
+    }
+
+    @Test
+    void copiesEntriesUnchanged() throws IOException {
+        Path source = directory.resolve("source.zip");
+        Path copy = directory.resolve("copy.zip");
+        Map<String, byte[]> contents = contents();
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(source))) {
+            for (Map.Entry<String, byte[]> content : contents.entrySet()) {
+                out.putNextEntry(new ZipEntry(content.getKey()));
+                out.write(content.getValue());
+                out.closeEntry();
+            }
+        }
+
+        try (ZipReader zip = new ZipReader(source); ZipWriter out = new ZipWriter(Files.newOutputStream(copy))) {
+            for (ZipReader.Entry entry : zip.entries())
+                out.copy(entry.getName(), zip, entry);
+        }
+
+        assertSameContents(contents, readWithZipFile(copy));
+        assertSameContents(contents, readWithZipInputStream(copy));
+    }
+
+    @Test
+    void roundTripsZip64Archives() throws IOException {
+        Path file = directory.resolve("zip64.zip");
+        try (ZipWriter out = new ZipWriter(Files.newOutputStream(file))) {
+            for (int i = 0; i < ZIP64_ENTRIES; i++)
+                write(out, "entries/" + i, Integer.toString(i).getBytes(StandardCharsets.UTF_8), i % 2 == 0);
+        }
+
+        try (ZipFile zip = new ZipFile(file.toFile())) {
+            assertEquals(ZIP64_ENTRIES, zip.size());
+            assertEquals("69999", new String(readAll(zip.getInputStream(zip.getEntry("entries/69999"))), StandardCharsets.UTF_8));
+        }
+        try (ZipReader zip = new ZipReader(file)) {
+            assertEquals(ZIP64_ENTRIES, zip.entries().size());
+            ZipReader.Entry last = zip.entries().get(ZIP64_ENTRIES - 1);
+            assertEquals("entries/69999", last.getName());
+            assertEquals("69999", new String(readAll(zip.open(last)), StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Entries covering directories, empty and incompressible content, and names
+     * outside of ASCII. Entries ending with {@code .txt} are stored uncompressed.
+     */
+    private static @NotNull Map<String, byte[]> contents() {
+        Map<String, byte[]> contents = new LinkedHashMap<>();
+        byte[] random = new byte[64 * 1024];
+        new Random(42).nextBytes(random);
+        contents.put("META-INF/", new byte[0]);
+        contents.put("META-INF/MANIFEST.MF", "Manifest-Version: 1.0\r\n\r\n".getBytes(StandardCharsets.UTF_8));
+        contents.put("com/example/empty.bin", new byte[0]);
+        contents.put("com/example/random.bin", random);
+        contents.put("com/example/repeated.bin", "zapper ".repeat(10_000).getBytes(StandardCharsets.UTF_8));
+        contents.put("com/example/stored.txt", "stored as is".getBytes(StandardCharsets.UTF_8));
+        contents.put("com/example/\u00fcn\u00efc\u00f6d\u00e9.txt", "\u00fcn\u00efc\u00f6d\u00e9".getBytes(StandardCharsets.UTF_8));
+        return contents;
+    }
+
+    private static void write(@NotNull ZipWriter out, @NotNull String name, byte @NotNull [] content, boolean deflate) throws IOException {
+        int dosTime = (45 << 25) | (1 << 21) | (1 << 16);
+        if (!deflate) {
+            out.write(name, dosTime, ZipReader.STORED, (int) crc(content), content.length, content, content.length);
+            return;
+        }
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        deflater.setInput(content);
+        deflater.finish();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        while (!deflater.finished())
+            compressed.write(buffer, 0, deflater.deflate(buffer));
+        deflater.end();
+        out.write(name, dosTime, ZipReader.DEFLATED, (int) crc(content), content.length, compressed.toByteArray(), compressed.size());
+    }
+
+    private static void assertSameContents(@NotNull Map<String, byte[]> expected, @NotNull Map<String, byte[]> actual) {
+        assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(actual.keySet()));
+        for (Map.Entry<String, byte[]> entry : expected.entrySet())
+            assertArrayEquals(entry.getValue(), actual.get(entry.getKey()), entry.getKey());
+    }
+
+    private static @NotNull Map<String, byte[]> read(@NotNull ZipReader zip) throws IOException {
+        Map<String, byte[]> contents = new LinkedHashMap<>();
+        for (ZipReader.Entry entry : zip.entries()) {
+            byte[] content = entry.isDirectory() ? new byte[0] : readAll(zip.open(entry));
+            assertEquals(content.length, entry.getSize(), entry.getName());
+            contents.put(entry.getName(), content);
+        }
+        return contents;
+    }
+
+    private static @NotNull Map<String, byte[]> readWithZipFile(@NotNull Path file) throws IOException {
+        Map<String, byte[]> contents = new LinkedHashMap<>();
+        try (ZipFile zip = new ZipFile(file.toFile())) {
+            for (Enumeration<? extends ZipEntry> entries = zip.entries(); entries.hasMoreElements(); ) {
+                ZipEntry entry = entries.nextElement();
+                byte[] content = readAll(zip.getInputStream(entry));
+                assertEquals(crc(content), entry.getCrc(), entry.getName());
+                contents.put(entry.getName(), content);
+            }
+        }
+        return contents;
+    }
+
+    /**
+     * Reads the archive through its local headers, checking the size and checksum
+     * of every entry against its content
+     */
+    private static @NotNull Map<String, byte[]> readWithZipInputStream(@NotNull Path file) throws IOException {
+        Map<String, byte[]> contents = new LinkedHashMap<>();
+        try (ZipInputStream in = new ZipInputStream(Files.newInputStream(file))) {
+            for (ZipEntry entry; (entry = in.getNextEntry()) != null; )
+                contents.put(entry.getName(), in.readAllBytes());
+        }
+        return contents;
+    }
+
+    private static byte @NotNull [] readAll(@NotNull InputStream in) throws IOException {
+        try (InputStream stream = in) {
+            return stream.readAllBytes();
+        }
+    }
+
+    private static long crc(byte @NotNull [] content) {
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        return crc.getValue();
+    }
+}
@@ -11,4 +11,5 @@ plugins {
 }
 
 include("api")
+include("relocator")
 include("gradle-plugin")